@@ -2,13 +2,14 @@ package org.arachna.dot4j;
 
 import org.arachna.dot4j.model.Attributes;
 import org.arachna.dot4j.model.Edge;
+import org.arachna.dot4j.model.EdgePlacementAlgorithm;
 import org.arachna.dot4j.model.Graph;
 import org.arachna.dot4j.model.Node;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Base class for implementing a generator of graphviz .dot models (graphs).
@@ -21,12 +22,20 @@ public abstract class AbstractDotFileGenerator {
     /**
      * housekeeping of node names already generated.
      */
-    private final Map<String, Node> nodeNames = new HashMap<>();
-    private final Map<String, Graph> groupNames = new HashMap<>();
+    private final Map<String, Node> nodeNames = new ConcurrentHashMap<>();
+    private final Map<String, Graph> groupNames = new ConcurrentHashMap<>();
+    /**
+     * declared nodes not created yet, indexed by node name.
+     */
+    private final Map<String, Declaration> declarations = new ConcurrentHashMap<>();
     /**
      * Model for dependency graph.
      */
     private Graph graph;
+    /**
+     * listener to report the generation to, <code>null</code> if none.
+     */
+    private GenerationListener listener;
 
     /**
      * {@inheritDoc}
@@ -43,10 +52,53 @@ public abstract class AbstractDotFileGenerator {
 
         graph.getNodeAttributes().setAttribute("shape", "record");
 
+        long start = listener == null ? 0 : System.nanoTime();
         generateInternal();
+        start = phaseCompleted(GenerationPhase.BUILD, start);
+
+        if (globalConfig.isPlaceEdgesInCommonCluster()) {
+            new EdgePlacementAlgorithm(graph).execute();
+        }
+
+        transformGraph(graph);
+        phaseCompleted(GenerationPhase.TRANSFORM, start);
 
         final DotGenerator generator = new DotGenerator(graph);
-        generator.generate(writer);
+        generator.setGenerationListener(listener);
+        final EdgeSink sink = generator.stream(writer, globalConfig.isDeduplicateStreamedEdges());
+        start = listener == null ? 0 : System.nanoTime();
+        streamEdges(sink);
+        sink.close();
+        phaseCompleted(GenerationPhase.STREAM, start);
+    }
+
+    /**
+     * Register a listener to report the duration of each
+     * {@link GenerationPhase} and the written elements to.
+     *
+     * @param listener listener to report to, <code>null</code> to report
+     *                 nothing (the default).
+     */
+    public final void setGenerationListener(final GenerationListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Report the completion of the given phase to the listener, if any.
+     *
+     * @param phase the completed phase
+     * @param start start of the phase as returned by {@link System#nanoTime()}
+     * @return the end of the phase, <code>0</code> without listener.
+     */
+    private long phaseCompleted(final GenerationPhase phase, final long start) {
+        if (listener == null) {
+            return 0;
+        }
+
+        final long end = System.nanoTime();
+        listener.phaseCompleted(phase, end - start);
+
+        return end;
     }
 
     protected final Graph getCluster(final String groupName, final Graph parent) {
@@ -93,6 +145,58 @@ public abstract class AbstractDotFileGenerator {
         });
     }
 
+    /**
+     * Declare a node without creating it yet. The node is only created when
+     * an edge referring to it is added via {@link #addEdge(NodeIdentifier, NodeIdentifier)}
+     * or it is pinned via {@link #pinNode(NodeIdentifier)}; declared nodes
+     * without edges are not generated at all. Until then
+     * {@link #getNode(String)} does not find the node.
+     * <p>
+     * Declaring a node that has already been added or declared has no effect.
+     *
+     * @param rank        key for grouping nodes into the same rank
+     * @param identifier  the name the node should be registered with.
+     * @param clusterName the name of the parent cluster it should be registered with.
+     */
+    protected final void declareNode(final String rank, final NodeIdentifier identifier, final String clusterName) {
+        final String nodeName = identifier.getNodeName();
+
+        if (!nodeNames.containsKey(nodeName)) {
+            declarations.putIfAbsent(nodeName, new Declaration(rank, clusterName));
+        }
+    }
+
+    /**
+     * Create a declared node even if no edge refers to it.
+     *
+     * @param identifier identifier of a declared or added node.
+     * @return the node registered with the given identifier.
+     * @throws IllegalArgumentException if the node has been neither declared nor added.
+     */
+    protected final Node pinNode(final NodeIdentifier identifier) {
+        final String nodeName = identifier.getNodeName();
+        Node node = nodeNames.get(nodeName);
+
+        if (node == null) {
+            final Declaration declaration = declarations.get(nodeName);
+
+            if (declaration != null) {
+                node = addNode(declaration.rank, identifier, declaration.clusterName);
+                declarations.remove(nodeName);
+            }
+            else {
+                // another thread may just have created the node
+                node = nodeNames.get(nodeName);
+            }
+
+            if (node == null) {
+                throw new IllegalArgumentException("Node '" + nodeName + "' has been neither declared nor added!");
+            }
+        }
+
+        return node;
+    }
+
     /**
      * Create a new edge using the two given nodes.
      *
@@ -104,6 +208,19 @@ public abstract class AbstractDotFileGenerator {
         return graph.newEdge(source, target);
     }
 
+    /**
+     * Create a new edge between the nodes registered with the given
+     * identifiers, creating declared nodes when necessary.
+     *
+     * @param source identifier of a declared or added source node.
+     * @param target identifier of a declared or added target node.
+     * @return the newly created edge.
+     * @throws IllegalArgumentException if one of the nodes has been neither declared nor added.
+     */
+    protected final Edge addEdge(final NodeIdentifier source, final NodeIdentifier target) {
+        return graph.newEdge(pinNode(source), pinNode(target));
+    }
+
     /**
      * Has to be implemented by subclasses to generate the actual graph. E.g.
      * {code}
@@ -115,9 +232,41 @@ public abstract class AbstractDotFileGenerator {
      * {code}
      * The implementation would generate the graphs nodes based on the business objects that should be visualized
      * and afterward connect those nodes with edges between those nodes.
+     * <p>
+     * Nodes that may end up without edges can be declared via {@link #declareNode(String, NodeIdentifier, String)}
+     * instead, so they are only created once an edge refers to them.
+     * <p>
+     * {@link #addNode(String, NodeIdentifier, String)}, {@link #declareNode(String, NodeIdentifier, String)},
+     * {@link #pinNode(NodeIdentifier)}, both <code>addEdge</code> methods, {@link #getNode(String)} and
+     * {@link #getCluster(String, Graph)} may be called from several threads concurrently, so implementations are free
+     * to scan their model in parallel. All threads have to be finished when this method returns.
      */
     protected abstract void generateInternal();
 
+    /**
+     * May be overridden by subclasses to transform the graph built by
+     * {@link #generateInternal()} before it is written, e.g. using
+     * {@link org.arachna.dot4j.model.CommonEdgeMergeAlgorithm}. Does nothing by
+     * default.
+     *
+     * @param graph the built graph.
+     */
+    protected void transformGraph(final Graph graph) {
+    }
+
+    /**
+     * May be overridden by subclasses to write edges directly into the output
+     * instead of adding them to the graph, e.g. when there are too many edges
+     * to keep them in memory. Called after the graph built by
+     * {@link #generateInternal()} has been written. The nodes passed to the
+     * sink have to be contained in the graph. Does nothing by default.
+     *
+     * @param sink sink to write edges into.
+     * @throws IOException when writing fails
+     */
+    protected void streamEdges(final EdgeSink sink) throws IOException {
+    }
+
     /**
      * Return global configuration settings.
      *
@@ -126,5 +275,32 @@ public abstract class AbstractDotFileGenerator {
     protected final DotFileGeneratorConfiguration getGlobalConfig() {
         return globalConfig;
     }
-}
 
+    /**
+     * Where a declared node is to be created.
+     *
+     * @author Dirk Weigenand
+     */
+    private static final class Declaration {
+        /**
+         * key for grouping nodes into the same rank.
+         */
+        private final String rank;
+
+        /**
+         * the name of the parent cluster.
+         */
+        private final String clusterName;
+
+        /**
+         * Create a declaration.
+         *
+         * @param rank        key for grouping nodes into the same rank
+         * @param clusterName the name of the parent cluster
+         */
+        Declaration(final String rank, final String clusterName) {
+            this.rank = rank;
+            this.clusterName = clusterName;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/**
+ *
+ */
+package org.arachna.dot4j;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link Writer} encoding characters as UTF-8 into a {@link WritableByteChannel}.
+ * <p>
+ * Encoded bytes are collected in a direct {@link ByteBuffer} and written to the
+ * channel whenever the buffer fills up. Encoder and byte buffer are pooled per
+ * thread so generating many files does not allocate them over and over again.
+ * A writer checks the pooled pair out when it is created and hands it back when
+ * it is closed or released; a writer created while the pooled pair of its
+ * thread is checked out, e.g. by a nested or work stealing generation, uses an
+ * encoder and buffer of its own.
+ * <p>
+ * Unlike the writers in <code>java.io</code> this writer is not synchronized
+ * and must only be used by one thread at a time.
+ *
+ * @author Dirk Weigenand
+ */
+final class ChannelWriter extends Writer {
+    /**
+     * capacity of the byte buffer used for encoding.
+     */
+    private static final int CAPACITY = 64 * 1024;
+
+    /**
+     * encoder and byte buffer pooled per thread.
+     */
+    private static final ThreadLocal<Pooled> POOL = ThreadLocal.withInitial(Pooled::new);
+
+    /**
+     * channel to write the encoded characters into.
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * encoder for converting characters into UTF-8.
+     */
+    private final CharsetEncoder encoder;
+
+    /**
+     * buffer for encoded characters.
+     */
+    private final ByteBuffer bytes;
+
+    /**
+     * the pooled encoder and buffer checked out by this writer,
+     * <code>null</code> if this writer uses its own or has released them.
+     */
+    private Pooled pooled;
+
+    /**
+     * whether this writer has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * a high surrogate whose low surrogate has not been written yet,
+     * <code>0</code> if there is none.
+     */
+    private char pendingSurrogate;
+
+    /**
+     * number of bytes written into the channel.
+     */
+    private long bytesWritten;
+
+    /**
+     * Create a writer encoding characters into the given channel.
+     *
+     * @param channel channel to write the encoded characters into.
+     */
+    ChannelWriter(final WritableByteChannel channel) {
+        this.channel = channel;
+
+        final Pooled candidate = POOL.get();
+
+        if (candidate.checkedOut) {
+            this.encoder = newEncoder();
+            this.bytes = ByteBuffer.allocate(CAPACITY);
+        }
+        else {
+            candidate.checkedOut = true;
+            this.pooled = candidate;
+            this.encoder = candidate.encoder.reset();
+            this.bytes = candidate.bytes;
+            this.bytes.clear();
+        }
+    }
+
+    /**
+     * Create a new UTF-8 encoder replacing malformed or unmappable input.
+     *
+     * @return a new UTF-8 encoder
+     */
+    private static CharsetEncoder newEncoder() {
+        return StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final char[] chars, final int offset, final int length) throws IOException {
+        encode(CharBuffer.wrap(chars, offset, length));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final String value, final int offset, final int length) throws IOException {
+        encode(CharBuffer.wrap(value, offset, offset + length));
+    }
+
+    /**
+     * Write the encoded bytes collected so far into the channel.
+     *
+     * @throws IOException when writing into the channel fails
+     */
+    @Override
+    public void flush() throws IOException {
+        bytes.flip();
+
+        while (bytes.hasRemaining()) {
+            bytesWritten += channel.write(bytes);
+        }
+
+        bytes.clear();
+    }
+
+    /**
+     * Return the number of bytes written into the channel so far.
+     *
+     * @return the number of bytes written into the channel so far.
+     */
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Hand the pooled encoder and buffer back without writing pending bytes.
+     * The writer must not be used afterwards. Releasing a writer more than
+     * once or after closing it has no effect.
+     */
+    void release() {
+        closed = true;
+
+        if (pooled != null) {
+            pooled.checkedOut = false;
+            pooled = null;
+        }
+    }
+
+    /**
+     * Finish encoding, write all remaining bytes into the channel and hand the
+     * pooled encoder and buffer back. The channel itself is not closed.
+     *
+     * @throws IOException when writing into the channel fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            finish();
+        }
+        finally {
+            release();
+        }
+    }
+
+    /**
+     * Finish encoding and write all remaining bytes into the channel.
+     *
+     * @throws IOException when writing into the channel fails
+     */
+    private void finish() throws IOException {
+        final CharBuffer rest = CharBuffer.allocate(1);
+
+        if (pendingSurrogate != 0) {
+            rest.put(pendingSurrogate).flip();
+            pendingSurrogate = 0;
+        }
+        else {
+            rest.flip();
+        }
+
+        while (encoder.encode(rest, bytes, true).isOverflow()) {
+            flush();
+        }
+
+        while (encoder.flush(bytes).isOverflow()) {
+            flush();
+        }
+
+        flush();
+    }
+
+    /**
+     * Encode the given characters into the byte buffer, writing into the
+     * channel whenever the buffer is full.
+     *
+     * @param chars characters to encode
+     * @throws IOException when writing into the channel fails
+     */
+    private void encode(final CharBuffer chars) throws IOException {
+        while (pendingSurrogate != 0 && chars.hasRemaining()) {
+            final CharBuffer pair = CharBuffer.wrap(new char[] {pendingSurrogate, chars.get()});
+            pendingSurrogate = 0;
+            encode(pair);
+        }
+
+        CoderResult result = encoder.encode(chars, bytes, false);
+
+        while (result.isOverflow()) {
+            flush();
+            result = encoder.encode(chars, bytes, false);
+        }
+
+        if (chars.hasRemaining()) {
+            pendingSurrogate = chars.get();
+        }
+    }
+
+    /**
+     * Encoder and byte buffer pooled per thread.
+     *
+     * @author Dirk Weigenand
+     */
+    private static final class Pooled {
+        /**
+         * encoder for converting characters into UTF-8.
+         */
+        private final CharsetEncoder encoder = newEncoder();
+
+        /**
+         * buffer for encoded characters.
+         */
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(CAPACITY);
+
+        /**
+         * whether a writer is currently using the encoder and buffer.
+         */
+        private boolean checkedOut;
+    }
+}
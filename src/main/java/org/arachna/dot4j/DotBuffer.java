@@ -0,0 +1,216 @@
+/**
+ *
+ */
+package org.arachna.dot4j;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * A character buffer the {@link DotGenerator} renders into.
+ * <p>
+ * When created with a {@link Writer} the buffer has a fixed capacity and hands
+ * its content over to the writer in large chunks whenever it fills up. Without
+ * a writer the buffer grows as needed and keeps everything in memory.
+ *
+ * @author Dirk Weigenand
+ */
+final class DotBuffer {
+    /**
+     * capacity of a buffer handing its content over to a writer.
+     */
+    private static final int CAPACITY = 8192;
+
+    /**
+     * initial capacity of a buffer keeping its content in memory.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * maximum number of characters needed to render a <code>long</code>.
+     */
+    private static final int MAX_LONG_LENGTH = 20;
+
+    /**
+     * writer to hand the buffer content over to, <code>null</code> when the
+     * buffer should keep its content in memory.
+     */
+    private final Writer writer;
+
+    /**
+     * the buffered characters.
+     */
+    private char[] chars;
+
+    /**
+     * number of characters currently buffered.
+     */
+    private int length;
+
+    /**
+     * number of characters handed over to the writer.
+     */
+    private long written;
+
+    /**
+     * Create a buffer that hands its content over to the given writer.
+     *
+     * @param writer {@link Writer} to write the buffered characters into.
+     */
+    DotBuffer(final Writer writer) {
+        this.writer = writer;
+        this.chars = new char[CAPACITY];
+    }
+
+    /**
+     * Create a buffer that keeps its content in memory.
+     */
+    DotBuffer() {
+        this.writer = null;
+        this.chars = new char[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Append the given string.
+     *
+     * @param value string to append
+     * @return this buffer
+     * @throws IOException when handing over the buffer content fails
+     */
+    DotBuffer append(final String value) throws IOException {
+        final int count = value.length();
+
+        if (!reserve(count)) {
+            writer.write(value);
+            written += count;
+            return this;
+        }
+
+        value.getChars(0, count, chars, length);
+        length += count;
+
+        return this;
+    }
+
+    /**
+     * Append the content of the given buffer.
+     *
+     * @param other buffer whose content to append
+     * @return this buffer
+     * @throws IOException when handing over the buffer content fails
+     */
+    DotBuffer append(final DotBuffer other) throws IOException {
+        if (!reserve(other.length)) {
+            writer.write(other.chars, 0, other.length);
+            written += other.length;
+            return this;
+        }
+
+        System.arraycopy(other.chars, 0, chars, length, other.length);
+        length += other.length;
+
+        return this;
+    }
+
+    /**
+     * Append the given character.
+     *
+     * @param value character to append
+     * @return this buffer
+     * @throws IOException when handing over the buffer content fails
+     */
+    DotBuffer append(final char value) throws IOException {
+        reserve(1);
+        chars[length++] = value;
+
+        return this;
+    }
+
+    /**
+     * Append the decimal representation of the given value without creating an
+     * intermediate string.
+     *
+     * @param value value to append
+     * @return this buffer
+     * @throws IOException when handing over the buffer content fails
+     */
+    DotBuffer append(final long value) throws IOException {
+        if (value < 0) {
+            return append(Long.toString(value));
+        }
+
+        reserve(MAX_LONG_LENGTH);
+
+        int digits = 1;
+
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+
+        long rest = value;
+
+        for (int position = length + digits - 1; position >= length; position--) {
+            chars[position] = (char)('0' + rest % 10);
+            rest /= 10;
+        }
+
+        length += digits;
+
+        return this;
+    }
+
+    /**
+     * Hand the buffered characters over to the writer. Does nothing when this
+     * buffer keeps its content in memory.
+     *
+     * @throws IOException when writing fails
+     */
+    void flush() throws IOException {
+        if (writer != null && length > 0) {
+            writer.write(chars, 0, length);
+            written += length;
+            length = 0;
+        }
+    }
+
+    /**
+     * Return the number of characters handed over to the writer so far.
+     *
+     * @return the number of characters handed over to the writer so far.
+     */
+    long getWritten() {
+        return written;
+    }
+
+    /**
+     * Make room for the given number of characters.
+     *
+     * @param count number of characters to be appended
+     * @return <code>true</code> when the characters fit into the buffer,
+     *         <code>false</code> when they should be written directly.
+     * @throws IOException when handing over the buffer content fails
+     */
+    private boolean reserve(final int count) throws IOException {
+        if (length + count <= chars.length) {
+            return true;
+        }
+
+        if (writer == null) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + count));
+            return true;
+        }
+
+        flush();
+
+        return count <= chars.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+}
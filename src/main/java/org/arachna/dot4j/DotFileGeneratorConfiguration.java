@@ -21,6 +21,17 @@ public final class DotFileGeneratorConfiguration {
      */
     private int fontSize = 12;
 
+    /**
+     * drop streamed edges already contained in the graph. Default is false.
+     */
+    private boolean deduplicateStreamedEdges;
+
+    /**
+     * move edges into the innermost cluster containing both of their end
+     * points. Default is false.
+     */
+    private boolean placeEdgesInCommonCluster;
+
     /**
      * @return the rankDirection
      */
@@ -62,4 +73,32 @@ public final class DotFileGeneratorConfiguration {
     public void setFontSize(final int fontSize) {
         this.fontSize = fontSize;
     }
+
+    /**
+     * @return the deduplicateStreamedEdges
+     */
+    public boolean isDeduplicateStreamedEdges() {
+        return deduplicateStreamedEdges;
+    }
+
+    /**
+     * @param deduplicateStreamedEdges the deduplicateStreamedEdges to set
+     */
+    public void setDeduplicateStreamedEdges(final boolean deduplicateStreamedEdges) {
+        this.deduplicateStreamedEdges = deduplicateStreamedEdges;
+    }
+
+    /**
+     * @return the placeEdgesInCommonCluster
+     */
+    public boolean isPlaceEdgesInCommonCluster() {
+        return placeEdgesInCommonCluster;
+    }
+
+    /**
+     * @param placeEdgesInCommonCluster the placeEdgesInCommonCluster to set
+     */
+    public void setPlaceEdgesInCommonCluster(final boolean placeEdgesInCommonCluster) {
+        this.placeEdgesInCommonCluster = placeEdgesInCommonCluster;
+    }
 }
@@ -4,10 +4,24 @@
 package org.arachna.dot4j;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.RecursiveTask;
 
 import org.arachna.dot4j.model.*;
 import org.arachna.dot4j.model.Attributes.Attribute;
@@ -19,11 +33,32 @@ import org.arachna.dot4j.model.Attributes.Attribute;
  */
 public final class DotGenerator {
 
+    /**
+     * closes the representation of a cluster.
+     */
+    static final String CLUSTER_END = "}\n";
+
     /**
      * Graph to generate <code>.dot</code> file from.
      */
     private final Graph graph;
 
+    /**
+     * whether clusters should be rendered in parallel.
+     */
+    private boolean parallel;
+
+    /**
+     * renderings of the graph and its clusters kept from the last generation
+     * run, <code>null</code> unless incremental generation is enabled.
+     */
+    private Map<Graph, Fragment> renderings;
+
+    /**
+     * listener to report the generation to, <code>null</code> if none.
+     */
+    private GenerationListener listener;
+
     /**
      * Create a dot file generator for the given graph.
      *
@@ -37,6 +72,55 @@ public final class DotGenerator {
         this.graph = graph;
     }
 
+    /**
+     * Enable or disable parallel rendering of clusters.
+     * <p>
+     * In parallel mode every cluster is rendered into its own buffer on a
+     * {@link java.util.concurrent.ForkJoinPool}, either the pool the caller
+     * runs in or the common pool. The buffers are written in the original
+     * order, so the output does not differ from sequential rendering. The graph
+     * must not be modified while it is being generated.
+     *
+     * @param parallel <code>true</code> to render clusters in parallel,
+     *                 <code>false</code> to render them sequentially (the
+     *                 default).
+     */
+    public void setParallel(final boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Enable or disable incremental generation.
+     * <p>
+     * In incremental mode the rendered nodes and edges of the graph and each of
+     * its clusters are kept between calls to <code>generate</code>. Using the
+     * modification stamps of the graph only the nodes or edges of graphs and
+     * clusters modified since the last run are rendered again; everything else
+     * is copied from the previous rendering. Parallel rendering is not used in
+     * incremental mode.
+     *
+     * @param incremental <code>true</code> to keep renderings between runs,
+     *                    <code>false</code> to render the whole graph on every
+     *                    run (the default).
+     */
+    public void setIncremental(final boolean incremental) {
+        this.renderings = incremental ? new IdentityHashMap<>() : null;
+    }
+
+    /**
+     * Register a listener to report the duration of writing the graph
+     * ({@link GenerationPhase#EMIT}) and the written elements to.
+     * <p>
+     * The elements are counted after the <code>.dot</code> file has been
+     * written, so counting is not included in the reported duration.
+     *
+     * @param listener listener to report to, <code>null</code> to report
+     *                 nothing (the default).
+     */
+    public void setGenerationListener(final GenerationListener listener) {
+        this.listener = listener;
+    }
+
     /**
      * Generate the graph into the given {@link Writer}.
      *
@@ -45,79 +129,323 @@ public final class DotGenerator {
      * @throws IOException when writing into the given writer fails for some reason.
      */
     public void generate(final Writer writer) throws IOException {
-        writer.append("digraph ");
-        writer.append("{\n");
-        emitGraph(graph, writer);
-        writer.append("}\n");
+        final long start = listener == null ? 0 : System.nanoTime();
+        final long characters = emit(writer);
+
+        if (listener != null) {
+            listener.phaseCompleted(GenerationPhase.EMIT, System.nanoTime() - start);
+            generationCompleted(characters, -1, 0, 0);
+        }
+    }
+
+    /**
+     * Generate the graph into the given {@link Writer}.
+     *
+     * @param writer {@link Writer} to generate the <code>.dot</code>
+     *               representation of the graph into.
+     * @return the number of written characters.
+     * @throws IOException when writing into the given writer fails for some reason.
+     */
+    private long emit(final Writer writer) throws IOException {
+        final DotBuffer buffer = new DotBuffer(writer);
+        buffer.append("digraph ");
+        buffer.append("{\n");
+
+        if (renderings != null) {
+            final Map<Graph, Fragment> current = new IdentityHashMap<>();
+            render(graph, current).writeTo(buffer);
+            renderings = current;
+        }
+        else {
+            emitGraph(graph, buffer);
+            buffer.append(CLUSTER_END);
+        }
+
+        buffer.flush();
+
+        return buffer.getWritten();
+    }
+
+    /**
+     * Generate the graph into the given {@link Writer} leaving the top level
+     * graph open for further edges.
+     * <p>
+     * The graph including its edges is written immediately. Edges added to
+     * the returned sink are written after them without being added to the
+     * graph; closing the sink completes the <code>.dot</code> file. Incremental
+     * generation is not used when streaming.
+     *
+     * @param writer      {@link Writer} to generate the <code>.dot</code>
+     *                    representation of the graph into.
+     * @param deduplicate whether the sink should drop edges already contained
+     *                    in the graph or written before. Dropping duplicates
+     *                    keeps the ids of all written edges in memory.
+     * @return a sink to write further edges into.
+     * @throws IOException when writing into the given writer fails for some reason.
+     */
+    public EdgeSink stream(final Writer writer, final boolean deduplicate) throws IOException {
+        final long start = listener == null ? 0 : System.nanoTime();
+        final DotBuffer buffer = new DotBuffer(writer);
+        buffer.append("digraph ");
+        buffer.append("{\n");
+        emitGraph(graph, buffer);
+
+        if (listener != null) {
+            listener.phaseCompleted(GenerationPhase.EMIT, System.nanoTime() - start);
+        }
+
+        return new EdgeSink(this, buffer, deduplicate ? collectEdges() : null);
+    }
+
+    /**
+     * Generate the graph into the given {@link Writer} leaving the top level
+     * graph open for further edges. Duplicate edges are not dropped.
+     *
+     * @param writer {@link Writer} to generate the <code>.dot</code>
+     *               representation of the graph into.
+     * @return a sink to write further edges into.
+     * @throws IOException when writing into the given writer fails for some reason.
+     * @see #stream(Writer, boolean)
+     */
+    public EdgeSink stream(final Writer writer) throws IOException {
+        return stream(writer, false);
+    }
+
+    /**
+     * Collect the edges of the graph and its clusters.
+     *
+     * @return the ids of the start and end nodes of the edges of the graph and
+     *         its clusters
+     */
+    private LongPairIndex collectEdges() {
+        final LongPairIndex edges = new LongPairIndex();
+        final Deque<Graph> pending = new ArrayDeque<>();
+        pending.push(graph);
+
+        while (!pending.isEmpty()) {
+            final Graph current = pending.pop();
+
+            for (final Edge edge : current.getEdges()) {
+                edges.putIfAbsent(edge.getStartNode().getId().getValue(), edge.getEndNode().getId().getValue(), 0);
+            }
+
+            for (final Graph cluster : current.getClusters()) {
+                pending.push(cluster);
+            }
+        }
+
+        return edges;
     }
 
     /**
-     * Create common attributes for edges in this graph.
+     * Generate the graph as UTF-8 into the given {@link WritableByteChannel}.
      * <p>
-     * The returned string is empty if there are no common edge attributes
-     * defined.
+     * The characters are encoded into a bounded direct buffer that is written
+     * into the channel in large chunks. The channel is not closed.
      *
+     * @param channel channel to generate the <code>.dot</code> representation
+     *                of the graph into.
+     * @throws IOException when writing into the given channel fails for some reason.
+     */
+    public void generate(final WritableByteChannel channel) throws IOException {
+        final long start = listener == null ? 0 : System.nanoTime();
+        final ChannelWriter writer = new ChannelWriter(channel);
+        final long characters;
+
+        try {
+            characters = emit(writer);
+            writer.close();
+        }
+        finally {
+            writer.release();
+        }
+
+        if (listener != null) {
+            listener.phaseCompleted(GenerationPhase.EMIT, System.nanoTime() - start);
+            generationCompleted(characters, writer.getBytesWritten(), 0, 0);
+        }
+    }
+
+    /**
+     * Count the elements of the graph and report them to the listener, if
+     * any.
+     *
+     * @param characters
+     *            number of written characters
+     * @param bytes
+     *            number of written bytes, <code>-1</code> if unknown
+     * @param streamedEdges
+     *            number of edges written through an {@link EdgeSink}
+     * @param streamedAttributes
+     *            number of attributes of the streamed edges
+     */
+    void generationCompleted(final long characters, final long bytes, final long streamedEdges,
+        final long streamedAttributes) {
+        if (listener == null) {
+            return;
+        }
+
+        long clusters = -1;
+        long nodes = 0;
+        long edges = streamedEdges;
+        long attributes = streamedAttributes;
+        final Deque<Graph> pending = new ArrayDeque<>();
+        pending.push(graph);
+
+        while (!pending.isEmpty()) {
+            final Graph current = pending.pop();
+            clusters++;
+            nodes += current.getNodes().size();
+            edges += current.getEdges().size();
+            attributes += current.getAttributes().size() + current.getNodeAttributes().size()
+                + current.getEdgeAttributes().size();
+
+            for (final Node node : current.getNodes()) {
+                attributes += node.hasAttributes() ? node.getAttributes().size() : 0;
+            }
+
+            for (final Edge edge : current.getEdges()) {
+                attributes += edge.hasAttributes() ? edge.getAttributes().size() : 0;
+            }
+
+            for (final Graph cluster : current.getClusters()) {
+                pending.push(cluster);
+            }
+        }
+
+        listener.generationCompleted(new GenerationStatistics(clusters, nodes, edges, attributes, characters, bytes));
+    }
+
+    /**
+     * Generate the graph as UTF-8 into the given {@link OutputStream}. The
+     * stream is not closed.
+     *
+     * @param stream stream to generate the <code>.dot</code> representation of
+     *               the graph into.
+     * @throws IOException when writing into the given stream fails for some reason.
+     */
+    public void generate(final OutputStream stream) throws IOException {
+        generate(Channels.newChannel(stream));
+        stream.flush();
+    }
+
+    /**
+     * Generate the graph as UTF-8 into the file with the given path. An
+     * existing file will be overwritten.
+     *
+     * @param path path of the <code>.dot</code> file to generate.
+     * @throws IOException when writing the file fails for some reason.
+     */
+    public void generate(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            generate(channel);
+        }
+    }
+
+    /**
+     * Create common attributes for edges in the given graph.
+     * <p>
+     * Nothing is written if there are no common edge attributes defined.
+     *
+     * @param graph  graph whose common edge attributes to emit
+     * @param buffer to write graph into
      * @throws IOException when writing fails
      */
-    private void emitCommonEdgeAttributes(Writer writer) throws IOException {
+    private void emitCommonEdgeAttributes(final Graph graph, final DotBuffer buffer) throws IOException {
         if (!graph.getEdgeAttributes().isEmpty()) {
-            writer.append(String.format("edge %s;", emitAttributes(graph.getEdgeAttributes())));
+            buffer.append("edge ");
+            emitAttributes(graph.getEdgeAttributes(), buffer);
+            buffer.append(';');
         }
     }
 
     /**
-     * Create common attributes for nodes in the graph.
+     * Create common attributes for nodes in the given graph.
      * <p>
-     * The returned string is empty if there are no common node attributes
-     * defined.
+     * Nothing is written if there are no common node attributes defined.
      *
-     * @param writer to write graph into
+     * @param graph  graph whose common node attributes to emit
+     * @param buffer to write graph into
      * @throws IOException when writing fails
      */
-    private void emitCommonNodeAttributes(Writer writer) throws IOException {
-        if (!graph.getEdgeAttributes().isEmpty()) {
-            writer.append(String.format("node %s;", emitAttributes(graph.getNodeAttributes())));
+    private void emitCommonNodeAttributes(final Graph graph, final DotBuffer buffer) throws IOException {
+        if (!graph.getNodeAttributes().isEmpty()) {
+            buffer.append("node ");
+            emitAttributes(graph.getNodeAttributes(), buffer);
+            buffer.append(';');
         }
     }
 
     /**
      * Generate the <code>.dot</code> representation of the given graph.
+     * <p>
+     * Nodes and clusters are emitted before the edges, so every node is
+     * declared in its own (sub)graph and receives that graph's common node
+     * attributes before an edge refers to it.
+     *
+     * @param graph  the graph to generate the <code>.dot</code> representation
+     *               from
+     * @param buffer the {@link DotBuffer} to write the graph into
+     * @throws IOException when writing fails
+     */
+    private void emitGraph(final Graph graph, final DotBuffer buffer) throws IOException {
+        emitGraphHead(graph, buffer);
+        emitClusters(graph.getClusters(), buffer);
+        emitEdges(graph.getEdges(), buffer);
+    }
+
+    /**
+     * Generate the attributes, common attributes and nodes of the given graph.
      *
      * @param graph  the graph to generate the <code>.dot</code> representation
      *               from
-     * @param writer the {@link Writer} object to write the graph into
+     * @param buffer the {@link DotBuffer} to write the graph into
      * @throws IOException when writing fails
      */
-    private void emitGraph(final Graph graph, Writer writer) throws IOException {
-        this.emitGraphAttributes(graph.getAttributes(), writer);
-        emitCommonNodeAttributes(writer);
-        emitCommonEdgeAttributes(writer);
-        emitNodes(graph, writer);
-        emitEdges(graph.getEdges(), writer);
-        emitClusters(graph.getClusters(), writer);
+    private void emitGraphHead(final Graph graph, final DotBuffer buffer) throws IOException {
+        emitGraphAttributes(graph.getAttributes(), buffer);
+        emitCommonNodeAttributes(graph, buffer);
+        emitCommonEdgeAttributes(graph, buffer);
+        emitNodes(graph, buffer);
     }
 
     /**
      * Generate the attribute representation for the given attributes.
      *
      * @param attributes attributes of a graph.
+     * @param buffer     to write the attributes into
      * @throws IOException when writing fails
      */
-    private void emitGraphAttributes(final Attributes attributes, Writer writer) throws IOException {
+    private void emitGraphAttributes(final Attributes attributes, final DotBuffer buffer) throws IOException {
         for (final Attribute attribute : attributes) {
-            writer.append(String.format("%s = \"%s\";\n", attribute.getName(), attribute.getValue()));
+            buffer.append(attribute.getName()).append(" = \"").append(attribute.getValue()).append("\";\n");
         }
     }
 
     /**
      * Emit the edges of the graph.
      *
-     * @param edges edges to generate <code>.dot</code> representation for.
+     * @param edges  edges to generate <code>.dot</code> representation for.
+     * @param writer to write the edges into
      * @throws IOException when writing fails
      */
-    void emitEdges(final Collection<Edge> edges, Writer writer) throws IOException {
+    void emitEdges(final Collection<Edge> edges, final Writer writer) throws IOException {
+        final DotBuffer buffer = new DotBuffer(writer);
+        emitEdges(edges, buffer);
+        buffer.flush();
+    }
+
+    /**
+     * Emit the edges of the graph.
+     *
+     * @param edges  edges to generate <code>.dot</code> representation for.
+     * @param buffer to write the edges into
+     * @throws IOException when writing fails
+     */
+    private void emitEdges(final Collection<Edge> edges, final DotBuffer buffer) throws IOException {
         for (final Edge edge : edges) {
-            writer.append(emitEdge(edge));
+            emitEdge(edge, buffer);
         }
     }
 
@@ -128,56 +456,255 @@ public final class DotGenerator {
      * @return the <code>.dot</code> representation of the given edge.
      */
     String emitEdge(final Edge edge) {
-        return String.format("node%s -> node%s%s;\n", edge.getStartNode().getId(), edge.getEndNode().getId(),
-                emitAttributes(edge.getAttributes()));
+        final DotBuffer buffer = new DotBuffer();
+
+        try {
+            emitEdge(edge, buffer);
+        }
+        catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return buffer.toString();
+    }
+
+    /**
+     * Emit the <code>.dot</code> representation of a single edge.
+     *
+     * @param edge   edge to generate <code>.dot</code> representation for.
+     * @param buffer to write the edge into
+     * @throws IOException when writing fails
+     */
+    private void emitEdge(final Edge edge, final DotBuffer buffer) throws IOException {
+        emitEdge(edge.getStartNode(), edge.getEndNode(), edge.hasAttributes() ? edge.getAttributes() : null, buffer);
+    }
+
+    /**
+     * Emit the <code>.dot</code> representation of an edge between the given
+     * nodes.
+     *
+     * @param startNode  start node of the edge
+     * @param endNode    end node of the edge
+     * @param attributes attributes of the edge, may be <code>null</code>
+     * @param buffer     to write the edge into
+     * @throws IOException when writing fails
+     */
+    void emitEdge(final Node startNode, final Node endNode, final Attributes attributes, final DotBuffer buffer)
+        throws IOException {
+        buffer.append("node").append(startNode.getId().getValue());
+        buffer.append(" -> node").append(endNode.getId().getValue());
+
+        if (attributes != null) {
+            emitAttributes(attributes, buffer);
+        }
+
+        buffer.append(";\n");
     }
 
     /**
      * Emit the clusters of the graph.
      *
      * @param clusters a collection of clusters contained in this graph.
+     * @param writer   to write the clusters into
      * @throws IOException when writing fails
      */
-    void emitClusters(final Collection<Graph> clusters, Writer writer) throws IOException {
+    void emitClusters(final Collection<Graph> clusters, final Writer writer) throws IOException {
+        final DotBuffer buffer = new DotBuffer(writer);
+        emitClusters(clusters, buffer);
+        buffer.flush();
+    }
+
+    /**
+     * Emit the clusters of the graph.
+     *
+     * @param clusters a collection of clusters contained in this graph.
+     * @param buffer   to write the clusters into
+     * @throws IOException when writing fails
+     */
+    private void emitClusters(final Collection<Graph> clusters, final DotBuffer buffer) throws IOException {
+        if (parallel) {
+            final List<ClusterTask> tasks = forkClusterTasks(clusters);
+
+            for (final ClusterTask task : tasks) {
+                task.join().writeTo(buffer);
+            }
+
+            return;
+        }
+
+        for (final Graph cluster : clusters) {
+            emitCluster(cluster, buffer);
+        }
+    }
+
+    /**
+     * Start rendering the given clusters asynchronously.
+     *
+     * @param clusters clusters to render
+     * @return the forked tasks in the order of the given clusters
+     */
+    private List<ClusterTask> forkClusterTasks(final Collection<Graph> clusters) {
+        final List<ClusterTask> tasks = new ArrayList<>(clusters.size());
+
         for (final Graph cluster : clusters) {
-            emitCluster(cluster, writer);
+            final ClusterTask task = new ClusterTask(cluster);
+            task.fork();
+            tasks.add(task);
+        }
+
+        return tasks;
+    }
+
+    /**
+     * Bring the rendering of the given graph up to date, rendering only the
+     * parts modified since the last generation run.
+     *
+     * @param cluster graph or cluster to render
+     * @param current renderings of the current run
+     * @return the up to date rendering of the given graph.
+     * @throws IOException when writing fails
+     */
+    private Fragment render(final Graph cluster, final Map<Graph, Fragment> current) throws IOException {
+        Fragment fragment = renderings.get(cluster);
+
+        if (fragment == null) {
+            fragment = new Fragment();
+        }
+
+        current.put(cluster, fragment);
+
+        final long version = cluster.getVersion();
+
+        if (fragment.version == version) {
+            keep(cluster, current);
+            return fragment;
+        }
+
+        final long nodeVersion = cluster.getNodeVersion();
+
+        if (fragment.nodeVersion != nodeVersion) {
+            final DotBuffer head = new DotBuffer();
+
+            if (cluster != graph) {
+                emitClusterHeader(cluster, head);
+            }
+
+            emitGraphHead(cluster, head);
+            fragment.head = head;
+            fragment.nodeVersion = nodeVersion;
+        }
+
+        final long edgeVersion = cluster.getEdgeVersion();
+
+        if (fragment.edgeVersion != edgeVersion) {
+            final DotBuffer edges = new DotBuffer();
+            emitEdges(cluster.getEdges(), edges);
+            fragment.edges = edges;
+            fragment.edgeVersion = edgeVersion;
+        }
+
+        final List<Fragment> clusters = new ArrayList<>(cluster.getClusters().size());
+
+        for (final Graph child : cluster.getClusters()) {
+            clusters.add(render(child, current));
+        }
+
+        fragment.clusters = clusters;
+        fragment.version = version;
+
+        return fragment;
+    }
+
+    /**
+     * Carry the renderings of the clusters of an unmodified graph over into
+     * the current run.
+     *
+     * @param cluster unmodified graph or cluster
+     * @param current renderings of the current run
+     */
+    private void keep(final Graph cluster, final Map<Graph, Fragment> current) {
+        for (final Graph child : cluster.getClusters()) {
+            current.put(child, renderings.get(child));
+            keep(child, current);
         }
     }
 
     /**
      * Emit the nodes of this graph.
+     * <p>
+     * Ranked nodes are emitted first, grouped by rank. The remaining nodes
+     * follow in the order they were created.
      *
-     * @param graph whose nodes to emit.
-     * @param writer to write into
+     * @param graph  whose nodes to emit.
+     * @param buffer to write into
      * @throws IOException when writing fails
      */
-    private void emitNodes(final Graph graph, Writer writer) throws IOException {
-        Set<Id> emittedNodes = new HashSet<>();
+    private void emitNodes(final Graph graph, final DotBuffer buffer) throws IOException {
+        final Map<String, Collection<Node>> rankedNodes = graph.getRankedNodes();
 
-        for (Collection<Node> nodes: graph.getRankedNodes().values()) {
-            writer.write("\n{\nrank=same;\n");
-            for (Node node: nodes) {
-                emittedNodes.add(node.getId());
-                writer.append(emitNode(node));
+        if (rankedNodes.isEmpty()) {
+            for (final Node node : graph.getNodes()) {
+                emitNode(node, buffer);
             }
-            writer.write("\n}\n");
+
+            return;
         }
 
-        for (Node node : graph.getNodes().stream().filter(node -> !emittedNodes.contains(node.getId())).toList()) {
-            writer.append(emitNode(node));
+        final Set<Node> emittedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (final Collection<Node> nodes : rankedNodes.values()) {
+            buffer.append("\n{\nrank=same;\n");
+
+            for (final Node node : nodes) {
+                emittedNodes.add(node);
+                emitNode(node, buffer);
+            }
+
+            buffer.append("\n}\n");
         }
+
+        for (final Node node : graph.getNodes()) {
+            if (!emittedNodes.contains(node)) {
+                emitNode(node, buffer);
+            }
+        }
+    }
+
+    /**
+     * Emit a cluster of this graph.
+     *
+     * @param cluster cluster to emit
+     * @param writer  to write the cluster into
+     * @throws IOException when writing fails
+     */
+    void emitCluster(final Graph cluster, final Writer writer) throws IOException {
+        final DotBuffer buffer = new DotBuffer(writer);
+        emitCluster(cluster, buffer);
+        buffer.flush();
     }
 
     /**
      * Emit a cluster of this graph.
      *
      * @param cluster cluster to emit
+     * @param buffer  to write the cluster into
+     * @throws IOException when writing fails
+     */
+    private void emitCluster(final Graph cluster, final DotBuffer buffer) throws IOException {
+        emitClusterHeader(cluster, buffer);
+        emitGraph(cluster, buffer);
+        buffer.append(CLUSTER_END);
+    }
+
+    /**
+     * Emit the header opening the representation of a cluster.
+     *
+     * @param cluster cluster to emit
+     * @param buffer  to write the cluster into
      * @throws IOException when writing fails
      */
-    void emitCluster(final Graph cluster, Writer writer) throws IOException {
-        writer.append(String.format("subgraph cluster%s {\n", cluster.getId()));
-        emitGraph(cluster, writer);
-        writer.append("}\n");
+    private void emitClusterHeader(final Graph cluster, final DotBuffer buffer) throws IOException {
+        buffer.append("subgraph cluster").append(cluster.getId().getValue()).append(" {\n");
     }
 
     /**
@@ -187,7 +714,33 @@ public final class DotGenerator {
      * @return the <code>.dot</code> representation of the given node.
      */
     String emitNode(final Node node) {
-        return String.format("node%s%s;\n", node.getId(), emitAttributes(node.getAttributes()));
+        final DotBuffer buffer = new DotBuffer();
+
+        try {
+            emitNode(node, buffer);
+        }
+        catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return buffer.toString();
+    }
+
+    /**
+     * Emit a node.
+     *
+     * @param node   node to emit
+     * @param buffer to write the node into
+     * @throws IOException when writing fails
+     */
+    private void emitNode(final Node node, final DotBuffer buffer) throws IOException {
+        buffer.append("node").append(node.getId().getValue());
+
+        if (node.hasAttributes()) {
+            emitAttributes(node.getAttributes(), buffer);
+        }
+
+        buffer.append(";\n");
     }
 
     /**
@@ -196,24 +749,192 @@ public final class DotGenerator {
      * @param attributes the attributes to emit
      * @return the <code>.dot</code> representation of the given attributes.
      */
-    StringBuilder emitAttributes(final Attributes attributes) {
-        final StringBuilder result = new StringBuilder();
+    String emitAttributes(final Attributes attributes) {
+        final DotBuffer buffer = new DotBuffer();
+
+        try {
+            emitAttributes(attributes, buffer);
+        }
+        catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return buffer.toString();
+    }
+
+    /**
+     * Emit attributes.
+     * <p>
+     * Values enclosed in angle brackets are HTML-like labels and written
+     * without quotes.
+     *
+     * @param attributes the attributes to emit
+     * @param buffer     to write the attributes into
+     * @throws IOException when writing fails
+     */
+    private void emitAttributes(final Attributes attributes, final DotBuffer buffer) throws IOException {
+        if (attributes.isEmpty()) {
+            return;
+        }
 
-        if (!attributes.isEmpty()) {
-            result.append(" [");
+        buffer.append(" [");
 
-            for (final Attributes.Attribute attribute : attributes) {
-                if (attribute.getValue().startsWith("<") && attribute.getValue().endsWith(">")) {
-                    result.append(String.format(" %s=%s", attribute.getName(), attribute.getValue()));
-                } else {
-                    result.append(String.format(" %s=\"%s\"", attribute.getName(), attribute.getValue()));
+        for (final Attribute attribute : attributes) {
+            final String value = attribute.getValue();
+            buffer.append(' ').append(attribute.getName());
 
-                }
+            if (isHtmlLike(value)) {
+                buffer.append('=').append(value);
             }
+            else {
+                buffer.append("=\"").append(value).append('"');
+            }
+        }
 
-            result.append("]");
+        buffer.append(']');
+    }
+
+    /**
+     * Determine whether the given attribute value is a HTML-like label.
+     *
+     * @param value attribute value to examine
+     * @return <code>true</code> when the value is enclosed in angle brackets,
+     *         <code>false</code> otherwise.
+     */
+    private static boolean isHtmlLike(final String value) {
+        final int length = value.length();
+
+        return length > 0 && value.charAt(0) == '<' && value.charAt(length - 1) == '>';
+    }
+
+    /**
+     * The rendered representation of a cluster: its header, attributes and
+     * nodes followed by the representations of its sub clusters and its
+     * edges.
+     * <p>
+     * In incremental mode a fragment also records the modification stamps of
+     * the cluster it was rendered from.
+     *
+     * @author Dirk Weigenand
+     */
+    private static final class Fragment {
+        /**
+         * header, attributes and nodes of the cluster.
+         */
+        private DotBuffer head;
+
+        /**
+         * representations of the sub clusters.
+         */
+        private List<Fragment> clusters;
+
+        /**
+         * edges of the cluster.
+         */
+        private DotBuffer edges;
+
+        /**
+         * modification stamp of the rendered cluster.
+         */
+        private long version;
+
+        /**
+         * modification stamp of the rendered head.
+         */
+        private long nodeVersion;
+
+        /**
+         * modification stamp of the rendered edges.
+         */
+        private long edgeVersion;
+
+        /**
+         * Create an empty fragment to be filled by incremental rendering.
+         */
+        Fragment() {
         }
 
-        return result;
+        /**
+         * Create a fragment from the given parts.
+         *
+         * @param head     header, attributes and nodes of the cluster.
+         * @param clusters representations of the sub clusters.
+         * @param edges    edges of the cluster.
+         */
+        Fragment(final DotBuffer head, final List<Fragment> clusters, final DotBuffer edges) {
+            this.head = head;
+            this.clusters = clusters;
+            this.edges = edges;
+        }
+
+        /**
+         * Write this fragment into the given buffer.
+         *
+         * @param buffer buffer to write this fragment into
+         * @throws IOException when writing fails
+         */
+        void writeTo(final DotBuffer buffer) throws IOException {
+            buffer.append(head);
+
+            for (final Fragment cluster : clusters) {
+                cluster.writeTo(buffer);
+            }
+
+            buffer.append(edges);
+            buffer.append(CLUSTER_END);
+        }
+    }
+
+    /**
+     * Task rendering a cluster and, through forked sub tasks, its sub clusters.
+     *
+     * @author Dirk Weigenand
+     */
+    private final class ClusterTask extends RecursiveTask<Fragment> {
+        /**
+         * serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * the cluster to render.
+         */
+        private final transient Graph cluster;
+
+        /**
+         * Create a task rendering the given cluster.
+         *
+         * @param cluster the cluster to render.
+         */
+        ClusterTask(final Graph cluster) {
+            this.cluster = cluster;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected Fragment compute() {
+            final List<ClusterTask> tasks = forkClusterTasks(cluster.getClusters());
+            final DotBuffer head = new DotBuffer();
+            final DotBuffer edges = new DotBuffer();
+
+            try {
+                emitClusterHeader(cluster, head);
+                emitGraphHead(cluster, head);
+                emitEdges(cluster.getEdges(), edges);
+            }
+            catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            final List<Fragment> clusters = new ArrayList<>(tasks.size());
+
+            for (final ClusterTask task : tasks) {
+                clusters.add(task.join());
+            }
+
+            return new Fragment(head, clusters, edges);
+        }
     }
 }
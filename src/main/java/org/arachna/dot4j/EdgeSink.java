@@ -0,0 +1,143 @@
+/**
+ *
+ */
+package org.arachna.dot4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.arachna.dot4j.model.Attributes;
+import org.arachna.dot4j.model.LongPairIndex;
+import org.arachna.dot4j.model.Node;
+
+/**
+ * Sink writing edges directly into the output of a {@link DotGenerator}
+ * without adding them to the graph.
+ * <p>
+ * A sink is obtained from {@link DotGenerator#stream(java.io.Writer, boolean)}
+ * after the graph, its nodes and clusters have been written. Edges pushed into
+ * the sink are written immediately through a bounded buffer, so the memory
+ * used does not depend on the number of edges unless duplicate edges are to be
+ * dropped. Closing the sink completes the <code>.dot</code> file.
+ *
+ * @author Dirk Weigenand
+ */
+public final class EdgeSink implements Closeable {
+    /**
+     * generator rendering the edges.
+     */
+    private final DotGenerator generator;
+
+    /**
+     * buffer to write the edges into.
+     */
+    private final DotBuffer buffer;
+
+    /**
+     * edges written so far, <code>null</code> when duplicate edges should not
+     * be dropped.
+     */
+    private final LongPairIndex written;
+
+    /**
+     * number of edges written.
+     */
+    private long edgeCount;
+
+    /**
+     * number of attributes of the edges written.
+     */
+    private long attributeCount;
+
+    /**
+     * whether the sink has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * Create a sink writing into the given buffer.
+     *
+     * @param generator generator rendering the edges.
+     * @param buffer    buffer to write the edges into.
+     * @param written   edges already written, <code>null</code> when duplicate
+     *                  edges should not be dropped.
+     */
+    EdgeSink(final DotGenerator generator, final DotBuffer buffer, final LongPairIndex written) {
+        this.generator = generator;
+        this.buffer = buffer;
+        this.written = written;
+    }
+
+    /**
+     * Write an edge between the given nodes.
+     *
+     * @param startNode start node of the edge
+     * @param endNode   end node of the edge
+     * @return <code>true</code> when the edge was written, <code>false</code>
+     *         when it was dropped as a duplicate.
+     * @throws IOException when writing fails
+     */
+    public boolean addEdge(final Node startNode, final Node endNode) throws IOException {
+        return addEdge(startNode, endNode, null);
+    }
+
+    /**
+     * Write an edge with the given attributes between the given nodes.
+     *
+     * @param startNode  start node of the edge
+     * @param endNode    end node of the edge
+     * @param attributes attributes of the edge, may be <code>null</code>
+     * @return <code>true</code> when the edge was written, <code>false</code>
+     *         when it was dropped as a duplicate.
+     * @throws IOException when writing fails
+     */
+    public boolean addEdge(final Node startNode, final Node endNode, final Attributes attributes)
+        throws IOException {
+        if (startNode == null || endNode == null) {
+            throw new IllegalArgumentException("start and end node must not be null!");
+        }
+
+        if (closed) {
+            throw new IllegalStateException("EdgeSink has already been closed!");
+        }
+
+        if (written != null
+            && written.putIfAbsent(startNode.getId().getValue(), endNode.getId().getValue(), 0) != LongPairIndex.ABSENT) {
+            return false;
+        }
+
+        generator.emitEdge(startNode, endNode, attributes, buffer);
+        edgeCount++;
+
+        if (attributes != null) {
+            attributeCount += attributes.size();
+        }
+
+        return true;
+    }
+
+    /**
+     * Return the number of edges written through this sink.
+     *
+     * @return the number of edges written through this sink.
+     */
+    public long getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Complete the <code>.dot</code> file and flush the output. The
+     * underlying writer is not closed.
+     *
+     * @throws IOException when writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            buffer.append(DotGenerator.CLUSTER_END);
+            buffer.flush();
+            generator.generationCompleted(buffer.getWritten(), -1, edgeCount, attributeCount);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ *
+ */
+package org.arachna.dot4j;
+
+/**
+ * Listener notified about the progress of generating a <code>.dot</code> file,
+ * e.g. to record metrics.
+ * <p>
+ * Listeners are registered with
+ * {@link AbstractDotFileGenerator#setGenerationListener(GenerationListener)}
+ * or {@link DotGenerator#setGenerationListener(GenerationListener)}. Without a
+ * listener no timing or counting takes place. Listeners shared between
+ * generators running concurrently have to be thread safe.
+ *
+ * @author Dirk Weigenand
+ */
+public interface GenerationListener {
+    /**
+     * Called when a phase of the generation has been completed.
+     *
+     * @param phase
+     *            the completed phase
+     * @param duration
+     *            duration of the phase in nanoseconds
+     */
+    void phaseCompleted(GenerationPhase phase, long duration);
+
+    /**
+     * Called when a <code>.dot</code> file has been completely written.
+     *
+     * @param statistics
+     *            what has been written
+     */
+    void generationCompleted(GenerationStatistics statistics);
+}
@@ -0,0 +1,38 @@
+/**
+ *
+ */
+package org.arachna.dot4j;
+
+/**
+ * Phases of generating a <code>.dot</code> file reported to a
+ * {@link GenerationListener}.
+ *
+ * @author Dirk Weigenand
+ */
+public enum GenerationPhase {
+    /**
+     * building the graph, i.e.
+     * {@link AbstractDotFileGenerator#generateInternal()}.
+     */
+    BUILD,
+
+    /**
+     * transforming the built graph, i.e. placing edges in their common
+     * clusters if configured and
+     * {@link AbstractDotFileGenerator#transformGraph(org.arachna.dot4j.model.Graph)},
+     * e.g. merging edges.
+     */
+    TRANSFORM,
+
+    /**
+     * writing the graph, its clusters, nodes and edges by the
+     * {@link DotGenerator}.
+     */
+    EMIT,
+
+    /**
+     * writing edges streamed into an {@link EdgeSink} and completing the
+     * <code>.dot</code> file.
+     */
+    STREAM
+}
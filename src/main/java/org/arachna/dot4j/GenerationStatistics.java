@@ -0,0 +1,121 @@
+/**
+ *
+ */
+package org.arachna.dot4j;
+
+/**
+ * Counts of the elements written into a <code>.dot</code> file.
+ *
+ * @author Dirk Weigenand
+ */
+public final class GenerationStatistics {
+    /**
+     * number of written clusters.
+     */
+    private final long clusters;
+
+    /**
+     * number of written nodes.
+     */
+    private final long nodes;
+
+    /**
+     * number of written edges, including streamed edges.
+     */
+    private final long edges;
+
+    /**
+     * number of written attributes of graphs, nodes and edges.
+     */
+    private final long attributes;
+
+    /**
+     * number of written characters.
+     */
+    private final long characters;
+
+    /**
+     * number of written bytes, <code>-1</code> when generating into a
+     * {@link java.io.Writer}.
+     */
+    private final long bytes;
+
+    /**
+     * Create statistics with the given counts.
+     *
+     * @param clusters
+     *            number of written clusters
+     * @param nodes
+     *            number of written nodes
+     * @param edges
+     *            number of written edges
+     * @param attributes
+     *            number of written attributes
+     * @param characters
+     *            number of written characters
+     * @param bytes
+     *            number of written bytes, <code>-1</code> if unknown
+     */
+    GenerationStatistics(final long clusters, final long nodes, final long edges, final long attributes,
+        final long characters, final long bytes) {
+        this.clusters = clusters;
+        this.nodes = nodes;
+        this.edges = edges;
+        this.attributes = attributes;
+        this.characters = characters;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return the number of written clusters
+     */
+    public long getClusters() {
+        return clusters;
+    }
+
+    /**
+     * @return the number of written nodes
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the number of written edges, including streamed edges
+     */
+    public long getEdges() {
+        return edges;
+    }
+
+    /**
+     * @return the number of written attributes of graphs, nodes and edges,
+     *         including common node and edge attributes
+     */
+    public long getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @return the number of written characters
+     */
+    public long getCharacters() {
+        return characters;
+    }
+
+    /**
+     * @return the number of written UTF-8 encoded bytes, <code>-1</code> when
+     *         generating into a {@link java.io.Writer}
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "clusters=" + clusters + ", nodes=" + nodes + ", edges=" + edges + ", attributes=" + attributes
+            + ", characters=" + characters + ", bytes=" + bytes;
+    }
+}
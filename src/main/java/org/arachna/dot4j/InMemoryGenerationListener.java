@@ -0,0 +1,83 @@
+/**
+ *
+ */
+package org.arachna.dot4j;
+
+import java.util.Arrays;
+
+/**
+ * {@link GenerationListener} keeping the durations of the phases and the
+ * statistics of the last generated <code>.dot</code> file in memory.
+ * Durations of the same phase are summed up over several generation runs until
+ * {@link #reset()} is called. This listener is thread safe.
+ *
+ * @author Dirk Weigenand
+ */
+public final class InMemoryGenerationListener implements GenerationListener {
+    /**
+     * summed up durations in nanoseconds indexed by phase.
+     */
+    private final long[] durations = new long[GenerationPhase.values().length];
+
+    /**
+     * number of completed generation runs.
+     */
+    private long generations;
+
+    /**
+     * statistics of the last completed generation run.
+     */
+    private GenerationStatistics statistics;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void phaseCompleted(final GenerationPhase phase, final long duration) {
+        durations[phase.ordinal()] += duration;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void generationCompleted(final GenerationStatistics statistics) {
+        this.statistics = statistics;
+        generations++;
+    }
+
+    /**
+     * Return the summed up duration of the given phase.
+     *
+     * @param phase
+     *            phase to get the duration of
+     * @return the summed up duration of the given phase in nanoseconds.
+     */
+    public synchronized long getDuration(final GenerationPhase phase) {
+        return durations[phase.ordinal()];
+    }
+
+    /**
+     * @return the number of completed generation runs
+     */
+    public synchronized long getGenerations() {
+        return generations;
+    }
+
+    /**
+     * @return the statistics of the last completed generation run,
+     *         <code>null</code> if there was none.
+     */
+    public synchronized GenerationStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Forget all recorded durations and statistics.
+     */
+    public synchronized void reset() {
+        Arrays.fill(durations, 0);
+        generations = 0;
+        statistics = null;
+    }
+}
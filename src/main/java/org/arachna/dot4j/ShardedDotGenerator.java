@@ -0,0 +1,187 @@
+/**
+ *
+ */
+package org.arachna.dot4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.arachna.dot4j.model.Graph;
+
+/**
+ * Generator for graphs split into several shards, e.g. by a
+ * {@link org.arachna.dot4j.model.GraphPartitioner}. Every shard is written
+ * into a <code>.dot</code> file of its own, so GraphViz can lay them out
+ * independently.
+ * <p>
+ * The shards are generated in parallel on a thread pool of their own, since
+ * writing the files blocks, one thread per available processor at most. The
+ * shards must not be modified while they are being generated.
+ *
+ * @author Dirk Weigenand
+ */
+public class ShardedDotGenerator {
+    /**
+     * the shards to generate.
+     */
+    private final List<Graph> shards;
+
+    /**
+     * Create a generator for the given shards.
+     *
+     * @param shards the shards to generate.
+     */
+    public ShardedDotGenerator(final List<Graph> shards) {
+        if (shards == null) {
+            throw new IllegalArgumentException("Shards must not be null!");
+        }
+
+        this.shards = new ArrayList<>(shards);
+    }
+
+    /**
+     * Generate every shard into a file <code>&lt;prefix&gt;&lt;n&gt;.dot</code>
+     * in the given directory, <code>n</code> being the position of the shard.
+     * Existing files will be overwritten.
+     * <p>
+     * When generating a shard fails the shards not yet generated are
+     * cancelled. The method returns only after all shards have been generated
+     * or cancelled.
+     *
+     * @param directory directory to generate the <code>.dot</code> files into.
+     * @param prefix    prefix of the file names.
+     * @return the paths of the generated files in the order of the shards.
+     * @throws IOException when writing one of the files fails for some reason
+     *                     or the calling thread is interrupted.
+     */
+    public List<Path> generate(final Path directory, final String prefix) throws IOException {
+        final List<Path> paths = new ArrayList<>(shards.size());
+
+        for (int i = 0; i < shards.size(); i++) {
+            paths.add(directory.resolve(prefix + i + ".dot"));
+        }
+
+        if (shards.isEmpty()) {
+            return Collections.unmodifiableList(paths);
+        }
+
+        final ExecutorService executor =
+            Executors.newFixedThreadPool(Math.min(shards.size(), Runtime.getRuntime().availableProcessors()));
+        final List<Future<?>> tasks = new ArrayList<>(shards.size());
+        Throwable failure = null;
+
+        try {
+            for (int i = 0; i < shards.size(); i++) {
+                final Graph shard = shards.get(i);
+                final Path path = paths.get(i);
+                tasks.add(executor.submit(() -> {
+                    new DotGenerator(shard).generate(path);
+                    return null;
+                }));
+            }
+
+            for (final Future<?> task : tasks) {
+                try {
+                    task.get();
+                }
+                catch (final ExecutionException e) {
+                    failure = failed(failure, e.getCause(), tasks);
+                }
+                catch (final CancellationException e) {
+                    // cancelled after another shard failed
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = failed(failure, new InterruptedIOException("Generating shards was interrupted!"), tasks);
+                    break;
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+            failure = awaitTermination(executor, failure);
+        }
+
+        if (failure instanceof IOException) {
+            throw (IOException)failure;
+        }
+
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException)failure;
+        }
+
+        if (failure instanceof Error) {
+            throw (Error)failure;
+        }
+
+        return Collections.unmodifiableList(paths);
+    }
+
+    /**
+     * Record the given failure and cancel all tasks not yet done.
+     *
+     * @param failure the first failure so far or <code>null</code>.
+     * @param cause   the failure to record.
+     * @param tasks   the tasks to cancel.
+     * @return the first failure, with later ones suppressed by it.
+     */
+    private static Throwable failed(final Throwable failure, final Throwable cause, final List<Future<?>> tasks) {
+        for (final Future<?> task : tasks) {
+            task.cancel(true);
+        }
+
+        if (failure == null) {
+            return cause;
+        }
+
+        failure.addSuppressed(cause);
+
+        return failure;
+    }
+
+    /**
+     * Wait for the tasks still running on the given executor, which has been
+     * shut down, to terminate.
+     *
+     * @param executor the executor to wait for.
+     * @param failure  the first failure so far or <code>null</code>.
+     * @return the first failure, including an interruption while waiting.
+     */
+    private static Throwable awaitTermination(final ExecutorService executor, final Throwable failure) {
+        boolean interrupted = Thread.interrupted();
+
+        try {
+            while (true) {
+                try {
+                    if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                        break;
+                    }
+                }
+                catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (interrupted && failure == null) {
+            return new InterruptedIOException("Generating shards was interrupted!");
+        }
+
+        return failure;
+    }
+}
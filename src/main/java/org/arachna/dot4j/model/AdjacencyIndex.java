@@ -0,0 +1,391 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+/**
+ * The edges of a {@link Graph} and its clusters indexed by start and end node,
+ * answering degree and neighbour queries in constant time.
+ * <p>
+ * The nodes connected by edges are numbered densely in the order they are
+ * first seen. Outgoing and incoming edges are kept in compressed sparse row
+ * form: the edges of node <code>n</code> occupy the range from
+ * <code>offsets[n]</code> to <code>offsets[n + 1]</code> of flat arrays. An
+ * index is a snapshot obtained from {@link Graph#getAdjacency()}.
+ * <p>
+ * The index is not maintained incrementally: any change of the topology of the
+ * graph or one of its clusters, e.g. adding a single edge, makes
+ * {@link Graph#getAdjacency()} build a complete new index in time linear in the
+ * number of edges. Algorithms alternating between modifying edges and querying
+ * the index should therefore collect their modifications and apply them after
+ * their queries, as {@link TransitiveReductionAlgorithm} does.
+ *
+ * @author Dirk Weigenand
+ */
+public final class AdjacencyIndex {
+    /**
+     * topology stamp of the graph when this index was built.
+     */
+    private final long version;
+
+    /**
+     * dense node numbers indexed by node id.
+     */
+    private final LongPairIndex numbers = new LongPairIndex();
+
+    /**
+     * the nodes connected by edges, indexed by their numbers.
+     */
+    private final List<Node> nodes = new ArrayList<Node>();
+
+    /**
+     * start of the outgoing edges of each node in {@link #targets}, the last
+     * entry marking the end of the edges.
+     */
+    private final int[] offsets;
+
+    /**
+     * end nodes of the edges, sorted by start node.
+     */
+    private final int[] targets;
+
+    /**
+     * the edges in the order of {@link #targets}.
+     */
+    private final Edge[] edges;
+
+    /**
+     * start of the incoming edges of each node in {@link #sources}, the last
+     * entry marking the end of the edges.
+     */
+    private final int[] reverseOffsets;
+
+    /**
+     * start nodes of the edges, sorted by end node.
+     */
+    private final int[] sources;
+
+    /**
+     * the edges in the order of {@link #sources}.
+     */
+    private final Edge[] reverseEdges;
+
+    /**
+     * Build the index of the edges of the given graph and its clusters.
+     *
+     * @param graph
+     *            graph to index the edges of
+     */
+    AdjacencyIndex(final Graph graph) {
+        version = graph.getTopologyVersion();
+
+        final List<Edge> collected = new ArrayList<Edge>();
+        final Deque<Graph> pending = new ArrayDeque<Graph>();
+        pending.push(graph);
+
+        while (!pending.isEmpty()) {
+            final Graph current = pending.pop();
+            collected.addAll(current.getEdges());
+
+            for (final Graph cluster : current.getClusters()) {
+                pending.push(cluster);
+            }
+        }
+
+        final int[] starts = new int[collected.size()];
+        final int[] ends = new int[collected.size()];
+
+        for (int i = 0; i < starts.length; i++) {
+            final Edge edge = collected.get(i);
+            starts[i] = number(edge.getStartNode());
+            ends[i] = number(edge.getEndNode());
+        }
+
+        offsets = offsets(starts);
+        reverseOffsets = offsets(ends);
+        targets = new int[starts.length];
+        edges = new Edge[starts.length];
+        sources = new int[starts.length];
+        reverseEdges = new Edge[starts.length];
+
+        final int[] next = offsets.clone();
+        final int[] reverseNext = reverseOffsets.clone();
+
+        for (int i = 0; i < starts.length; i++) {
+            final Edge edge = collected.get(i);
+            final int slot = next[starts[i]]++;
+            targets[slot] = ends[i];
+            edges[slot] = edge;
+
+            final int reverseSlot = reverseNext[ends[i]]++;
+            sources[reverseSlot] = starts[i];
+            reverseEdges[reverseSlot] = edge;
+        }
+    }
+
+    /**
+     * Return the dense number of the given node, assigning a new one when it
+     * is seen for the first time.
+     *
+     * @param node
+     *            node to number
+     * @return the number of the node
+     */
+    private int number(final Node node) {
+        final int number = numbers.putIfAbsent(node.getId().getValue(), 0, nodes.size());
+
+        if (number == LongPairIndex.ABSENT) {
+            nodes.add(node);
+
+            return nodes.size() - 1;
+        }
+
+        return number;
+    }
+
+    /**
+     * Compute the start of the edges of each node from the given end points.
+     *
+     * @param endPoints
+     *            the numbers of the start or end nodes of the edges
+     * @return the start of the edges of each node, the last entry marking the
+     *         end of the edges.
+     */
+    private int[] offsets(final int[] endPoints) {
+        final int[] result = new int[nodes.size() + 1];
+
+        for (final int endPoint : endPoints) {
+            result[endPoint + 1]++;
+        }
+
+        for (int node = 0; node < nodes.size(); node++) {
+            result[node + 1] += result[node];
+        }
+
+        return result;
+    }
+
+    /**
+     * Return the number of edges starting at the given node.
+     *
+     * @param node
+     *            node to get the out degree of
+     * @return the number of edges starting at the given node.
+     */
+    public int getOutDegree(final Node node) {
+        final int number = numberOf(node);
+
+        return number == LongPairIndex.ABSENT ? 0 : offsets[number + 1] - offsets[number];
+    }
+
+    /**
+     * Return the number of edges ending at the given node.
+     *
+     * @param node
+     *            node to get the in degree of
+     * @return the number of edges ending at the given node.
+     */
+    public int getInDegree(final Node node) {
+        final int number = numberOf(node);
+
+        return number == LongPairIndex.ABSENT ? 0 : reverseOffsets[number + 1] - reverseOffsets[number];
+    }
+
+    /**
+     * Return the edges starting at the given node.
+     *
+     * @param node
+     *            node to get the outgoing edges of
+     * @return the edges starting at the given node.
+     */
+    public List<Edge> getOutgoingEdges(final Node node) {
+        final int number = numberOf(node);
+
+        if (number == LongPairIndex.ABSENT) {
+            return Collections.emptyList();
+        }
+
+        return new Slice<Edge>(offsets[number], offsets[number + 1], slot -> edges[slot]);
+    }
+
+    /**
+     * Return the edges ending at the given node.
+     *
+     * @param node
+     *            node to get the incoming edges of
+     * @return the edges ending at the given node.
+     */
+    public List<Edge> getIncomingEdges(final Node node) {
+        final int number = numberOf(node);
+
+        if (number == LongPairIndex.ABSENT) {
+            return Collections.emptyList();
+        }
+
+        return new Slice<Edge>(reverseOffsets[number], reverseOffsets[number + 1], slot -> reverseEdges[slot]);
+    }
+
+    /**
+     * Return the end nodes of the edges starting at the given node.
+     *
+     * @param node
+     *            node to get the successors of
+     * @return the end nodes of the edges starting at the given node.
+     */
+    public List<Node> getSuccessors(final Node node) {
+        final int number = numberOf(node);
+
+        if (number == LongPairIndex.ABSENT) {
+            return Collections.emptyList();
+        }
+
+        return new Slice<Node>(offsets[number], offsets[number + 1], slot -> nodes.get(targets[slot]));
+    }
+
+    /**
+     * Return the start nodes of the edges ending at the given node.
+     *
+     * @param node
+     *            node to get the predecessors of
+     * @return the start nodes of the edges ending at the given node.
+     */
+    public List<Node> getPredecessors(final Node node) {
+        final int number = numberOf(node);
+
+        if (number == LongPairIndex.ABSENT) {
+            return Collections.emptyList();
+        }
+
+        return new Slice<Node>(reverseOffsets[number], reverseOffsets[number + 1], slot -> nodes.get(sources[slot]));
+    }
+
+    /**
+     * Return the topology stamp of the graph when this index was built.
+     *
+     * @return the topology stamp of the graph when this index was built.
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the dense number of the given node.
+     *
+     * @param node
+     *            node to look up
+     * @return the number of the node or {@link LongPairIndex#ABSENT} if it is
+     *         not connected by any edge.
+     */
+    int numberOf(final Node node) {
+        return numbers.get(node.getId().getValue(), 0);
+    }
+
+    /**
+     * @return the number of nodes connected by edges
+     */
+    int nodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * Return the node with the given number.
+     *
+     * @param number
+     *            dense number of the node
+     * @return the node with the given number
+     */
+    Node node(final int number) {
+        return nodes.get(number);
+    }
+
+    /**
+     * @return the start of the outgoing edges of each node in
+     *         {@link #targets()}, the last entry marking the end of the edges
+     */
+    int[] offsets() {
+        return offsets;
+    }
+
+    /**
+     * @return the numbers of the end nodes of the edges, sorted by start node
+     */
+    int[] targets() {
+        return targets;
+    }
+
+    /**
+     * @return the edges in the order of {@link #targets()}
+     */
+    Edge[] edges() {
+        return edges;
+    }
+
+    /**
+     * An unmodifiable view of a range of slots of the index.
+     *
+     * @param <T>
+     *            type of the elements
+     * @author Dirk Weigenand
+     */
+    private static final class Slice<T> extends AbstractList<T> implements RandomAccess {
+        /**
+         * first slot of the range (inclusive).
+         */
+        private final int from;
+
+        /**
+         * last slot of the range (exclusive).
+         */
+        private final int to;
+
+        /**
+         * maps a slot to the element.
+         */
+        private final IntFunction<T> element;
+
+        /**
+         * Create a view of the given range.
+         *
+         * @param from
+         *            first slot of the range (inclusive).
+         * @param to
+         *            last slot of the range (exclusive).
+         * @param element
+         *            maps a slot to the element.
+         */
+        Slice(final int from, final int to, final IntFunction<T> element) {
+            this.from = from;
+            this.to = to;
+            this.element = element;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public T get(final int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException(index);
+            }
+
+            return element.apply(from + index);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,458 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.arachna.dot4j.model.Attributes.Attribute;
+
+/**
+ * An immutable set of attributes sorted by name.
+ * <p>
+ * Attribute sets reached repeatedly are interned: equal sets are represented by
+ * the same instance, so elements sharing a style also share its storage. A set
+ * created by {@link #with(String, String)} is interned only when the same
+ * transition is taken a second time, so sets used only once, e.g. for a unique
+ * label, stay out of the pool. Attribute names are canonicalised when a set is
+ * created. Interned sets no longer referenced by any {@link Attributes} object
+ * are reclaimed by the garbage collector.
+ *
+ * @author Dirk Weigenand
+ */
+final class AttributeSet {
+    /**
+     * the empty attribute set.
+     */
+    static final AttributeSet EMPTY = new AttributeSet(new Attribute[0]);
+
+    /**
+     * number of transitions cached per attribute set, a power of two.
+     */
+    private static final int TRANSITIONS = 8;
+
+    /**
+     * pool of interned attribute sets.
+     */
+    private static final ConcurrentHashMap<PooledReference, PooledReference> POOL = new ConcurrentHashMap<>();
+
+    /**
+     * queue of references to reclaimed interned sets.
+     */
+    private static final ReferenceQueue<AttributeSet> RECLAIMED = new ReferenceQueue<>();
+
+    /**
+     * the attributes sorted by name.
+     */
+    private final Attribute[] attributes;
+
+    /**
+     * hash code of this set.
+     */
+    private final int hash;
+
+    /**
+     * recent transitions from this set to other ones indexed by the hash of
+     * the attribute set, used to avoid looking up the same set in the pool
+     * over and over again. Created on the first transition.
+     */
+    private Transition[] transitions;
+
+    /**
+     * Create an attribute set from the given attributes.
+     *
+     * @param attributes attributes sorted by name.
+     */
+    private AttributeSet(final Attribute[] attributes) {
+        this.attributes = attributes;
+
+        int result = 1;
+
+        for (final Attribute attribute : attributes) {
+            result = 31 * result + attribute.getName().hashCode();
+            result = 31 * result + attribute.getValue().hashCode();
+        }
+
+        this.hash = result;
+    }
+
+    /**
+     * Return the attribute set containing the attributes of this set and the
+     * given attribute. An attribute of this set with the same name is
+     * replaced.
+     *
+     * @param name  attribute name
+     * @param value attribute value
+     * @return the attribute set containing the given attribute, interned if
+     *         the transition has been taken before.
+     */
+    AttributeSet with(final String name, final String value) {
+        final int slot = (31 * name.hashCode() + value.hashCode()) & (TRANSITIONS - 1);
+        Transition[] cache = transitions;
+
+        if (cache != null) {
+            final Transition last = cache[slot];
+
+            if (last != null && last.name.equals(name) && last.value.equals(value)) {
+                if (last.interned) {
+                    return last.target;
+                }
+
+                final AttributeSet target = intern(last.target);
+                cache[slot] = new Transition(name, value, target, true);
+
+                return target;
+            }
+        }
+
+        final int index = indexOf(name);
+        final Attribute[] result;
+
+        if (index >= 0) {
+            if (attributes[index].getValue().equals(value)) {
+                return this;
+            }
+
+            result = attributes.clone();
+            result[index] = new Attribute(attributes[index].getName(), value);
+        }
+        else {
+            final int insertion = -index - 1;
+            result = new Attribute[attributes.length + 1];
+            System.arraycopy(attributes, 0, result, 0, insertion);
+            result[insertion] = new Attribute(name.intern(), value);
+            System.arraycopy(attributes, insertion, result, insertion + 1, attributes.length - insertion);
+        }
+
+        if (cache == null) {
+            cache = new Transition[TRANSITIONS];
+            transitions = cache;
+        }
+
+        final AttributeSet target = new AttributeSet(result);
+        cache[slot] = new Transition(name, value, target, false);
+
+        return target;
+    }
+
+    /**
+     * Return the attribute set containing the attributes of this set except
+     * for the one with the given name.
+     *
+     * @param name attribute name
+     * @return the interned attribute set without the given attribute.
+     */
+    AttributeSet without(final String name) {
+        final int index = indexOf(name);
+
+        if (index < 0) {
+            return this;
+        }
+
+        final Attribute[] result = new Attribute[attributes.length - 1];
+        System.arraycopy(attributes, 0, result, 0, index);
+        System.arraycopy(attributes, index + 1, result, index, result.length - index);
+
+        return intern(new AttributeSet(result));
+    }
+
+    /**
+     * Return the attribute set containing the attributes this set has in
+     * common with the given one, i.e. attributes with equal name and value.
+     *
+     * @param other attribute set to intersect this one with
+     * @return the interned intersection of both attribute sets.
+     */
+    AttributeSet retain(final AttributeSet other) {
+        if (this == other || this.equals(other)) {
+            return this;
+        }
+
+        final Attribute[] result = new Attribute[Math.min(attributes.length, other.attributes.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+
+        while (i < attributes.length && j < other.attributes.length) {
+            final int comparison = attributes[i].getName().compareTo(other.attributes[j].getName());
+
+            if (comparison < 0) {
+                i++;
+            }
+            else if (comparison > 0) {
+                j++;
+            }
+            else {
+                if (attributes[i].getValue().equals(other.attributes[j].getValue())) {
+                    result[count++] = attributes[i];
+                }
+
+                i++;
+                j++;
+            }
+        }
+
+        return count == attributes.length ? this : intern(new AttributeSet(Arrays.copyOf(result, count)));
+    }
+
+    /**
+     * Return the attribute with the given name.
+     *
+     * @param name attribute name
+     * @return the attribute with the given name or <code>null</code> if there
+     *         is none.
+     */
+    Attribute get(final String name) {
+        final int index = indexOf(name);
+
+        return index >= 0 ? attributes[index] : null;
+    }
+
+    /**
+     * Return the number of attributes in this set.
+     *
+     * @return the number of attributes in this set.
+     */
+    int size() {
+        return attributes.length;
+    }
+
+    /**
+     * Return the attributes of this set as an unmodifiable list sorted by
+     * name.
+     *
+     * @return the attributes of this set.
+     */
+    List<Attribute> asList() {
+        return Collections.unmodifiableList(Arrays.asList(attributes));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        final AttributeSet other = (AttributeSet)obj;
+
+        if (hash != other.hash || attributes.length != other.attributes.length) {
+            return false;
+        }
+
+        for (int i = 0; i < attributes.length; i++) {
+            if (!attributes[i].getName().equals(other.attributes[i].getName())
+                || !attributes[i].getValue().equals(other.attributes[i].getValue())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder("{");
+
+        for (final Attribute attribute : attributes) {
+            if (result.length() > 1) {
+                result.append(", ");
+            }
+
+            result.append(attribute.getName()).append('=').append(attribute.getValue());
+        }
+
+        return result.append('}').toString();
+    }
+
+    /**
+     * Find the position of the attribute with the given name.
+     *
+     * @param name attribute name
+     * @return the position of the attribute or <code>-(insertion point) - 1</code>
+     *         if there is no attribute with the given name.
+     */
+    private int indexOf(final String name) {
+        int low = 0;
+        int high = attributes.length - 1;
+
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = attributes[middle].getName().compareTo(name);
+
+            if (comparison < 0) {
+                low = middle + 1;
+            }
+            else if (comparison > 0) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * Return the pooled set equal to the given one, adding it to the pool if
+     * there is none.
+     *
+     * @param candidate attribute set to intern
+     * @return the interned attribute set.
+     */
+    private static AttributeSet intern(final AttributeSet candidate) {
+        if (candidate.attributes.length == 0) {
+            return EMPTY;
+        }
+
+        expunge();
+
+        final PooledReference reference = new PooledReference(candidate, RECLAIMED);
+
+        while (true) {
+            final PooledReference pooled = POOL.putIfAbsent(reference, reference);
+
+            if (pooled == null) {
+                return candidate;
+            }
+
+            final AttributeSet existing = pooled.get();
+
+            if (existing != null) {
+                return existing;
+            }
+
+            POOL.remove(pooled);
+        }
+    }
+
+    /**
+     * Remove the references to reclaimed sets from the pool.
+     */
+    private static void expunge() {
+        Reference<? extends AttributeSet> reclaimed = RECLAIMED.poll();
+
+        while (reclaimed != null) {
+            POOL.remove(reclaimed);
+            reclaimed = RECLAIMED.poll();
+        }
+    }
+
+    /**
+     * A weak reference to an interned attribute set. References are equal
+     * when they are the same or refer to equal sets, so a cleared reference
+     * only matches itself.
+     *
+     * @author Dirk Weigenand
+     */
+    private static final class PooledReference extends WeakReference<AttributeSet> {
+        /**
+         * hash code of the referenced set.
+         */
+        private final int hash;
+
+        /**
+         * Create a reference to the given attribute set.
+         *
+         * @param referent attribute set to reference.
+         * @param queue    queue to register the reference with.
+         */
+        PooledReference(final AttributeSet referent, final ReferenceQueue<AttributeSet> queue) {
+            super(referent, queue);
+            this.hash = referent.hash;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof PooledReference) || hash != ((PooledReference)obj).hash) {
+                return false;
+            }
+
+            final AttributeSet referent = get();
+
+            return referent != null && referent.equals(((PooledReference)obj).get());
+        }
+    }
+
+    /**
+     * A cached transition from one attribute set to another by setting an
+     * attribute.
+     *
+     * @author Dirk Weigenand
+     */
+    private static final class Transition {
+        /**
+         * name of the attribute set.
+         */
+        private final String name;
+
+        /**
+         * value of the attribute set.
+         */
+        private final String value;
+
+        /**
+         * the resulting attribute set.
+         */
+        private final AttributeSet target;
+
+        /**
+         * whether the resulting attribute set has been interned.
+         */
+        private final boolean interned;
+
+        /**
+         * Create a transition.
+         *
+         * @param name     name of the attribute set.
+         * @param value    value of the attribute set.
+         * @param target   the resulting attribute set.
+         * @param interned whether the resulting attribute set has been interned.
+         */
+        Transition(final String name, final String value, final AttributeSet target, final boolean interned) {
+            this.name = name;
+            this.value = value;
+            this.target = target;
+            this.interned = interned;
+        }
+    }
+}
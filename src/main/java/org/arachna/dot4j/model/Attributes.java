@@ -5,13 +5,18 @@ package org.arachna.dot4j.model;
 
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.TreeMap;
 
 import org.arachna.dot4j.model.Attributes.Attribute;
 
 /**
  * Attributes for a edges, nodes and graphs.
+ * <p>
+ * The attributes are kept in an immutable, interned attribute set that is
+ * replaced whenever an attribute is changed. Elements having the same
+ * attributes therefore share one attribute set, and memory grows with the
+ * number of distinct styles instead of the number of elements.
+ * <p>
+ * Attributes may be modified from several threads concurrently.
  * 
  * @author Dirk Weigenand
  */
@@ -19,7 +24,7 @@ public class Attributes implements Iterable<Attribute> {
     /**
      * attribute storage.
      */
-    private final Map<String, Attribute> attributes = new TreeMap<String, Attribute>();
+    private volatile AttributeSet attributes = AttributeSet.EMPTY;
 
     /**
      * Set an attribute value.
@@ -29,8 +34,36 @@ public class Attributes implements Iterable<Attribute> {
      * @param value
      *            attribute value
      */
-    public void setAttribute(final String name, final String value) {
-        this.attributes.put(name, new Attribute(name, value));
+    public synchronized void setAttribute(final String name, final String value) {
+        if (name == null || value == null) {
+            throw new IllegalArgumentException("name and value must not be null!");
+        }
+
+        this.attributes = this.attributes.with(name, value);
+        changed();
+    }
+
+    /**
+     * Remove the attribute with the given name.
+     * 
+     * @param name
+     *            name of the attribute to remove
+     */
+    public synchronized void removeAttribute(final String name) {
+        this.attributes = this.attributes.without(name);
+        changed();
+    }
+
+    /**
+     * Replace all attributes with the ones of the given attributes object.
+     * The attributes are shared, not copied.
+     * 
+     * @param other
+     *            attributes to take over.
+     */
+    public synchronized void setAttributes(final Attributes other) {
+        this.attributes = other.attributes;
+        changed();
     }
 
     /**
@@ -52,7 +85,17 @@ public class Attributes implements Iterable<Attribute> {
      *         attribute container, <code>false</code> otherwise.
      */
     public boolean isEmpty() {
-        return this.attributes.isEmpty();
+        return this.attributes.size() == 0;
+    }
+
+    /**
+     * Return the number of registered attributes.
+     * 
+     * @return the number of attributes registered with this attribute
+     *         container.
+     */
+    public int size() {
+        return this.attributes.size();
     }
 
     /**
@@ -61,7 +104,35 @@ public class Attributes implements Iterable<Attribute> {
      * @return an Iterator over the registered attributes.
      */
     public Iterator<Attribute> iterator() {
-        return new AttributeIterator(attributes.values());
+        return new AttributeIterator(attributes.asList());
+    }
+
+    /**
+     * Return the attribute set backing this attributes object.
+     * 
+     * @return the current attribute set.
+     */
+    AttributeSet getAttributeSet() {
+        return attributes;
+    }
+
+    /**
+     * Replace the attribute set backing this attributes object.
+     * 
+     * @param attributes
+     *            the new attribute set.
+     */
+    synchronized void setAttributeSet(final AttributeSet attributes) {
+        this.attributes = attributes;
+        changed();
+    }
+
+    /**
+     * Called after the attributes have been changed. Attributes owned by a
+     * graph element override this to record the modification with the
+     * containing graph.
+     */
+    void changed() {
     }
 
     /**
@@ -77,7 +148,7 @@ public class Attributes implements Iterable<Attribute> {
      * 
      * @author Dirk Weigenand
      */
-    public final class Attribute {
+    public static final class Attribute {
         /**
          * the name of this attribute.
          */
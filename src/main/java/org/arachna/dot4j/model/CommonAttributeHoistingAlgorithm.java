@@ -0,0 +1,436 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.arachna.dot4j.model.Attributes.Attribute;
+
+/**
+ * Algorithm to move attributes shared by all nodes (edges) of a graph or
+ * cluster into the common node (edge) attributes of that graph or cluster. The
+ * attributes are removed from the nodes (edges) themselves, so the generated
+ * <code>.dot</code> file gets smaller while staying semantically equivalent.
+ * <p>
+ * GraphViz applies common attributes to nodes when they are first mentioned.
+ * Attributes are therefore only moved into the common node attributes of a
+ * cluster when none of its nodes can be mentioned outside of it before the
+ * cluster is emitted, i.e. when no edge crosses the cluster boundary except
+ * edges contained in an enclosing graph. Attributes are also left alone when a
+ * nested cluster defines a different common value for them.
+ *
+ * @author Dirk Weigenand
+ */
+public class CommonAttributeHoistingAlgorithm {
+    /**
+     * the graph whose common attributes should be hoisted.
+     */
+    private final Graph graph;
+
+    /**
+     * summaries of the graph and its clusters.
+     */
+    private final Map<Graph, Summary> summaries = new IdentityHashMap<Graph, Summary>();
+
+    /**
+     * counter for numbering graphs in depth first order.
+     */
+    private int counter;
+
+    /**
+     * Create an instance of the algorithm using the given graph.
+     *
+     * @param graph
+     *            graph to shrink by hoisting common attributes.
+     */
+    public CommonAttributeHoistingAlgorithm(final Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Execute the hoisting algorithm.
+     */
+    public void execute() {
+        summaries.clear();
+        counter = 0;
+        summarize(graph);
+        markBlockedClusters();
+        hoist(graph, Hoisted.NONE, Hoisted.NONE);
+    }
+
+    /**
+     * Compute the summaries of the given graph and its clusters.
+     *
+     * @param current
+     *            graph to summarize
+     * @return the summary of the given graph
+     */
+    private Summary summarize(final Graph current) {
+        final Summary summary = new Summary(counter++);
+        summaries.put(current, summary);
+
+        for (final Node node : current.getNodes()) {
+            summary.addNode(node.hasAttributes() ? node.getAttributes().getAttributeSet() : AttributeSet.EMPTY);
+        }
+
+        for (final Edge edge : current.getEdges()) {
+            summary.addEdge(edge.hasAttributes() ? edge.getAttributes().getAttributeSet() : AttributeSet.EMPTY);
+        }
+
+        for (final Graph cluster : current.getClusters()) {
+            summary.addCluster(cluster, summarize(cluster));
+        }
+
+        summary.last = counter - 1;
+
+        return summary;
+    }
+
+    /**
+     * Mark clusters containing nodes that might be mentioned by an edge before
+     * the cluster is emitted.
+     */
+    private void markBlockedClusters() {
+        for (final Map.Entry<Graph, Summary> entry : summaries.entrySet()) {
+            final Graph owner = entry.getKey();
+
+            for (final Edge edge : owner.getEdges()) {
+                final Summary start = summaries.get(edge.getStartNode().getGraph());
+                final Summary end = summaries.get(edge.getEndNode().getGraph());
+
+                if (start == null || end == null) {
+                    continue;
+                }
+
+                final Summary edgeOwner = entry.getValue();
+                markBlockedClusters(edge.getStartNode().getGraph(), edgeOwner, start, end);
+                markBlockedClusters(edge.getEndNode().getGraph(), edgeOwner, start, end);
+
+                for (Graph current = owner; current != null; current = current.getParent()) {
+                    final Summary summary = summaries.get(current);
+
+                    if (summary.contains(start) && summary.contains(end)) {
+                        break;
+                    }
+
+                    summary.blocked = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark the given graph containing an end point of an edge and its parents
+     * as blocked unless the edge is emitted after them or completely inside
+     * them.
+     *
+     * @param first
+     *            graph containing an end point of the edge
+     * @param owner
+     *            summary of the graph containing the edge
+     * @param start
+     *            summary of the graph containing the start node of the edge
+     * @param end
+     *            summary of the graph containing the end node of the edge
+     */
+    private void markBlockedClusters(final Graph first, final Summary owner, final Summary start, final Summary end) {
+        for (Graph current = first; current != null; current = current.getParent()) {
+            final Summary summary = summaries.get(current);
+
+            if (owner.contains(summary)) {
+                continue;
+            }
+
+            if (summary.contains(owner) && summary.contains(start) && summary.contains(end)) {
+                break;
+            }
+
+            summary.blocked = true;
+        }
+    }
+
+    /**
+     * Hoist common attributes of the given graph and its clusters.
+     *
+     * @param current
+     *            graph to hoist common attributes of
+     * @param nodes
+     *            node attributes hoisted into enclosing graphs
+     * @param edges
+     *            edge attributes hoisted into enclosing graphs
+     */
+    private void hoist(final Graph current, final Hoisted nodes, final Hoisted edges) {
+        final Summary summary = summaries.get(current);
+        Hoisted hoistedNodes = nodes;
+        Hoisted hoistedEdges = edges;
+
+        if (!summary.blocked && summary.nodeCount > 1) {
+            hoistedNodes = nodes.hoist(current.getNodeAttributes(), summary.nodes, summary.nodeDefaults);
+        }
+
+        if (summary.edgeCount > 1) {
+            hoistedEdges = edges.hoist(current.getEdgeAttributes(), summary.edges, summary.edgeDefaults);
+        }
+
+        for (final Node node : current.getNodes()) {
+            if (node.hasAttributes()) {
+                hoistedNodes.strip(node.getAttributes());
+            }
+        }
+
+        for (final Edge edge : current.getEdges()) {
+            if (edge.hasAttributes()) {
+                hoistedEdges.strip(edge.getAttributes());
+            }
+        }
+
+        for (final Graph cluster : current.getClusters()) {
+            hoist(cluster, hoistedNodes, hoistedEdges);
+        }
+    }
+
+    /**
+     * Attributes shared by the nodes and edges of a graph and its clusters.
+     *
+     * @author Dirk Weigenand
+     */
+    private static final class Summary {
+        /**
+         * number of this graph in depth first order.
+         */
+        private final int first;
+
+        /**
+         * highest number of a cluster contained in this graph.
+         */
+        private int last;
+
+        /**
+         * attributes shared by all nodes, <code>null</code> when there are no
+         * nodes.
+         */
+        private AttributeSet nodes;
+
+        /**
+         * number of nodes.
+         */
+        private int nodeCount;
+
+        /**
+         * attributes shared by all edges, <code>null</code> when there are no
+         * edges.
+         */
+        private AttributeSet edges;
+
+        /**
+         * number of edges.
+         */
+        private int edgeCount;
+
+        /**
+         * values of common node attributes defined by contained clusters.
+         */
+        private final Map<String, Set<String>> nodeDefaults = new HashMap<String, Set<String>>();
+
+        /**
+         * values of common edge attributes defined by contained clusters.
+         */
+        private final Map<String, Set<String>> edgeDefaults = new HashMap<String, Set<String>>();
+
+        /**
+         * whether nodes of this graph might be mentioned before it is emitted.
+         */
+        private boolean blocked;
+
+        /**
+         * Create a summary for the graph with the given number.
+         *
+         * @param first
+         *            number of the graph in depth first order.
+         */
+        Summary(final int first) {
+            this.first = first;
+        }
+
+        /**
+         * Add the attributes of a node.
+         *
+         * @param attributes
+         *            attributes of a node.
+         */
+        void addNode(final AttributeSet attributes) {
+            nodes = nodes == null ? attributes : nodes.retain(attributes);
+            nodeCount++;
+        }
+
+        /**
+         * Add the attributes of an edge.
+         *
+         * @param attributes
+         *            attributes of an edge.
+         */
+        void addEdge(final AttributeSet attributes) {
+            edges = edges == null ? attributes : edges.retain(attributes);
+            edgeCount++;
+        }
+
+        /**
+         * Add the summary of a contained cluster.
+         *
+         * @param cluster
+         *            the contained cluster.
+         * @param summary
+         *            summary of the contained cluster.
+         */
+        void addCluster(final Graph cluster, final Summary summary) {
+            if (summary.nodeCount > 0) {
+                nodes = nodes == null ? summary.nodes : nodes.retain(summary.nodes);
+                nodeCount += summary.nodeCount;
+            }
+
+            if (summary.edgeCount > 0) {
+                edges = edges == null ? summary.edges : edges.retain(summary.edges);
+                edgeCount += summary.edgeCount;
+            }
+
+            addDefaults(nodeDefaults, cluster.getNodeAttributes(), summary.nodeDefaults);
+            addDefaults(edgeDefaults, cluster.getEdgeAttributes(), summary.edgeDefaults);
+        }
+
+        /**
+         * Query whether the graph with the given summary is this graph or
+         * contained in it.
+         *
+         * @param other
+         *            summary of another graph.
+         * @return <code>true</code> when the other graph is contained in this
+         *         one, <code>false</code> otherwise.
+         */
+        boolean contains(final Summary other) {
+            return first <= other.first && other.first <= last;
+        }
+
+        /**
+         * Add common attributes of a cluster to the given defaults.
+         *
+         * @param defaults
+         *            defaults to add to
+         * @param attributes
+         *            common attributes of the cluster
+         * @param nested
+         *            defaults of the clusters nested in the cluster
+         */
+        private static void addDefaults(final Map<String, Set<String>> defaults, final Attributes attributes,
+            final Map<String, Set<String>> nested) {
+            for (final Attribute attribute : attributes) {
+                defaults.computeIfAbsent(attribute.getName(), key -> new HashSet<String>()).add(attribute.getValue());
+            }
+
+            for (final Map.Entry<String, Set<String>> entry : nested.entrySet()) {
+                defaults.computeIfAbsent(entry.getKey(), key -> new HashSet<String>()).addAll(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Names of attributes hoisted into enclosing graphs.
+     *
+     * @author Dirk Weigenand
+     */
+    private static final class Hoisted {
+        /**
+         * nothing hoisted yet.
+         */
+        private static final Hoisted NONE = new Hoisted(Collections.<String> emptySet());
+
+        /**
+         * names of the hoisted attributes.
+         */
+        private final Set<String> names;
+
+        /**
+         * attribute sets with the hoisted attributes removed, by original
+         * attribute set.
+         */
+        private final Map<AttributeSet, AttributeSet> stripped = new IdentityHashMap<AttributeSet, AttributeSet>();
+
+        /**
+         * Create an instance for the given attribute names.
+         *
+         * @param names
+         *            names of the hoisted attributes.
+         */
+        private Hoisted(final Set<String> names) {
+            this.names = names;
+        }
+
+        /**
+         * Move the shared attributes that are not already hoisted and do not
+         * conflict with nested defaults into the given common attributes.
+         *
+         * @param defaults
+         *            common attributes of the graph
+         * @param shared
+         *            attributes shared by all elements of the graph
+         * @param nested
+         *            common attributes defined by nested clusters
+         * @return the hoisted attributes including the newly hoisted ones.
+         */
+        Hoisted hoist(final Attributes defaults, final AttributeSet shared, final Map<String, Set<String>> nested) {
+            final List<Attribute> candidates = new ArrayList<Attribute>();
+
+            for (final Attribute attribute : shared.asList()) {
+                final Collection<String> values = nested.get(attribute.getName());
+
+                if (!names.contains(attribute.getName())
+                    && (values == null || values.size() == 1 && values.contains(attribute.getValue()))) {
+                    candidates.add(attribute);
+                }
+            }
+
+            if (candidates.isEmpty()) {
+                return this;
+            }
+
+            final Set<String> result = new HashSet<String>(names);
+
+            for (final Attribute attribute : candidates) {
+                defaults.setAttribute(attribute.getName(), attribute.getValue());
+                result.add(attribute.getName());
+            }
+
+            return new Hoisted(result);
+        }
+
+        /**
+         * Remove the hoisted attributes from the given attributes.
+         *
+         * @param attributes
+         *            attributes of a node or edge
+         */
+        void strip(final Attributes attributes) {
+            if (names.isEmpty()) {
+                return;
+            }
+
+            attributes.setAttributeSet(stripped.computeIfAbsent(attributes.getAttributeSet(), original -> {
+                AttributeSet result = original;
+
+                for (final String name : names) {
+                    result = result.without(name);
+                }
+
+                return result;
+            }));
+        }
+    }
+}
@@ -3,10 +3,15 @@
  */
 package org.arachna.dot4j.model;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Algorithm to merge edges between groups that have the same target node. The
@@ -15,12 +20,27 @@ import java.util.Map;
  * @author Dirk Weigenand
  */
 public class CommonEdgeMergeAlgorithm {
+    /**
+     * initial capacity of the arrays used for grouping edges.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * number of edges grouped by one task in parallel mode.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
     /**
      * the graph for which edges having the same target node and the same
      * originating group should be merged.
      */
     private final Graph graph;
 
+    /**
+     * whether edges should be grouped in parallel.
+     */
+    private boolean parallel;
+
     /**
      * Create an instance of the algorithm using the given graph.
      * 
@@ -31,56 +51,249 @@ public class CommonEdgeMergeAlgorithm {
         this.graph = graph;
     }
 
+    /**
+     * Enable or disable parallel grouping of edges.
+     * <p>
+     * In parallel mode the edges are split into chunks that are grouped on a
+     * {@link java.util.concurrent.ForkJoinPool}, either the pool the caller
+     * runs in or the common pool. The partial groupings are combined in chunk
+     * order, so intermediate nodes are created in the same order as in
+     * sequential mode regardless of the number of threads. Merging itself
+     * modifies the graph and is always done sequentially.
+     *
+     * @param parallel
+     *            <code>true</code> to group edges in parallel,
+     *            <code>false</code> to group them sequentially (the default).
+     */
+    public void setParallel(final boolean parallel) {
+        this.parallel = parallel;
+    }
+
     /**
      * Execute the merge algorithm.
+     * <p>
+     * Edges crossing graph boundaries are grouped by the graph containing
+     * their start node and by their target node in a single pass over all
+     * edges. Each group with more than one edge is merged into an edge from an
+     * intermediate node in the originating graph. Afterwards the remaining
+     * edges (or merged edges) of different originating graphs sharing a target
+     * node are merged via an intermediate node inside a new invisible cluster.
+     * Intermediate nodes are created in the order the groups were first
+     * encountered, so the result is deterministic.
      */
     public void execute() {
-        mergeEdgesWithSameTargetAndSameOriginatingGraph(collectEdgesToSameNode(graph));
+        final EdgeGroups groups = collectEdgeGroups();
+        final Edge[] representatives = mergeEdgesWithSameTargetAndSameOriginatingGraph(groups);
+
+        mergeEdgesWithSameTargetAndDifferingOriginatingGraph(groups, representatives);
+    }
 
-        final Map<Node, Collection<Edge>> mergableEdges = new HashMap<Node, Collection<Edge>>();
+    /**
+     * Collect the edges crossing graph boundaries from the graph and all its
+     * clusters and group them by originating graph and target node.
+     *
+     * @return the grouped edges
+     */
+    private EdgeGroups collectEdgeGroups() {
+        final List<Edge> edges = collectEdges(graph);
 
-        for (final Map<Node, Collection<Edge>> mapping : collectEdgesToSameNode(graph).values()) {
-            for (final Map.Entry<Node, Collection<Edge>> entry : mapping.entrySet()) {
-                final Node sourceNode = entry.getKey();
-                final Collection<Edge> edges = entry.getValue();
+        if (!parallel || edges.size() <= CHUNK_SIZE) {
+            return new GroupingTask(edges).compute();
+        }
 
-                if (mergableEdges.containsKey(sourceNode)) {
-                    mergableEdges.get(sourceNode).addAll(edges);
-                }
-                else {
-                    mergableEdges.put(sourceNode, edges);
+        final List<GroupingTask> tasks = new ArrayList<GroupingTask>();
+
+        for (int from = 0; from < edges.size(); from += CHUNK_SIZE) {
+            final GroupingTask task = new GroupingTask(edges.subList(from, Math.min(from + CHUNK_SIZE, edges.size())));
+            task.fork();
+            tasks.add(task);
+        }
+
+        final EdgeGroups groups = tasks.get(0).join();
+
+        for (int i = 1; i < tasks.size(); i++) {
+            groups.addAll(tasks.get(i).join());
+        }
+
+        return groups;
+    }
+
+    /**
+     * Collect the edges of the given graph and all its clusters. The edges of a
+     * graph precede the edges of its clusters.
+     *
+     * @param root
+     *            graph to collect the edges of
+     * @return the edges of the graph and all its clusters.
+     */
+    private List<Edge> collectEdges(final Graph root) {
+        final List<Edge> edges = new ArrayList<Edge>();
+        final Deque<Graph> pending = new ArrayDeque<Graph>();
+        pending.push(root);
+
+        while (!pending.isEmpty()) {
+            final Graph current = pending.pop();
+            edges.addAll(current.getEdges());
+
+            final List<Graph> clusters = new ArrayList<Graph>(current.getClusters());
+
+            for (int i = clusters.size() - 1; i >= 0; i--) {
+                pending.push(clusters.get(i));
+            }
+        }
+
+        return edges;
+    }
+
+    /**
+     * Merge edges that have the same target and emanate from the same graph.
+     * Each such group of edges is redirected to a new intermediate node in the
+     * originating graph which is connected to the target.
+     *
+     * @param groups
+     *            edges grouped by originating graph and target node.
+     * @return for every group the single edge now leading from its originating
+     *         graph to its target.
+     */
+    private Edge[] mergeEdgesWithSameTargetAndSameOriginatingGraph(final EdgeGroups groups) {
+        final Edge[] representatives = new Edge[groups.size()];
+
+        for (int group = 0; group < groups.size(); group++) {
+            if (groups.sizes[group] > 1) {
+                final Node target = groups.targets[group];
+                final Node intermediateTarget = createIntermediateTargetNode(groups.sources[group]);
+                representatives[group] = graph.newEdge(intermediateTarget, target);
+
+                for (int edge = groups.first[group]; edge >= 0; edge = groups.next[edge]) {
+                    groups.edges.get(edge).setEndNode(intermediateTarget);
                 }
             }
+            else {
+                representatives[group] = groups.edges.get(groups.first[group]);
+            }
         }
 
-        mergeEdgesWithSameTargetAndDifferingOriginatingGrap(mergableEdges);
+        return representatives;
     }
 
     /**
      * Merge edges that have the same target but emanate from different graphs.
      * Inserts a new invisible graph containing the new intermediate target
      * node.
-     * 
-     * @param mergableEdges
-     *            map of edges that can be merged.
+     *
+     * @param groups
+     *            edges grouped by originating graph and target node.
+     * @param representatives
+     *            for every group the single edge leading from its originating
+     *            graph to its target.
      */
-    private void mergeEdgesWithSameTargetAndDifferingOriginatingGrap(final Map<Node, Collection<Edge>> mergableEdges) {
-        for (final Map.Entry<Node, Collection<Edge>> entry : mergableEdges.entrySet()) {
-            final Collection<Edge> edges = entry.getValue();
+    private void mergeEdgesWithSameTargetAndDifferingOriginatingGraph(final EdgeGroups groups,
+        final Edge[] representatives) {
+        final LongPairIndex targetIndex = new LongPairIndex();
+        final int[] groupCounts = new int[groups.size()];
+        final int[] firstGroups = new int[groups.size()];
+        final int[] lastGroups = new int[groups.size()];
+        final int[] nextGroups = new int[groups.size()];
+        final Node[] targets = new Node[groups.size()];
+        int targetCount = 0;
+
+        for (int group = 0; group < groups.size(); group++) {
+            final Node target = groups.targets[group];
+            int ordinal = targetIndex.putIfAbsent(target.getId().getValue(), 0, targetCount);
+
+            if (ordinal == LongPairIndex.ABSENT) {
+                ordinal = targetCount++;
+                targets[ordinal] = target;
+                firstGroups[ordinal] = group;
+            }
+            else {
+                nextGroups[lastGroups[ordinal]] = group;
+            }
 
-            if (edges.size() > 1) {
-                final Node target = entry.getKey();
+            lastGroups[ordinal] = group;
+            nextGroups[group] = -1;
+            groupCounts[ordinal]++;
+        }
+
+        for (int ordinal = 0; ordinal < targetCount; ordinal++) {
+            if (groupCounts[ordinal] > 1) {
+                final Node target = targets[ordinal];
                 final Graph parentGraph = graph.newGraph();
                 parentGraph.getAttributes().setAttribute("style", "invis");
                 final Node intermediateTarget = createIntermediateTargetNode(parentGraph);
 
                 parentGraph.newEdge(intermediateTarget, target);
 
-                for (final Edge edge : edges) {
-                    edge.setEndNode(intermediateTarget);
+                for (int group = firstGroups[ordinal]; group >= 0; group = nextGroups[group]) {
+                    representatives[group].setEndNode(intermediateTarget);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collect edges in the given graph and its clusters that cross graph
+     * boundaries, grouped by the graph containing their start node and by
+     * their target node.
+     *
+     * @param graph
+     *            graph to collect the edges of
+     * @return edges grouped by originating graph and target node
+     * @deprecated {@link #execute()} groups the edges in a single pass and no
+     *             longer calls this method.
+     */
+    @Deprecated
+    protected Map<Graph, Map<Node, Collection<Edge>>> collectEdgesToSameNode(final Graph graph) {
+        final EdgeGroups groups = new EdgeGroups();
+
+        for (final Edge edge : collectEdges(graph)) {
+            groups.add(edge);
+        }
+
+        final Map<Graph, Map<Node, Collection<Edge>>> sourceGraphs = new LinkedHashMap<Graph, Map<Node, Collection<Edge>>>();
+
+        for (int group = 0; group < groups.size(); group++) {
+            sourceGraphs.computeIfAbsent(groups.sources[group], source -> new LinkedHashMap<Node, Collection<Edge>>())
+                .put(groups.targets[group], groups.edgesOf(group));
+        }
+
+        return sourceGraphs;
+    }
+
+    /**
+     * Merge edges that have the same target and emanate from the same graph.
+     *
+     * @param originToMergableEdgeMapping
+     *            edges grouped by originating graph and target node
+     * @return the edges from the new intermediate nodes to their targets,
+     *         grouped by target node
+     * @deprecated {@link #execute()} merges the edges grouped in a single pass
+     *             and no longer calls this method.
+     */
+    @Deprecated
+    protected Map<Node, Collection<Edge>> mergeEdgesWithSameTargetAndSameOriginatingGraph(
+        final Map<Graph, Map<Node, Collection<Edge>>> originToMergableEdgeMapping) {
+        final EdgeGroups groups = new EdgeGroups();
+
+        for (final Map.Entry<Graph, Map<Node, Collection<Edge>>> mappingEntry : originToMergableEdgeMapping.entrySet()) {
+            for (final Map.Entry<Node, Collection<Edge>> entry : mappingEntry.getValue().entrySet()) {
+                for (final Edge edge : entry.getValue()) {
+                    groups.add(mappingEntry.getKey(), entry.getKey(), edge);
                 }
             }
         }
+
+        final Edge[] representatives = mergeEdgesWithSameTargetAndSameOriginatingGraph(groups);
+        final Map<Node, Collection<Edge>> mergedEdges = new LinkedHashMap<Node, Collection<Edge>>();
+
+        for (int group = 0; group < groups.size(); group++) {
+            if (groups.sizes[group] > 1) {
+                mergedEdges.computeIfAbsent(groups.targets[group], target -> new ArrayList<Edge>())
+                    .add(representatives[group]);
+            }
+        }
+
+        return mergedEdges;
     }
 
     /**
@@ -102,96 +315,233 @@ public class CommonEdgeMergeAlgorithm {
     }
 
     /**
-     * Collect edges in the given graph that have the same target node. The
-     * edges will be associated to
-     * 
-     * @param graph
+     * Edges crossing graph boundaries grouped by originating graph and target
+     * node. Groups are numbered in the order they were first encountered, the
+     * edges of a group are chained through a flat array of indices.
+     *
+     * @author Dirk Weigenand
      */
-    protected Map<Graph, Map<Node, Collection<Edge>>> collectEdgesToSameNode(final Graph graph) {
-        final Map<Graph, Map<Node, Collection<Edge>>> sourceGraphs = new HashMap<Graph, Map<Node, Collection<Edge>>>();
-        Map<Node, Collection<Edge>> targetNodes;
-
-        for (final Edge edge : graph.getEdges()) {
+    private static final class EdgeGroups {
+        /**
+         * group numbers indexed by originating graph id and target node id.
+         */
+        private final LongPairIndex index = new LongPairIndex();
+
+        /**
+         * the grouped edges in the order they were added.
+         */
+        private final List<Edge> edges = new ArrayList<Edge>();
+
+        /**
+         * index of the next edge of the same group, <code>-1</code> for the
+         * last edge of a group.
+         */
+        private int[] next = new int[INITIAL_CAPACITY];
+
+        /**
+         * originating graph of each group.
+         */
+        private Graph[] sources = new Graph[INITIAL_CAPACITY];
+
+        /**
+         * target node of each group.
+         */
+        private Node[] targets = new Node[INITIAL_CAPACITY];
+
+        /**
+         * index of the first edge of each group.
+         */
+        private int[] first = new int[INITIAL_CAPACITY];
+
+        /**
+         * index of the last edge of each group.
+         */
+        private int[] last = new int[INITIAL_CAPACITY];
+
+        /**
+         * number of edges in each group.
+         */
+        private int[] sizes = new int[INITIAL_CAPACITY];
+
+        /**
+         * Add the given edge to its group unless it connects nodes of the same
+         * graph.
+         *
+         * @param edge
+         *            edge to add.
+         */
+        void add(final Edge edge) {
             final Graph sourceGraph = edge.getStartNode().getGraph();
+            final Node target = edge.getEndNode();
 
             // skip edges in same graph.
-            if (sourceGraph.equals(edge.getEndNode().getGraph())) {
-                continue;
+            if (sourceGraph.equals(target.getGraph())) {
+                return;
             }
 
-            targetNodes = sourceGraphs.get(sourceGraph);
+            add(sourceGraph, target, edge);
+        }
 
-            if (targetNodes == null) {
-                targetNodes = new HashMap<Node, Collection<Edge>>();
-                sourceGraphs.put(sourceGraph, targetNodes);
+        /**
+         * Add the given edge to the group of the given originating graph and
+         * target node.
+         *
+         * @param sourceGraph
+         *            originating graph of the group
+         * @param target
+         *            target node of the group
+         * @param edge
+         *            edge to add.
+         */
+        void add(final Graph sourceGraph, final Node target, final Edge edge) {
+            final int position = edges.size();
+            final int count = index.size();
+            int group = index.putIfAbsent(sourceGraph.getId().getValue(), target.getId().getValue(), count);
+
+            if (position == next.length) {
+                next = Arrays.copyOf(next, position << 1);
             }
 
-            Collection<Edge> edges = targetNodes.get(edge.getEndNode());
-
-            if (edges == null) {
-                edges = new HashSet<Edge>();
-                targetNodes.put(edge.getEndNode(), edges);
+            if (group == LongPairIndex.ABSENT) {
+                group = count;
+                ensureGroupCapacity(group);
+                sources[group] = sourceGraph;
+                targets[group] = target;
+                first[group] = position;
+            }
+            else {
+                next[last[group]] = position;
             }
 
             edges.add(edge);
+            next[position] = -1;
+            last[group] = position;
+            sizes[group]++;
         }
 
-        for (final Graph cluster : graph.getClusters()) {
-            for (final Map.Entry<Graph, Map<Node, Collection<Edge>>> entry : collectEdgesToSameNode(cluster).entrySet()) {
-                final Map<Node, Collection<Edge>> nodeEdgeMapping = sourceGraphs.get(entry.getKey());
-
-                if (nodeEdgeMapping == null) {
-                    sourceGraphs.put(entry.getKey(), entry.getValue());
-                    continue;
-                }
+        /**
+         * Append the groups of the given grouping. Edges of groups already
+         * present are appended to them, the other groups are added in their
+         * original order.
+         *
+         * @param other
+         *            grouping of edges following the edges of this grouping.
+         */
+        void addAll(final EdgeGroups other) {
+            final int offset = edges.size();
+            edges.addAll(other.edges);
+
+            if (edges.size() > next.length) {
+                next = Arrays.copyOf(next, Math.max(edges.size(), next.length << 1));
+            }
 
-                for (final Map.Entry<Node, Collection<Edge>> mapping : entry.getValue().entrySet()) {
-                    final Collection<Edge> edges = nodeEdgeMapping.get(mapping.getKey());
+            for (int edge = 0; edge < other.edges.size(); edge++) {
+                next[offset + edge] = other.next[edge] < 0 ? -1 : other.next[edge] + offset;
+            }
 
-                    if (edges == null) {
-                        nodeEdgeMapping.put(mapping.getKey(), mapping.getValue());
-                    }
-                    else {
-                        edges.addAll(mapping.getValue());
-                    }
+            for (int otherGroup = 0; otherGroup < other.size(); otherGroup++) {
+                final int count = index.size();
+                int group = index.putIfAbsent(other.sources[otherGroup].getId().getValue(),
+                    other.targets[otherGroup].getId().getValue(), count);
+
+                if (group == LongPairIndex.ABSENT) {
+                    group = count;
+                    ensureGroupCapacity(group);
+                    sources[group] = other.sources[otherGroup];
+                    targets[group] = other.targets[otherGroup];
+                    first[group] = other.first[otherGroup] + offset;
+                }
+                else {
+                    next[last[group]] = other.first[otherGroup] + offset;
                 }
 
+                last[group] = other.last[otherGroup] + offset;
+                sizes[group] += other.sizes[otherGroup];
             }
         }
 
-        return sourceGraphs;
-    }
-
-    protected Map<Node, Collection<Edge>> mergeEdgesWithSameTargetAndSameOriginatingGraph(
-        final Map<Graph, Map<Node, Collection<Edge>>> originToMergableEdgeMapping) {
-        final Map<Node, Collection<Edge>> mergedEdges = new HashMap<Node, Collection<Edge>>();
+        /**
+         * Return the edges of the given group.
+         *
+         * @param group
+         *            number of the group
+         * @return the edges of the group in the order they were added.
+         */
+        List<Edge> edgesOf(final int group) {
+            final List<Edge> result = new ArrayList<Edge>(sizes[group]);
+
+            for (int edge = first[group]; edge >= 0; edge = next[edge]) {
+                result.add(edges.get(edge));
+            }
 
-        for (final Map.Entry<Graph, Map<Node, Collection<Edge>>> mappingEntry : originToMergableEdgeMapping.entrySet()) {
-            final Graph sourceGraph = mappingEntry.getKey();
-            final Map<Node, Collection<Edge>> mapping = mappingEntry.getValue();
+            return result;
+        }
 
-            for (final Map.Entry<Node, Collection<Edge>> entry : mapping.entrySet()) {
-                final Collection<Edge> edges = entry.getValue();
+        /**
+         * Return the number of groups.
+         *
+         * @return the number of groups.
+         */
+        int size() {
+            return index.size();
+        }
 
-                if (edges.size() > 1) {
-                    final Node target = entry.getKey();
-                    Collection<Edge> newEdges = mergedEdges.get(target);
+        /**
+         * Make room for the group with the given number.
+         *
+         * @param group
+         *            number of the group to be added.
+         */
+        private void ensureGroupCapacity(final int group) {
+            if (group == sources.length) {
+                final int capacity = group << 1;
+                sources = Arrays.copyOf(sources, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                first = Arrays.copyOf(first, capacity);
+                last = Arrays.copyOf(last, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+            }
+        }
+    }
 
-                    if (newEdges == null) {
-                        newEdges = new HashSet<Edge>();
-                        mergedEdges.put(target, newEdges);
-                    }
+    /**
+     * Task grouping a chunk of edges.
+     *
+     * @author Dirk Weigenand
+     */
+    private static final class GroupingTask extends RecursiveTask<EdgeGroups> {
+        /**
+         * serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * the edges to group.
+         */
+        private final transient List<Edge> edges;
+
+        /**
+         * Create a task grouping the given edges.
+         *
+         * @param edges
+         *            the edges to group.
+         */
+        GroupingTask(final List<Edge> edges) {
+            this.edges = edges;
+        }
 
-                    final Node startNode = createIntermediateTargetNode(sourceGraph);
-                    newEdges.add(graph.newEdge(startNode, target));
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected EdgeGroups compute() {
+            final EdgeGroups groups = new EdgeGroups();
 
-                    for (final Edge edge : edges) {
-                        edge.setEndNode(startNode);
-                    }
-                }
+            for (final Edge edge : edges) {
+                groups.add(edge);
             }
-        }
 
-        return mergedEdges;
+            return groups;
+        }
     }
 }
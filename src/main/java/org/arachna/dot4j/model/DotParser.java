@@ -0,0 +1,1365 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.arachna.dot4j.model.Attributes.Attribute;
+
+/**
+ * Parser reading a directed graph in the GraphViz <code>.dot</code> language
+ * into a {@link Graph}.
+ * <p>
+ * The parser understands what {@link org.arachna.dot4j.DotGenerator} writes and
+ * the common subset of the language used by other tools: graph attributes,
+ * common node and edge attributes, <code>subgraph cluster</code> blocks,
+ * anonymous subgraphs with <code>rank=same</code>, node statements, edge
+ * chains, quoted strings (including concatenation with <code>+</code>),
+ * HTML-like labels and comments. Undirected graphs, ports and subgraphs used
+ * as edge end points are rejected.
+ * <p>
+ * Nodes named <code>node&lt;id&gt;</code>, quoted or not, and clusters named
+ * <code>cluster&lt;id&gt;</code> keep their ids. Other nodes receive a new id
+ * and their name as label unless a label is given. Anonymous subgraphs do not
+ * become clusters; their nodes are added to the enclosing graph and ranked
+ * together when the subgraph sets <code>rank=same</code>.
+ * <p>
+ * A node belongs to the innermost cluster containing a node statement for it,
+ * even when it was mentioned in an enclosing graph before, e.g. by an edge
+ * statement preceding the cluster. Nodes are created where they are mentioned
+ * first and moved into their clusters once the whole input has been read. Edge
+ * statements do not move nodes, so edges written into a cluster may lead to
+ * nodes outside of it. Escape sequences in quoted
+ * strings, including escaped quotes, are kept as written.
+ * <p>
+ * The input is tokenized in a single pass over a reusable character buffer.
+ * Names of generated nodes are resolved without creating strings.
+ *
+ * @author Dirk Weigenand
+ */
+public final class DotParser {
+    /**
+     * size of the input buffer.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * end of input.
+     */
+    private static final int EOF = 0;
+
+    /**
+     * an unquoted identifier or numeral.
+     */
+    private static final int ID = 1;
+
+    /**
+     * a quoted string.
+     */
+    private static final int STRING = 2;
+
+    /**
+     * an HTML-like string.
+     */
+    private static final int HTML = 3;
+
+    /**
+     * '{'.
+     */
+    private static final int LEFT_BRACE = 4;
+
+    /**
+     * '}'.
+     */
+    private static final int RIGHT_BRACE = 5;
+
+    /**
+     * '['.
+     */
+    private static final int LEFT_BRACKET = 6;
+
+    /**
+     * ']'.
+     */
+    private static final int RIGHT_BRACKET = 7;
+
+    /**
+     * ';'.
+     */
+    private static final int SEMICOLON = 8;
+
+    /**
+     * ','.
+     */
+    private static final int COMMA = 9;
+
+    /**
+     * '='.
+     */
+    private static final int EQUALS = 10;
+
+    /**
+     * ':'.
+     */
+    private static final int COLON = 11;
+
+    /**
+     * '-&gt;'.
+     */
+    private static final int ARROW = 12;
+
+    /**
+     * prefix of the names of nodes written by the generator.
+     */
+    private static final String NODE_PREFIX = "node";
+
+    /**
+     * prefix of the names of clusters.
+     */
+    private static final String CLUSTER_PREFIX = "cluster";
+
+    /**
+     * reader to parse.
+     */
+    private final Reader reader;
+
+    /**
+     * the input buffer.
+     */
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /**
+     * position of the next character in the input buffer.
+     */
+    private int position;
+
+    /**
+     * number of characters in the input buffer.
+     */
+    private int limit;
+
+    /**
+     * current line number.
+     */
+    private int line = 1;
+
+    /**
+     * whether only white space has been read on the current line.
+     */
+    private boolean lineStart = true;
+
+    /**
+     * type of the current token.
+     */
+    private int token;
+
+    /**
+     * text of the current token.
+     */
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * id encoded in the current token when it is named
+     * <code>node&lt;id&gt;</code>, <code>-1</code> otherwise.
+     */
+    private long number;
+
+    /**
+     * the graph being built.
+     */
+    private Graph graph;
+
+    /**
+     * nodes by their names.
+     */
+    private final Map<String, Node> nodes = new HashMap<>();
+
+    /**
+     * nodes named <code>node&lt;id&gt;</code>, indexed by the id in their name.
+     */
+    private final List<Node> numberedNodes = new ArrayList<>();
+
+    /**
+     * positions of nodes in {@link #numberedNodes} indexed by the id in their
+     * name.
+     */
+    private final LongPairIndex numberedNodeIndex = new LongPairIndex();
+
+    /**
+     * ids assigned to nodes.
+     */
+    private final LongPairIndex nodeIds = new LongPairIndex();
+
+    /**
+     * ids assigned to graphs.
+     */
+    private final LongPairIndex graphIds = new LongPairIndex();
+
+    /**
+     * clusters by their names.
+     */
+    private final Map<String, Graph> clusters = new HashMap<>();
+
+    /**
+     * nodes with a node statement in a cluster nested in the graph containing
+     * them, mapped to the innermost such cluster in the order of these
+     * statements.
+     */
+    private final Map<Node, Graph> relocations = new LinkedHashMap<>();
+
+    /**
+     * candidate for the next new node id.
+     */
+    private long nextNodeId;
+
+    /**
+     * candidate for the next new graph id.
+     */
+    private long nextGraphId;
+
+    /**
+     * the largest node id assigned.
+     */
+    private long maxNodeId = -1;
+
+    /**
+     * the largest graph id assigned.
+     */
+    private long maxGraphId = -1;
+
+    /**
+     * number of ranks created.
+     */
+    private int ranks;
+
+    /**
+     * Create a parser reading from the given reader.
+     *
+     * @param reader
+     *            reader to parse the graph from.
+     */
+    public DotParser(final Reader reader) {
+        if (reader == null) {
+            throw new IllegalArgumentException("Reader must not be null!");
+        }
+
+        this.reader = reader;
+    }
+
+    /**
+     * Parse the UTF-8 encoded <code>.dot</code> file with the given path.
+     *
+     * @param path
+     *            path of the <code>.dot</code> file to parse.
+     * @return the graph read from the file.
+     * @throws IOException
+     *             when reading the file fails or it does not contain a valid
+     *             graph
+     */
+    public static Graph parse(final Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return new DotParser(reader).parse();
+        }
+    }
+
+    /**
+     * Parse the graph. The reader is not closed.
+     *
+     * @return the graph read.
+     * @throws IOException
+     *             when reading fails or the input does not contain a valid
+     *             graph. The message contains the line the error occurred
+     *             in.
+     */
+    public Graph parse() throws IOException {
+        advance();
+
+        if (isKeyword("strict")) {
+            advance();
+        }
+
+        if (!isKeyword("digraph")) {
+            throw error(isKeyword("graph") ? "undirected graphs are not supported" : "expected 'digraph'");
+        }
+
+        advance();
+
+        if (isIdentifier()) {
+            advance();
+        }
+
+        expect(LEFT_BRACE, "'{'");
+        graph = new Graph(newGraphId(-1));
+        parseStatements(new Scope(graph, null));
+        expect(RIGHT_BRACE, "'}'");
+
+        if (token != EOF) {
+            throw error("expected end of input");
+        }
+
+        relocateNodes();
+        graph.reserveIds(maxNodeId + 1, maxGraphId + 1);
+
+        return graph;
+    }
+
+    /**
+     * Parse statements up to the closing brace of the given scope.
+     *
+     * @param scope
+     *            the graph or subgraph containing the statements
+     * @throws IOException
+     *             when reading fails or a statement is invalid
+     */
+    private void parseStatements(final Scope scope) throws IOException {
+        while (token != RIGHT_BRACE) {
+            if (token == EOF) {
+                throw error("unexpected end of input, expected '}'");
+            }
+
+            parseStatement(scope);
+
+            if (token == SEMICOLON) {
+                advance();
+            }
+        }
+    }
+
+    /**
+     * Parse a single statement.
+     *
+     * @param scope
+     *            the graph or subgraph containing the statement
+     * @throws IOException
+     *             when reading fails or the statement is invalid
+     */
+    private void parseStatement(final Scope scope) throws IOException {
+        if (token == LEFT_BRACE || isKeyword("subgraph")) {
+            parseSubgraph(scope);
+
+            if (token == ARROW) {
+                throw error("subgraphs as edge end points are not supported");
+            }
+        }
+        else if (isKeyword("graph")) {
+            advance();
+
+            for (final Attribute attribute : parseAttributes().asList()) {
+                scope.setAttribute(attribute.getName(), attribute.getValue());
+            }
+        }
+        else if (isKeyword("node")) {
+            advance();
+            scope.addNodeDefaults(parseAttributes());
+        }
+        else if (isKeyword("edge")) {
+            advance();
+            scope.addEdgeDefaults(parseAttributes());
+        }
+        else if (isIdentifier()) {
+            parseNodeOrEdgeStatement(scope);
+        }
+        else {
+            throw error("expected a statement");
+        }
+    }
+
+    /**
+     * Parse a subgraph.
+     *
+     * @param scope
+     *            the graph or subgraph containing the subgraph
+     * @throws IOException
+     *             when reading fails or the subgraph is invalid
+     */
+    private void parseSubgraph(final Scope scope) throws IOException {
+        String name = null;
+
+        if (token != LEFT_BRACE) {
+            advance();
+
+            if (isIdentifier()) {
+                name = text.toString();
+                advance();
+            }
+        }
+
+        expect(LEFT_BRACE, "'{'");
+
+        final Scope subgraph;
+
+        if (name != null && name.startsWith(CLUSTER_PREFIX)) {
+            Graph cluster = clusters.get(name);
+
+            if (cluster == null) {
+                cluster = scope.graph.newGraph(newGraphId(parseId(name, CLUSTER_PREFIX)));
+                clusters.put(name, cluster);
+            }
+
+            subgraph = new Scope(cluster, null);
+        }
+        else {
+            subgraph = new Scope(scope.graph, scope);
+        }
+
+        parseStatements(subgraph);
+        expect(RIGHT_BRACE, "'}'");
+        subgraph.close();
+        scope.mentionAll(subgraph);
+    }
+
+    /**
+     * Parse a graph attribute, node or edge statement starting with an
+     * identifier.
+     *
+     * @param scope
+     *            the graph or subgraph containing the statement
+     * @throws IOException
+     *             when reading fails or the statement is invalid
+     */
+    private void parseNodeOrEdgeStatement(final Scope scope) throws IOException {
+        final long id = number;
+        final String name = id < 0 ? text.toString() : null;
+        advance();
+
+        if (token == EQUALS) {
+            advance();
+            scope.setAttribute(name == null ? NODE_PREFIX + id : name, parseValue());
+
+            return;
+        }
+
+        Node node = resolveNode(scope, name, id);
+        checkPort();
+
+        if (token != ARROW) {
+            relocate(node, scope.graph);
+            applyAttributes(node.getAttributes(), parseAttributes());
+
+            return;
+        }
+
+        final List<Node> chain = new ArrayList<>();
+        chain.add(node);
+
+        while (token == ARROW) {
+            advance();
+
+            if (token == LEFT_BRACE || isKeyword("subgraph")) {
+                throw error("subgraphs as edge end points are not supported");
+            }
+
+            if (!isIdentifier()) {
+                throw error("expected a node");
+            }
+
+            final long nextId = number;
+            node = resolveNode(scope, nextId < 0 ? text.toString() : null, nextId);
+            advance();
+            checkPort();
+            chain.add(node);
+        }
+
+        final AttributeSet attributes = parseAttributes();
+
+        for (int i = 1; i < chain.size(); i++) {
+            final Edge edge = scope.graph.newEdge(chain.get(i - 1), chain.get(i));
+            scope.applyEdgeDefaults(edge);
+            applyAttributes(edge.getAttributes(), attributes);
+        }
+    }
+
+    /**
+     * Reject a port following a node name.
+     *
+     * @throws IOException
+     *             when the current token starts a port.
+     */
+    private void checkPort() throws IOException {
+        if (token == COLON) {
+            throw error("ports are not supported");
+        }
+    }
+
+    /**
+     * Parse optional attribute lists.
+     *
+     * @return the attributes, the empty set when there are none.
+     * @throws IOException
+     *             when reading fails or an attribute list is invalid
+     */
+    private AttributeSet parseAttributes() throws IOException {
+        AttributeSet attributes = AttributeSet.EMPTY;
+
+        while (token == LEFT_BRACKET) {
+            advance();
+
+            while (token != RIGHT_BRACKET) {
+                if (!isIdentifier()) {
+                    throw error("expected an attribute name");
+                }
+
+                final String name = number < 0 ? text.toString() : NODE_PREFIX + number;
+                advance();
+                expect(EQUALS, "'='");
+                attributes = attributes.with(name, parseValue());
+
+                if (token == SEMICOLON || token == COMMA) {
+                    advance();
+                }
+            }
+
+            advance();
+        }
+
+        return attributes;
+    }
+
+    /**
+     * Parse an attribute value.
+     *
+     * @return the attribute value, HTML-like strings including the enclosing
+     *         angle brackets.
+     * @throws IOException
+     *             when reading fails or the current token is no value
+     */
+    private String parseValue() throws IOException {
+        if (!isIdentifier()) {
+            throw error("expected a value");
+        }
+
+        final String value = token == HTML ? '<' + text.toString() + '>' : text.toString();
+        advance();
+
+        return value;
+    }
+
+    /**
+     * Set the given attributes.
+     *
+     * @param target
+     *            attributes to modify
+     * @param attributes
+     *            attributes to set
+     */
+    private static void applyAttributes(final Attributes target, final AttributeSet attributes) {
+        for (final Attribute attribute : attributes.asList()) {
+            target.setAttribute(attribute.getName(), attribute.getValue());
+        }
+    }
+
+    /**
+     * Return the node with the given name, creating it in the graph of the
+     * given scope when it is mentioned for the first time.
+     *
+     * @param scope
+     *            the graph or subgraph mentioning the node
+     * @param name
+     *            name of the node, <code>null</code> if it is named
+     *            <code>node&lt;id&gt;</code>
+     * @param id
+     *            the id contained in the name of the node, <code>-1</code> if
+     *            it is not named <code>node&lt;id&gt;</code>
+     * @return the node with the given name
+     */
+    private Node resolveNode(final Scope scope, final String name, final long id) {
+        Node node;
+
+        if (id >= 0) {
+            final int index = numberedNodeIndex.get(id, 0);
+
+            if (index != LongPairIndex.ABSENT) {
+                node = numberedNodes.get(index);
+            }
+            else {
+                node = newNode(scope, NODE_PREFIX + id, id);
+                numberedNodeIndex.putIfAbsent(id, 0, numberedNodes.size());
+                numberedNodes.add(node);
+            }
+        }
+        else {
+            node = nodes.get(name);
+
+            if (node == null) {
+                node = newNode(scope, name, -1);
+                nodes.put(name, node);
+            }
+        }
+
+        scope.mention(node);
+
+        return node;
+    }
+
+    /**
+     * Record that the given node should be moved into the given graph when it
+     * is nested in the graph the node would belong to so far.
+     *
+     * @param node
+     *            the node of a node statement
+     * @param target
+     *            the graph or cluster containing the node statement
+     */
+    private void relocate(final Node node, final Graph target) {
+        final Graph home = relocations.getOrDefault(node, node.getGraph());
+
+        if (target == home) {
+            return;
+        }
+
+        for (Graph current = target.getParent(); current != null; current = current.getParent()) {
+            if (current == home) {
+                relocations.put(node, target);
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Move nodes with node statements in nested clusters into the innermost of
+     * these clusters. The nodes are removed from their graphs in one pass per
+     * graph and appended to their clusters in the order of the node
+     * statements.
+     */
+    private void relocateNodes() {
+        final Map<Graph, Set<Node>> released = new IdentityHashMap<>();
+
+        for (final Node node : relocations.keySet()) {
+            released.computeIfAbsent(node.getGraph(), current -> Collections.newSetFromMap(new IdentityHashMap<>()))
+                .add(node);
+        }
+
+        for (final Map.Entry<Graph, Set<Node>> entry : released.entrySet()) {
+            entry.getKey().releaseNodes(entry.getValue());
+        }
+
+        for (final Map.Entry<Node, Graph> entry : relocations.entrySet()) {
+            entry.getValue().adoptNode(entry.getKey());
+        }
+    }
+
+    /**
+     * Create a node in the graph of the given scope.
+     *
+     * @param scope
+     *            the graph or subgraph mentioning the node first
+     * @param name
+     *            name of the node
+     * @param id
+     *            the id contained in the name of the node, <code>-1</code> if
+     *            it is not named <code>node&lt;id&gt;</code>
+     * @return the new node
+     */
+    private Node newNode(final Scope scope, final String name, final long id) {
+        final Id nodeId = newNodeId(id);
+        final Node node = scope.graph.newNode(nodeId);
+
+        if (nodeId.getValue() != id) {
+            node.getAttributes().setAttribute("label", name);
+        }
+
+        scope.applyNodeDefaults(node);
+
+        return node;
+    }
+
+    /**
+     * Assign a node id, preferably the given one.
+     *
+     * @param id
+     *            the preferred id, <code>-1</code> to assign a new one
+     * @return the assigned id
+     */
+    private Id newNodeId(final long id) {
+        long value = id;
+
+        if (value < 0 || nodeIds.get(value, 0) != LongPairIndex.ABSENT) {
+            while (nodeIds.get(nextNodeId, 0) != LongPairIndex.ABSENT) {
+                nextNodeId++;
+            }
+
+            value = nextNodeId;
+        }
+
+        nodeIds.putIfAbsent(value, 0, 0);
+        maxNodeId = Math.max(maxNodeId, value);
+
+        return Id.valueOf(value);
+    }
+
+    /**
+     * Assign a graph id, preferably the given one.
+     *
+     * @param id
+     *            the preferred id, <code>-1</code> to assign a new one
+     * @return the assigned id
+     */
+    private Id newGraphId(final long id) {
+        long value = id;
+
+        if (value < 0 || graphIds.get(value, 0) != LongPairIndex.ABSENT) {
+            while (graphIds.get(nextGraphId, 0) != LongPairIndex.ABSENT) {
+                nextGraphId++;
+            }
+
+            value = nextGraphId;
+        }
+
+        graphIds.putIfAbsent(value, 0, 0);
+        maxGraphId = Math.max(maxGraphId, value);
+
+        return Id.valueOf(value);
+    }
+
+    /**
+     * Extract the id from a name consisting of the given prefix followed by a
+     * decimal number without leading zeros.
+     *
+     * @param name
+     *            name to extract the id from
+     * @param prefix
+     *            expected prefix
+     * @return the id or <code>-1</code> if the name does not have the expected
+     *         form
+     */
+    private static long parseId(final CharSequence name, final String prefix) {
+        final int length = name.length();
+        final int start = prefix.length();
+
+        if (length <= start || length - start > 18 || name.charAt(start) == '0' && length - start > 1) {
+            return -1;
+        }
+
+        for (int i = 0; i < start; i++) {
+            if (name.charAt(i) != prefix.charAt(i)) {
+                return -1;
+            }
+        }
+
+        long id = 0;
+
+        for (int i = start; i < length; i++) {
+            final char c = name.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            id = id * 10 + c - '0';
+        }
+
+        return id;
+    }
+
+    /**
+     * Consume the current token, which has to be of the given type.
+     *
+     * @param type
+     *            expected token type
+     * @param description
+     *            description of the expected token for error messages
+     * @throws IOException
+     *             when the current token has a different type
+     */
+    private void expect(final int type, final String description) throws IOException {
+        if (token != type) {
+            throw error("expected " + description);
+        }
+
+        advance();
+    }
+
+    /**
+     * Query whether the current token is an identifier, a quoted string or an
+     * HTML-like string.
+     *
+     * @return <code>true</code> if the current token can be used as a name or
+     *         value, <code>false</code> otherwise.
+     */
+    private boolean isIdentifier() {
+        return token == ID || token == STRING || token == HTML;
+    }
+
+    /**
+     * Query whether the current token is the given keyword. Keywords are case
+     * insensitive and never quoted.
+     *
+     * @param keyword
+     *            keyword in lower case
+     * @return <code>true</code> when the current token is the given keyword,
+     *         <code>false</code> otherwise.
+     */
+    private boolean isKeyword(final String keyword) {
+        if (token != ID || text.length() != keyword.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < keyword.length(); i++) {
+            if (Character.toLowerCase(text.charAt(i)) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Read the next token.
+     *
+     * @throws IOException
+     *             when reading fails or the input contains an invalid token
+     */
+    private void advance() throws IOException {
+        skipWhiteSpaceAndComments();
+        text.setLength(0);
+        number = -1;
+
+        final int c = read();
+
+        switch (c) {
+            case -1:
+                token = EOF;
+                break;
+            case '{':
+                token = LEFT_BRACE;
+                break;
+            case '}':
+                token = RIGHT_BRACE;
+                break;
+            case '[':
+                token = LEFT_BRACKET;
+                break;
+            case ']':
+                token = RIGHT_BRACKET;
+                break;
+            case ';':
+                token = SEMICOLON;
+                break;
+            case ',':
+                token = COMMA;
+                break;
+            case '=':
+                token = EQUALS;
+                break;
+            case ':':
+                token = COLON;
+                break;
+            case '"':
+                readString();
+                break;
+            case '<':
+                readHtml();
+                break;
+            case '-':
+                if (peek() == '>') {
+                    read();
+                    token = ARROW;
+                }
+                else if (peek() == '-') {
+                    throw error("undirected edges are not supported");
+                }
+                else {
+                    text.append('-');
+                    readNumeral();
+                }
+                break;
+            default:
+                if (isLetter(c)) {
+                    text.append((char)c);
+                    readName();
+                }
+                else if (c == '.' || c >= '0' && c <= '9') {
+                    text.append((char)c);
+                    readNumeral();
+                }
+                else {
+                    throw error("unexpected character '" + (char)c + "'");
+                }
+        }
+    }
+
+    /**
+     * Read the rest of an unquoted name. Determines the id of names of the
+     * form <code>node&lt;id&gt;</code> while reading.
+     *
+     * @throws IOException
+     *             when reading fails
+     */
+    private void readName() throws IOException {
+        boolean numbered = text.charAt(0) == 'n';
+        long id = 0;
+        int digits = 0;
+
+        for (int c = peek(); isLetter(c) || c >= '0' && c <= '9'; c = peek()) {
+            read();
+
+            if (numbered) {
+                final int index = text.length();
+
+                if (index < NODE_PREFIX.length()) {
+                    numbered = c == NODE_PREFIX.charAt(index);
+                }
+                else if (c >= '0' && c <= '9' && digits < 18 && (digits == 0 || id != 0)) {
+                    id = id * 10 + c - '0';
+                    digits++;
+                }
+                else {
+                    numbered = false;
+                }
+            }
+
+            text.append((char)c);
+        }
+
+        token = ID;
+        number = numbered && digits > 0 ? id : -1;
+    }
+
+    /**
+     * Read the rest of a numeral.
+     *
+     * @throws IOException
+     *             when reading fails
+     */
+    private void readNumeral() throws IOException {
+        for (int c = peek(); c == '.' || c >= '0' && c <= '9'; c = peek()) {
+            text.append((char)read());
+        }
+
+        token = ID;
+    }
+
+    /**
+     * Read the rest of a quoted string including strings concatenated with
+     * <code>+</code>. Escaped line breaks are removed, all other escape
+     * sequences including escaped quotes are kept, so the string can be
+     * written again as it was read. Determines the id of strings of the form
+     * <code>node&lt;id&gt;</code>.
+     *
+     * @throws IOException
+     *             when reading fails or the string is not terminated
+     */
+    private void readString() throws IOException {
+        while (true) {
+            for (int c = read(); c != '"'; c = read()) {
+                if (c == -1) {
+                    throw error("unterminated string");
+                }
+
+                if (c == '\\') {
+                    final int next = read();
+
+                    if (next == '\n') {
+                        continue;
+                    }
+
+                    if (next == -1) {
+                        throw error("unterminated string");
+                    }
+
+                    text.append('\\').append((char)next);
+                }
+                else {
+                    text.append((char)c);
+                }
+            }
+
+            skipWhiteSpaceAndComments();
+
+            if (peek() != '+') {
+                break;
+            }
+
+            read();
+            skipWhiteSpaceAndComments();
+
+            if (read() != '"') {
+                throw error("expected a string after '+'");
+            }
+        }
+
+        token = STRING;
+        number = parseId(text, NODE_PREFIX);
+    }
+
+    /**
+     * Read the rest of an HTML-like string. The text of the token does not
+     * contain the enclosing angle brackets.
+     *
+     * @throws IOException
+     *             when reading fails or the string is not terminated
+     */
+    private void readHtml() throws IOException {
+        int depth = 1;
+
+        while (true) {
+            final int c = read();
+
+            if (c == -1) {
+                throw error("unterminated HTML string");
+            }
+
+            if (c == '<') {
+                depth++;
+            }
+            else if (c == '>' && --depth == 0) {
+                break;
+            }
+
+            text.append((char)c);
+        }
+
+        token = HTML;
+    }
+
+    /**
+     * Skip white space, comments and preprocessor output lines.
+     *
+     * @throws IOException
+     *             when reading fails or a comment is not terminated
+     */
+    private void skipWhiteSpaceAndComments() throws IOException {
+        for (int c = peek(); c != -1; c = peek()) {
+            if (Character.isWhitespace(c)) {
+                read();
+            }
+            else if (c == '#' && lineStart) {
+                skipLine();
+            }
+            else if (c == '/') {
+                read();
+                final int next = read();
+
+                if (next == '/') {
+                    skipLine();
+                }
+                else if (next == '*') {
+                    skipComment();
+                }
+                else {
+                    throw error("unexpected character '/'");
+                }
+            }
+            else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Skip the rest of the current line.
+     *
+     * @throws IOException
+     *             when reading fails
+     */
+    private void skipLine() throws IOException {
+        for (int c = read(); c != '\n' && c != -1; c = read()) {
+            // skip
+        }
+    }
+
+    /**
+     * Skip the rest of a block comment.
+     *
+     * @throws IOException
+     *             when reading fails or the comment is not terminated
+     */
+    private void skipComment() throws IOException {
+        int previous = 0;
+
+        for (int c = read(); previous != '*' || c != '/'; c = read()) {
+            if (c == -1) {
+                throw error("unterminated comment");
+            }
+
+            previous = c;
+        }
+    }
+
+    /**
+     * Query whether the given character may start an unquoted name.
+     *
+     * @param c
+     *            character to examine
+     * @return <code>true</code> when the character is a letter, an underscore
+     *         or a non ASCII character.
+     */
+    private static boolean isLetter(final int c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || c >= 0x80;
+    }
+
+    /**
+     * Return the next character without consuming it.
+     *
+     * @return the next character or <code>-1</code> at the end of input.
+     * @throws IOException
+     *             when reading fails
+     */
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+
+        return buffer[position];
+    }
+
+    /**
+     * Consume the next character.
+     *
+     * @return the next character or <code>-1</code> at the end of input.
+     * @throws IOException
+     *             when reading fails
+     */
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+
+        final char c = buffer[position++];
+
+        if (c == '\n') {
+            line++;
+            lineStart = true;
+        }
+        else if (!Character.isWhitespace(c)) {
+            lineStart = false;
+        }
+
+        return c;
+    }
+
+    /**
+     * Refill the input buffer.
+     *
+     * @return <code>true</code> when characters were read,
+     *         <code>false</code> at the end of input.
+     * @throws IOException
+     *             when reading fails
+     */
+    private boolean fill() throws IOException {
+        int count;
+
+        do {
+            count = reader.read(buffer, 0, buffer.length);
+        }
+        while (count == 0);
+
+        position = 0;
+        limit = Math.max(count, 0);
+
+        return count > 0;
+    }
+
+    /**
+     * Create an exception describing a syntax error at the current line.
+     *
+     * @param message
+     *            description of the error
+     * @return exception describing the error
+     */
+    private IOException error(final String message) {
+        return new IOException("line " + line + ": " + message);
+    }
+
+    /**
+     * A graph, cluster or anonymous subgraph statements are read into.
+     *
+     * @author Dirk Weigenand
+     */
+    private final class Scope {
+        /**
+         * the graph or cluster nodes and edges are added to.
+         */
+        private final Graph graph;
+
+        /**
+         * the enclosing anonymous subgraph or graph, <code>null</code> for
+         * graphs and clusters.
+         */
+        private final Scope parent;
+
+        /**
+         * common node attributes of an anonymous subgraph.
+         */
+        private AttributeSet nodeDefaults = AttributeSet.EMPTY;
+
+        /**
+         * common edge attributes of an anonymous subgraph.
+         */
+        private AttributeSet edgeDefaults = AttributeSet.EMPTY;
+
+        /**
+         * whether the nodes of this anonymous subgraph have the same rank.
+         */
+        private boolean sameRank;
+
+        /**
+         * nodes mentioned in this anonymous subgraph.
+         */
+        private final List<Node> mentioned;
+
+        /**
+         * Create a scope.
+         *
+         * @param graph
+         *            the graph or cluster nodes and edges are added to.
+         * @param parent
+         *            the enclosing scope of an anonymous subgraph,
+         *            <code>null</code> for graphs and clusters.
+         */
+        Scope(final Graph graph, final Scope parent) {
+            this.graph = graph;
+            this.parent = parent;
+            this.mentioned = parent == null ? null : new ArrayList<>();
+
+            if (parent != null) {
+                nodeDefaults = parent.nodeDefaults;
+                edgeDefaults = parent.edgeDefaults;
+            }
+        }
+
+        /**
+         * Set a graph attribute. Anonymous subgraphs only support
+         * <code>rank=same</code>.
+         *
+         * @param name
+         *            attribute name
+         * @param value
+         *            attribute value
+         */
+        void setAttribute(final String name, final String value) {
+            if (parent == null) {
+                graph.getAttributes().setAttribute(name, value);
+            }
+            else if ("rank".equals(name)) {
+                sameRank = "same".equals(value);
+            }
+        }
+
+        /**
+         * Add common node attributes.
+         *
+         * @param attributes
+         *            common node attributes
+         */
+        void addNodeDefaults(final AttributeSet attributes) {
+            if (parent == null) {
+                applyAttributes(graph.getNodeAttributes(), attributes);
+            }
+            else {
+                nodeDefaults = merge(nodeDefaults, attributes);
+            }
+        }
+
+        /**
+         * Add common edge attributes.
+         *
+         * @param attributes
+         *            common edge attributes
+         */
+        void addEdgeDefaults(final AttributeSet attributes) {
+            if (parent == null) {
+                applyAttributes(graph.getEdgeAttributes(), attributes);
+            }
+            else {
+                edgeDefaults = merge(edgeDefaults, attributes);
+            }
+        }
+
+        /**
+         * Set the common node attributes of an anonymous subgraph on a new
+         * node.
+         *
+         * @param node
+         *            the new node
+         */
+        void applyNodeDefaults(final Node node) {
+            applyAttributes(node.getAttributes(), nodeDefaults);
+        }
+
+        /**
+         * Set the common edge attributes of an anonymous subgraph on a new
+         * edge.
+         *
+         * @param edge
+         *            the new edge
+         */
+        void applyEdgeDefaults(final Edge edge) {
+            applyAttributes(edge.getAttributes(), edgeDefaults);
+        }
+
+        /**
+         * Record that the given node was mentioned in this scope.
+         *
+         * @param node
+         *            the mentioned node
+         */
+        void mention(final Node node) {
+            if (mentioned != null) {
+                mentioned.add(node);
+            }
+        }
+
+        /**
+         * Record that the nodes mentioned in the given nested anonymous
+         * subgraph were mentioned in this scope.
+         *
+         * @param nested
+         *            the nested scope
+         */
+        void mentionAll(final Scope nested) {
+            if (mentioned != null && nested.mentioned != null) {
+                mentioned.addAll(nested.mentioned);
+            }
+        }
+
+        /**
+         * Rank the nodes of an anonymous subgraph with <code>rank=same</code>.
+         */
+        void close() {
+            if (sameRank && !mentioned.isEmpty()) {
+                final String rank = Integer.toString(ranks++);
+                final Set<Node> ranked = Collections.newSetFromMap(new IdentityHashMap<>());
+
+                for (final Node node : mentioned) {
+                    if (ranked.add(node)) {
+                        graph.rank(rank, node);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Add the given attributes to the given attribute set.
+         *
+         * @param attributes
+         *            attribute set to add to
+         * @param additions
+         *            attributes to add
+         * @return the combined attribute set
+         */
+        private AttributeSet merge(final AttributeSet attributes, final AttributeSet additions) {
+            AttributeSet result = attributes;
+
+            for (final Attribute attribute : additions.asList()) {
+                result = result.with(attribute.getName(), attribute.getValue());
+            }
+
+            return result;
+        }
+    }
+}
@@ -9,6 +9,11 @@ package org.arachna.dot4j.model;
  * @author Dirk Weigenand
  */
 public class Edge {
+    /**
+     * the graph containing this edge.
+     */
+    private volatile Graph graph;
+
     /**
      * the start node of this edge.
      */
@@ -20,27 +25,31 @@ public class Edge {
     private Node endNode;
 
     /**
-     * Attributes for this edge.
+     * Attributes for this edge, created when first requested.
      */
-    private final Attributes attributes = new Attributes();
+    private volatile Attributes attributes;
 
     /**
      * Create a new edge with the given start and end node. The attributes are
-     * initialized to an empty collection of attributes.
+     * created when they are first requested.
      * 
+     * @param graph
+     *            the graph containing this edge.
      * @param startNode
      *            start node of this edge.
      * @param endNode
      *            end node of this edge.
      */
-    Edge(final Node startNode, final Node endNode) {
+    Edge(final Graph graph, final Node startNode, final Node endNode) {
 
         if (startNode == null || endNode == null) {
             throw new IllegalArgumentException("start and end node must not be null!");
         }
 
+        this.graph = graph;
         this.startNode = startNode;
         this.endNode = endNode;
+        graph.topologyModified();
     }
 
     /**
@@ -58,34 +67,140 @@ public class Edge {
     }
 
     /**
+     * Change the start node of this edge. If the graph already contains an
+     * edge between the new end points, this edge is merged into it and
+     * detached from the graph, see
+     * {@link Graph#reconnectEdge(Edge, Node, Node)}. Changing the start node
+     * of a detached edge only changes this edge.
+     * 
      * @param startNode
      *            the startNode to set
      */
-    public void setStartNode(Node startNode) {
+    public void setStartNode(final Node startNode) {
         if (startNode == null) {
             throw new IllegalArgumentException("startNode must not be null!");
         }
 
-        this.startNode = startNode;
+        reconnect(startNode, endNode);
     }
 
     /**
+     * Change the end node of this edge. If the graph already contains an edge
+     * between the new end points, this edge is merged into it and detached
+     * from the graph: {@link #getGraph()} returns <code>null</code> and the
+     * edges of the graph no longer contain it. Use
+     * {@link Graph#reconnectEdge(Edge, Node, Node)} to obtain the edge the
+     * nodes are connected by afterwards. Changing the end node of a detached
+     * edge, e.g. one removed from its graph, only changes this edge.
+     * <p>
+     * End nodes may be changed while iterating over {@link Graph#getEdges()}.
+     * 
      * @param endNode
      *            the endNode to set
      */
-    public void setEndNode(Node endNode) {
+    public void setEndNode(final Node endNode) {
         if (endNode == null) {
             throw new IllegalArgumentException("endNode must not be null!");
         }
 
+        reconnect(startNode, endNode);
+    }
+
+    /**
+     * Change the end points of this edge through the graph containing it, or
+     * directly if it is detached.
+     * 
+     * @param startNode
+     *            the new start node
+     * @param endNode
+     *            the new end node
+     */
+    private void reconnect(final Node startNode, final Node endNode) {
+        final Graph current = graph;
+
+        if (current == null) {
+            setEndPoints(startNode, endNode);
+        }
+        else {
+            current.reconnectEdge(this, startNode, endNode);
+        }
+    }
+
+    /**
+     * Move this edge into the given graph. Only to be called by the graph
+     * adopting, removing or merging this edge.
+     * 
+     * @param graph
+     *            the graph now containing this edge, <code>null</code> to
+     *            detach it.
+     */
+    void setGraph(final Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Set the end points of this edge without notifying the graph. Only to be
+     * called by the graph containing this edge.
+     * 
+     * @param startNode
+     *            the new start node
+     * @param endNode
+     *            the new end node
+     */
+    void setEndPoints(final Node startNode, final Node endNode) {
+        this.startNode = startNode;
         this.endNode = endNode;
     }
 
+    /**
+     * Get the graph this edge belongs to.
+     * 
+     * @return the containing graph, <code>null</code> if this edge has been
+     *         removed from its graph or merged into another edge.
+     */
+    public Graph getGraph() {
+        return graph;
+    }
+
     /**
      * @return the attributes
      */
     public Attributes getAttributes() {
-        return attributes;
+        Attributes result = attributes;
+
+        if (result == null) {
+            synchronized (this) {
+                result = attributes;
+
+                if (result == null) {
+                    result = new Attributes() {
+                        @Override
+                        void changed() {
+                            final Graph current = graph;
+
+                            if (current != null) {
+                                current.edgesModified();
+                            }
+                        }
+                    };
+                    attributes = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Query whether any attributes have been set on this edge.
+     * 
+     * @return <code>true</code> when there are attributes set on this edge,
+     *         <code>false</code> otherwise.
+     */
+    public boolean hasAttributes() {
+        final Attributes result = attributes;
+
+        return result != null && !result.isEmpty();
     }
 
     /**
@@ -0,0 +1,337 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The edges of a {@link Graph} indexed by the ids of their start and end
+ * nodes.
+ * <p>
+ * Iteration returns the edges in the order they were added. Removed edges,
+ * including edges merged away by {@link #reconnect(Edge, Node, Node)}, leave
+ * holes, so removing or reconnecting edges while iterating neither skips nor
+ * repeats the remaining edges. The holes are closed when an edge is added and
+ * they make up at least half of the full edge array; iterators created before
+ * fail with a {@link ConcurrentModificationException}. The end points of
+ * indexed edges are only changed through {@link #reconnect(Edge, Node, Node)},
+ * which keeps the index up to date.
+ *
+ * @author Dirk Weigenand
+ */
+final class EdgeIndex extends AbstractCollection<Edge> {
+    /**
+     * initial capacity of the edge array.
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * the graph containing the indexed edges.
+     */
+    private final Graph graph;
+
+    /**
+     * positions of the edges in {@link #edges} indexed by start and end node
+     * id.
+     */
+    private final LongPairIndex positions = new LongPairIndex();
+
+    /**
+     * the edges in the order they were added.
+     */
+    private Edge[] edges = new Edge[INITIAL_CAPACITY];
+
+    /**
+     * ids of the start and end nodes the edges were indexed with, two
+     * consecutive entries per edge.
+     */
+    private long[] keys = new long[INITIAL_CAPACITY << 1];
+
+    /**
+     * number of used entries in {@link #edges}, including holes.
+     */
+    private int end;
+
+    /**
+     * number of times the holes have been closed, i.e. edges have been moved
+     * to other positions.
+     */
+    private int modCount;
+
+    /**
+     * Create an empty index for the edges of the given graph.
+     *
+     * @param graph the graph containing the indexed edges.
+     */
+    EdgeIndex(final Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Return the edge between the given nodes.
+     *
+     * @param startNode start node of the edge
+     * @param endNode   end node of the edge
+     * @return the edge between the given nodes or <code>null</code> if there
+     *         is none.
+     */
+    Edge get(final Node startNode, final Node endNode) {
+        final int position = positions.get(startNode.getId().getValue(), endNode.getId().getValue());
+
+        return position == LongPairIndex.ABSENT ? null : edges[position];
+    }
+
+    /**
+     * Return the edge between the given nodes, creating it if there is none
+     * yet.
+     *
+     * @param startNode start node of the edge
+     * @param endNode   end node of the edge
+     * @return the edge between the given nodes.
+     */
+    Edge getOrCreate(final Node startNode, final Node endNode) {
+        final long start = startNode.getId().getValue();
+        final long stop = endNode.getId().getValue();
+        final int position = positions.putIfAbsent(start, stop, end);
+
+        if (position != LongPairIndex.ABSENT) {
+            return edges[position];
+        }
+
+        return append(new Edge(graph, startNode, endNode), start, stop);
+    }
+
+    /**
+     * Add the given edge unless there already is an edge between its end
+     * points.
+     *
+     * @param edge edge to add
+     * @return the given edge when it was added, the existing edge between its
+     *         end points otherwise.
+     */
+    Edge getOrAdd(final Edge edge) {
+        final long start = edge.getStartNode().getId().getValue();
+        final long stop = edge.getEndNode().getId().getValue();
+        final int position = positions.putIfAbsent(start, stop, end);
+
+        if (position != LongPairIndex.ABSENT) {
+            return edges[position];
+        }
+
+        return append(edge, start, stop);
+    }
+
+    /**
+     * Append the given edge, which has already been registered in
+     * {@link #positions} at the current end. When the edge array is full it is
+     * compacted if at least half of it are holes and grown otherwise.
+     *
+     * @param edge  edge to append
+     * @param start id of the start node
+     * @param stop  id of the end node
+     * @return the appended edge
+     */
+    private Edge append(final Edge edge, final long start, final long stop) {
+        if (end == edges.length) {
+            if (positions.size() - 1 <= end >> 1) {
+                compact();
+                positions.put(start, stop, end);
+            }
+            else {
+                edges = Arrays.copyOf(edges, end << 1);
+                keys = Arrays.copyOf(keys, end << 2);
+            }
+        }
+
+        edges[end] = edge;
+        keys[end << 1] = start;
+        keys[(end << 1) + 1] = stop;
+        end++;
+
+        return edge;
+    }
+
+    /**
+     * Remove the given edge.
+     *
+     * @param edge edge to remove
+     * @return <code>true</code> when the edge was removed,
+     *         <code>false</code> if it is not contained in this index.
+     */
+    boolean remove(final Edge edge) {
+        final int position = positionOf(edge);
+
+        if (position == LongPairIndex.ABSENT) {
+            return false;
+        }
+
+        removeAt(position);
+
+        return true;
+    }
+
+    /**
+     * Change the end points of the given edge. If there already is an edge
+     * between the new end points, the given edge is removed and the existing
+     * edge returned instead.
+     *
+     * @param edge      edge to change the end points of
+     * @param startNode the new start node
+     * @param endNode   the new end node
+     * @return the edge between the new end points.
+     * @throws IllegalArgumentException if the edge is not contained in this
+     *                                  index.
+     */
+    Edge reconnect(final Edge edge, final Node startNode, final Node endNode) {
+        final int position = positionOf(edge);
+
+        if (position == LongPairIndex.ABSENT) {
+            throw new IllegalArgumentException("edge is not contained in this graph!");
+        }
+
+        final long start = startNode.getId().getValue();
+        final long stop = endNode.getId().getValue();
+        final int existing = positions.get(start, stop);
+        edge.setEndPoints(startNode, endNode);
+
+        if (existing == position) {
+            return edge;
+        }
+
+        if (existing != LongPairIndex.ABSENT) {
+            final Edge survivor = edges[existing];
+            removeAt(position);
+
+            return survivor;
+        }
+
+        positions.remove(keys[position << 1], keys[(position << 1) + 1]);
+        positions.put(start, stop, position);
+        keys[position << 1] = start;
+        keys[(position << 1) + 1] = stop;
+
+        return edge;
+    }
+
+    /**
+     * Return the position of the given edge.
+     *
+     * @param edge edge to look up
+     * @return the position of the edge or {@link LongPairIndex#ABSENT} if it
+     *         is not contained in this index.
+     */
+    private int positionOf(final Edge edge) {
+        final int position =
+            positions.get(edge.getStartNode().getId().getValue(), edge.getEndNode().getId().getValue());
+
+        return position == LongPairIndex.ABSENT || edges[position] != edge ? LongPairIndex.ABSENT : position;
+    }
+
+    /**
+     * Remove the edge at the given position, leaving a hole.
+     *
+     * @param position position of the edge to remove
+     */
+    private void removeAt(final int position) {
+        positions.remove(keys[position << 1], keys[(position << 1) + 1]);
+        edges[position] = null;
+    }
+
+    /**
+     * Close the holes left by removed edges.
+     */
+    private void compact() {
+        modCount++;
+
+        int target = 0;
+
+        for (int source = 0; source < end; source++) {
+            if (edges[source] != null) {
+                edges[target] = edges[source];
+                keys[target << 1] = keys[source << 1];
+                keys[(target << 1) + 1] = keys[(source << 1) + 1];
+                positions.put(keys[target << 1], keys[(target << 1) + 1], target);
+                target++;
+            }
+        }
+
+        Arrays.fill(edges, target, end, null);
+        end = target;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return positions.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Edge> iterator() {
+        return new Iterator<>() {
+            /**
+             * position of the next edge.
+             */
+            private int position = skipHoles(0);
+
+            /**
+             * the number of times the holes have been closed when this
+             * iterator was created.
+             */
+            private final int expectedModCount = modCount;
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public boolean hasNext() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+
+                return position < end;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public Edge next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                final Edge edge = edges[position];
+                position = skipHoles(position + 1);
+
+                return edge;
+            }
+        };
+    }
+
+    /**
+     * Return the position of the first edge at or after the given position.
+     *
+     * @param position position to start searching at
+     * @return position of the next edge or the number of used entries if
+     *         there is none.
+     */
+    private int skipHoles(final int position) {
+        int result = position;
+
+        while (result < end && edges[result] == null) {
+            result++;
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Algorithm to move every edge of a graph and its clusters into the innermost
+ * graph containing both of its end points, i.e. the lowest common ancestor of
+ * the clusters of its start and end node.
+ * <p>
+ * Edges are emitted with the graph they belong to, so edges created in the top
+ * level graph between nodes of the same cluster are written outside of that
+ * cluster. Moving them into the cluster keeps the layout work of GraphViz
+ * local to the cluster.
+ * <p>
+ * The parent and depth of every graph are recorded in tables before any edge
+ * is moved, and the common ancestor of each pair of graphs is computed only
+ * once. When the target graph already contains an edge between the same nodes
+ * the moved edge is merged into it.
+ *
+ * @author Dirk Weigenand
+ */
+public class EdgePlacementAlgorithm {
+    /**
+     * the graph whose edges should be moved.
+     */
+    private final Graph graph;
+
+    /**
+     * the graph and its clusters in depth first order.
+     */
+    private final List<Graph> graphs = new ArrayList<Graph>();
+
+    /**
+     * positions of the graphs in {@link #graphs} indexed by graph id.
+     */
+    private final LongPairIndex graphNumbers = new LongPairIndex();
+
+    /**
+     * common ancestors indexed by the positions of two graphs.
+     */
+    private final LongPairIndex ancestors = new LongPairIndex();
+
+    /**
+     * positions of the parents of the graphs, <code>-1</code> for the top
+     * level graph.
+     */
+    private int[] parents;
+
+    /**
+     * nesting depths of the graphs.
+     */
+    private int[] depths;
+
+    /**
+     * Create an instance of the algorithm using the given graph.
+     *
+     * @param graph
+     *            graph whose edges should be moved.
+     */
+    public EdgePlacementAlgorithm(final Graph graph) {
+        if (graph == null) {
+            throw new IllegalArgumentException("Graph must not be null!");
+        }
+
+        this.graph = graph;
+    }
+
+    /**
+     * Move every edge into the innermost graph containing both of its end
+     * points. Edges whose end points are not contained in the graph are left
+     * where they are.
+     *
+     * @return the number of moved edges.
+     */
+    public int execute() {
+        collectGraphs();
+
+        int moved = 0;
+
+        for (int number = 0; number < graphs.size(); number++) {
+            final Graph current = graphs.get(number);
+
+            for (final Edge edge : new ArrayList<Edge>(current.getEdges())) {
+                final int start = numberOf(edge.getStartNode().getGraph());
+                final int end = numberOf(edge.getEndNode().getGraph());
+
+                if (start == LongPairIndex.ABSENT || end == LongPairIndex.ABSENT) {
+                    continue;
+                }
+
+                final int target = commonAncestor(start, end);
+
+                if (target != number) {
+                    current.removeEdge(edge);
+                    graphs.get(target).adoptEdge(edge);
+                    moved++;
+                }
+            }
+        }
+
+        return moved;
+    }
+
+    /**
+     * Number the graph and its clusters in depth first order and record their
+     * parents and depths.
+     */
+    private void collectGraphs() {
+        final List<Integer> parentList = new ArrayList<Integer>();
+        final Deque<Graph> pending = new ArrayDeque<Graph>();
+        pending.push(graph);
+
+        while (!pending.isEmpty()) {
+            final Graph current = pending.pop();
+            graphNumbers.putIfAbsent(current.getId().getValue(), 0, graphs.size());
+            parentList.add(current == graph ? -1 : numberOf(current.getParent()));
+            graphs.add(current);
+
+            final List<Graph> clusters = new ArrayList<Graph>(current.getClusters());
+
+            for (int i = clusters.size() - 1; i >= 0; i--) {
+                pending.push(clusters.get(i));
+            }
+        }
+
+        parents = new int[graphs.size()];
+        depths = new int[graphs.size()];
+
+        for (int number = 0; number < parents.length; number++) {
+            parents[number] = parentList.get(number);
+            depths[number] = parents[number] < 0 ? 0 : depths[parents[number]] + 1;
+        }
+    }
+
+    /**
+     * Return the position of the given graph.
+     *
+     * @param current
+     *            graph to look up
+     * @return the position of the graph or {@link LongPairIndex#ABSENT} if it
+     *         is not contained in the graph.
+     */
+    private int numberOf(final Graph current) {
+        return graphNumbers.get(current.getId().getValue(), 0);
+    }
+
+    /**
+     * Return the innermost graph containing both given graphs.
+     *
+     * @param first
+     *            position of the first graph
+     * @param second
+     *            position of the second graph
+     * @return the position of the innermost graph containing both graphs.
+     */
+    private int commonAncestor(final int first, final int second) {
+        if (first == second) {
+            return first;
+        }
+
+        final int cached = ancestors.get(Math.min(first, second), Math.max(first, second));
+
+        if (cached != LongPairIndex.ABSENT) {
+            return cached;
+        }
+
+        int left = first;
+        int right = second;
+
+        while (depths[left] > depths[right]) {
+            left = parents[left];
+        }
+
+        while (depths[right] > depths[left]) {
+            right = parents[right];
+        }
+
+        while (left != right) {
+            left = parents[left];
+            right = parents[right];
+        }
+
+        ancestors.put(Math.min(first, second), Math.max(first, second), left);
+
+        return left;
+    }
+}
@@ -4,9 +4,23 @@
 package org.arachna.dot4j.model;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * A GraphViz graph.
+ * <p>
+ * Clusters, nodes, edges and ranks may be added from several threads
+ * concurrently. Each graph guards its own contents, so threads filling
+ * different clusters do not contend with each other. The contents must not be
+ * read while they are still being modified.
+ * <p>
+ * Modifications are tracked lazily: a modification only marks its graph as
+ * dirty and climbs to the enclosing graphs until it reaches one that is
+ * already marked, so modifying a graph that is already dirty writes nothing
+ * shared. Modification stamps are taken from a counter per graph when a
+ * version is queried, e.g. when the graph is rendered.
  * 
  * @author Dirk Weigenand
  */
@@ -21,20 +35,73 @@ public class Graph {
      */
     private final Graph parent;
 
+    /**
+     * marks modified attributes, nodes or ranks of this graph.
+     */
+    private static final int NODES_DIRTY = 1;
+
+    /**
+     * marks modified edges of this graph.
+     */
+    private static final int EDGES_DIRTY = 2;
+
+    /**
+     * marks a modification of this graph or anything contained in it. Set on
+     * a graph only while it is set on all enclosing graphs.
+     */
+    private static final int SUBTREE_DIRTY = 4;
+
+    /**
+     * marks edges of this graph or its clusters that were added, removed or
+     * had their end points changed. Set on a graph only while it is set on
+     * all enclosing graphs.
+     */
+    private static final int TOPOLOGY_DIRTY = 8;
+
+    /**
+     * updater for {@link #dirty}.
+     */
+    private static final AtomicIntegerFieldUpdater<Graph> DIRTY =
+        AtomicIntegerFieldUpdater.newUpdater(Graph.class, "dirty");
+
+    /**
+     * updater for {@link #version}.
+     */
+    private static final AtomicLongFieldUpdater<Graph> VERSION =
+        AtomicLongFieldUpdater.newUpdater(Graph.class, "version");
+
+    /**
+     * updater for {@link #nodeVersion}.
+     */
+    private static final AtomicLongFieldUpdater<Graph> NODE_VERSION =
+        AtomicLongFieldUpdater.newUpdater(Graph.class, "nodeVersion");
+
+    /**
+     * updater for {@link #edgeVersion}.
+     */
+    private static final AtomicLongFieldUpdater<Graph> EDGE_VERSION =
+        AtomicLongFieldUpdater.newUpdater(Graph.class, "edgeVersion");
+
+    /**
+     * updater for {@link #topologyVersion}.
+     */
+    private static final AtomicLongFieldUpdater<Graph> TOPOLOGY_VERSION =
+        AtomicLongFieldUpdater.newUpdater(Graph.class, "topologyVersion");
+
     /**
      * attributes for this graph.
      */
-    private final Attributes attributes = new Attributes();
+    private final Attributes attributes = new GraphAttributes();
 
     /**
      * common attributes for this graphs nodes.
      */
-    private final Attributes nodeAttributes = new Attributes();
+    private final Attributes nodeAttributes = new GraphAttributes();
 
     /**
      * common attributes for this graphs edges.
      */
-    private final Attributes edgeAttributes = new Attributes();
+    private final Attributes edgeAttributes = new GraphAttributes();
 
     /**
      * factory for cluster ids.
@@ -59,17 +126,56 @@ public class Graph {
     private final Map<String, Collection<Node>> rankedNodes = new HashMap<>();
 
     /**
-     * edges in this graph.
+     * edges in this graph indexed by the ids of their start and end nodes,
+     * created when the first edge is added.
+     */
+    private EdgeIndex edges;
+
+    /**
+     * modifications not yet reflected in the stamps of this graph, a
+     * combination of {@link #NODES_DIRTY}, {@link #EDGES_DIRTY},
+     * {@link #SUBTREE_DIRTY} and {@link #TOPOLOGY_DIRTY}.
+     */
+    private volatile int dirty = NODES_DIRTY | EDGES_DIRTY | SUBTREE_DIRTY | TOPOLOGY_DIRTY;
+
+    /**
+     * stamp of the last modification of this graph or anything contained in
+     * it.
+     */
+    private volatile long version;
+
+    /**
+     * stamp of the last modification of the attributes, nodes or ranks of this
+     * graph.
+     */
+    private volatile long nodeVersion;
+
+    /**
+     * stamp of the last modification of the edges of this graph.
      */
-    private final Map<String, Edge> edges = new HashMap<>();
+    private volatile long edgeVersion;
+
+    /**
+     * stamp of the last time edges were added to or removed from this graph
+     * or its clusters, or had their end points changed.
+     */
+    private volatile long topologyVersion;
+
+    /**
+     * adjacency index of the edges of this graph and its clusters, built when
+     * first requested.
+     */
+    private volatile AdjacencyIndex adjacency;
 
     /**
      * Create a subgraph or cluster with the given parent graph.
      * 
      * @param parent
      *            parent graph
+     * @param id
+     *            id of the new graph, <code>null</code> to create a new one
      */
-    private Graph(final Graph parent) {
+    private Graph(final Graph parent, final Id id) {
         this.parent = parent;
 
         if (this.parent != null) {
@@ -81,14 +187,24 @@ public class Graph {
             nodeIdFactory = new IdFactory();
         }
 
-        id = clusterIdFactory.nextId();
+        this.id = id == null ? clusterIdFactory.nextId() : id;
     }
 
     /**
      * Create a top level graph object.
      */
     public Graph() {
-        this(null);
+        this(null, null);
+    }
+
+    /**
+     * Create a top level graph object with the given id.
+     * 
+     * @param id
+     *            id of the graph
+     */
+    Graph(final Id id) {
+        this(null, id);
     }
 
     /**
@@ -97,9 +213,25 @@ public class Graph {
      * @return a new subgraph/cluster.
      */
     public Graph newGraph() {
-        final Graph child = new Graph(this);
+        return newGraph(null);
+    }
 
-        clusters.add(child);
+    /**
+     * Create a new subgraph/cluster with the given id.
+     * 
+     * @param id
+     *            id of the new subgraph/cluster, <code>null</code> to create a
+     *            new one
+     * @return a new subgraph/cluster.
+     */
+    Graph newGraph(final Id id) {
+        final Graph child = new Graph(this, id);
+
+        synchronized (this) {
+            clusters.add(child);
+        }
+
+        modified(SUBTREE_DIRTY | TOPOLOGY_DIRTY);
 
         return child;
     }
@@ -110,15 +242,89 @@ public class Graph {
      * @return creates a new node object and associates it with this cluster.
      */
     public Node newNode() {
-        final Node node = new Node(this, nodeIdFactory.nextId());
+        return newNode(nodeIdFactory.nextId());
+    }
+
+    /**
+     * Create a node with the given id and associate it with this
+     * graph/cluster.
+     * 
+     * @param id
+     *            id of the new node
+     * @return creates a new node object and associates it with this cluster.
+     */
+    Node newNode(final Id id) {
+        final Node node = new Node(this, id);
+
+        synchronized (this) {
+            nodes.add(node);
+        }
 
-        nodes.add(node);
+        nodesModified();
 
         return node;
     }
 
     /**
-     * Add a new edge to this graph.
+     * Remove the given nodes from this graph and its ranks. Edges referring to
+     * the nodes are not removed.
+     * 
+     * @param removed
+     *            nodes to remove
+     */
+    void removeNodes(final Set<Node> removed) {
+        synchronized (this) {
+            nodes.removeIf(removed::contains);
+
+            for (final Iterator<Collection<Node>> ranks = rankedNodes.values().iterator(); ranks.hasNext();) {
+                final Collection<Node> rank = ranks.next();
+                rank.removeIf(removed::contains);
+
+                if (rank.isEmpty()) {
+                    ranks.remove();
+                }
+            }
+        }
+
+        nodesModified();
+    }
+
+    /**
+     * Remove the given nodes from this graph so they can be moved into another
+     * graph. Unlike {@link #removeNodes(Set)} the ranks of this graph keep
+     * referring to the nodes.
+     * 
+     * @param released
+     *            nodes to remove
+     */
+    void releaseNodes(final Set<Node> released) {
+        synchronized (this) {
+            nodes.removeIf(released::contains);
+        }
+
+        nodesModified();
+    }
+
+    /**
+     * Move the given node, which has already been removed from its graph, into
+     * this graph.
+     * 
+     * @param node
+     *            node to move into this graph
+     */
+    void adoptNode(final Node node) {
+        node.setGraph(this);
+
+        synchronized (this) {
+            nodes.add(node);
+        }
+
+        nodesModified();
+    }
+
+    /**
+     * Add a new edge to this graph. If there already is an edge between the
+     * given nodes that edge is returned instead.
      * 
      * @param startNode
      *            start node of the new edge
@@ -127,8 +333,160 @@ public class Graph {
      * @return the newly added edge
      */
     public Edge newEdge(final Node startNode, final Node endNode) {
-        String key = startNode.getId() + "->" + endNode.getId();
-        return edges.computeIfAbsent(key, k -> new Edge(startNode, endNode));
+        if (startNode == null || endNode == null) {
+            throw new IllegalArgumentException("start and end node must not be null!");
+        }
+
+        synchronized (this) {
+            if (edges == null) {
+                edges = new EdgeIndex(this);
+            }
+
+            return edges.getOrCreate(startNode, endNode);
+        }
+    }
+
+    /**
+     * Remove the given edge from this graph. The removed edge is detached: it
+     * no longer belongs to any graph.
+     * 
+     * @param edge
+     *            edge to remove
+     * @return <code>true</code> when the edge was removed, <code>false</code>
+     *         if it is not contained in this graph.
+     */
+    public boolean removeEdge(final Edge edge) {
+        if (edge == null) {
+            throw new IllegalArgumentException("edge must not be null!");
+        }
+
+        final boolean removed;
+
+        synchronized (this) {
+            removed = edges != null && edges.remove(edge);
+        }
+
+        if (removed) {
+            edge.setGraph(null);
+            topologyModified();
+        }
+
+        return removed;
+    }
+
+    /**
+     * Return the adjacency index of the edges of this graph and its clusters.
+     * The index is built when first requested and built again after edges
+     * have been added, removed or had their end points changed; modified
+     * attributes do not invalidate it. Every such change causes a complete
+     * rebuild of the index, see {@link AdjacencyIndex}.
+     * 
+     * @return the adjacency index of the edges of this graph and its
+     *         clusters.
+     */
+    public AdjacencyIndex getAdjacency() {
+        AdjacencyIndex result = adjacency;
+
+        if (result == null || result.getVersion() != getTopologyVersion()) {
+            result = new AdjacencyIndex(this);
+            adjacency = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Change the end points of the given edge of this graph.
+     * <p>
+     * If this graph already contains an edge between the new end points, the
+     * given edge is merged into it: the given edge is removed from this graph
+     * and detached, and the existing edge returned instead. The existing edge
+     * keeps its attributes; it takes over the attributes of the given edge
+     * only if it has none of its own.
+     * <p>
+     * Edges may be reconnected while iterating over {@link #getEdges()}: the
+     * iteration returns every remaining edge exactly once and skips edges
+     * merged away before it reached them.
+     * 
+     * @param edge
+     *            edge to change the end points of
+     * @param startNode
+     *            the new start node
+     * @param endNode
+     *            the new end node
+     * @return the edge of this graph between the new end points.
+     * @throws IllegalArgumentException
+     *             if the edge is not contained in this graph or a node is
+     *             <code>null</code>.
+     */
+    public Edge reconnectEdge(final Edge edge, final Node startNode, final Node endNode) {
+        if (edge == null || startNode == null || endNode == null) {
+            throw new IllegalArgumentException("edge, start and end node must not be null!");
+        }
+
+        final Edge result;
+
+        synchronized (this) {
+            if (edges == null) {
+                throw new IllegalArgumentException("edge is not contained in this graph!");
+            }
+
+            result = edges.reconnect(edge, startNode, endNode);
+        }
+
+        if (result != edge) {
+            edge.setGraph(null);
+        }
+
+        merge(edge, result);
+        topologyModified();
+
+        return result;
+    }
+
+    /**
+     * Move the given edge, which has already been removed from its graph, into
+     * this graph. If this graph already contains an edge between the same
+     * nodes, the given edge is merged into it like in
+     * {@link #reconnectEdge(Edge, Node, Node)}.
+     * 
+     * @param edge
+     *            edge to move into this graph
+     * @return the edge of this graph between the end points of the given
+     *         edge.
+     */
+    Edge adoptEdge(final Edge edge) {
+        final Edge result;
+
+        synchronized (this) {
+            if (edges == null) {
+                edges = new EdgeIndex(this);
+            }
+
+            result = edges.getOrAdd(edge);
+        }
+
+        edge.setGraph(result == edge ? this : null);
+
+        merge(edge, result);
+        topologyModified();
+
+        return result;
+    }
+
+    /**
+     * Let the surviving edge take over the attributes of an edge merged into
+     * it if it has none of its own.
+     * 
+     * @param merged
+     *            edge merged into the surviving edge
+     * @param survivor
+     *            the surviving edge
+     */
+    private static void merge(final Edge merged, final Edge survivor) {
+        if (survivor != merged && merged.hasAttributes() && !survivor.hasAttributes()) {
+            survivor.getAttributes().setAttributeSet(merged.getAttributes().getAttributeSet());
+        }
     }
 
     /**
@@ -146,10 +504,19 @@ public class Graph {
     }
 
     /**
+     * Return the edges of this graph. Edges may be removed or reconnected
+     * while iterating. Iterators fail with a
+     * {@link java.util.ConcurrentModificationException} when adding an edge
+     * made the graph close the holes left by removed edges.
+     * 
      * @return the edges
      */
     public Collection<Edge> getEdges() {
-        return Collections.unmodifiableCollection(edges.values());
+        if (edges == null) {
+            return Collections.emptyList();
+        }
+
+        return Collections.unmodifiableCollection(edges);
     }
 
     /**
@@ -236,33 +603,249 @@ public class Graph {
      * @param node node to assign rank to
      */
     public void rank(String rank, Node node) {
-        this.rankedNodes.computeIfAbsent(rank, key -> new ArrayList<>()).add(node);
+        synchronized (this) {
+            this.rankedNodes.computeIfAbsent(rank, key -> new ArrayList<>()).add(node);
+        }
+
+        nodesModified();
     }
 
     public Map<String, Collection<Node>> getRankedNodes() {
         return rankedNodes;
     }
 
+    /**
+     * Make sure ids created from now on do not collide with the given ones.
+     * Only to be used while no other thread creates nodes or clusters.
+     * 
+     * @param nodeId
+     *            the smallest node id that may still be handed out
+     * @param clusterId
+     *            the smallest cluster id that may still be handed out
+     */
+    void reserveIds(final long nodeId, final long clusterId) {
+        nodeIdFactory.reserve(nodeId);
+        clusterIdFactory.reserve(clusterId);
+    }
+
+    /**
+     * Return the modification stamp of this graph and everything it contains.
+     * The stamp changes whenever this graph, one of its nodes, edges or
+     * (nested) clusters has been modified since it was last queried. Stamps
+     * of different graphs are not related.
+     * 
+     * @return the current modification stamp of this graph.
+     */
+    public long getVersion() {
+        if (clean(SUBTREE_DIRTY)) {
+            return version;
+        }
+
+        for (final Graph cluster : clusters) {
+            cluster.getVersion();
+        }
+
+        return VERSION.incrementAndGet(this);
+    }
+
+    /**
+     * Return the modification stamp of the attributes, common attributes,
+     * nodes and ranks of this graph.
+     * 
+     * @return the current modification stamp of this graph's nodes.
+     */
+    public long getNodeVersion() {
+        return clean(NODES_DIRTY) ? nodeVersion : NODE_VERSION.incrementAndGet(this);
+    }
+
+    /**
+     * Return the modification stamp of the edges of this graph.
+     * 
+     * @return the current modification stamp of this graph's edges.
+     */
+    public long getEdgeVersion() {
+        return clean(EDGES_DIRTY) ? edgeVersion : EDGE_VERSION.incrementAndGet(this);
+    }
+
+    /**
+     * Return the modification stamp of the topology of this graph and its
+     * clusters. The stamp changes whenever edges are added or removed or their
+     * end points are changed.
+     * 
+     * @return the current modification stamp of the topology of this graph.
+     */
+    public long getTopologyVersion() {
+        if (clean(TOPOLOGY_DIRTY)) {
+            return topologyVersion;
+        }
+
+        for (final Graph cluster : clusters) {
+            cluster.getTopologyVersion();
+        }
+
+        return TOPOLOGY_VERSION.incrementAndGet(this);
+    }
+
+    /**
+     * Clear the given dirty mark.
+     * <p>
+     * Marks climbing to the enclosing graphs are cleared from the top down:
+     * the caller clears the marks of the dirty clusters before taking the new
+     * stamp, so a modification that stopped climbing at a cluster that was
+     * still marked is covered by that stamp.
+     * 
+     * @param mark
+     *            the mark to clear
+     * @return <code>true</code> if the mark was not set, <code>false</code>
+     *         if it has been cleared and a new stamp has to be taken.
+     */
+    private boolean clean(final int mark) {
+        int current = dirty;
+
+        while ((current & mark) != 0) {
+            if (DIRTY.compareAndSet(this, current, current & ~mark)) {
+                return false;
+            }
+
+            current = dirty;
+        }
+
+        return true;
+    }
+
+    /**
+     * Record a modification of the attributes, nodes or ranks of this graph.
+     */
+    void nodesModified() {
+        modified(NODES_DIRTY | SUBTREE_DIRTY);
+    }
+
+    /**
+     * Record a modification of the edges of this graph.
+     */
+    void edgesModified() {
+        modified(EDGES_DIRTY | SUBTREE_DIRTY);
+    }
+
+    /**
+     * Record that edges of this graph were added or removed or had their end
+     * points changed.
+     */
+    void topologyModified() {
+        modified(EDGES_DIRTY | SUBTREE_DIRTY | TOPOLOGY_DIRTY);
+    }
+
+    /**
+     * Mark this graph with the given marks and the enclosing graphs with the
+     * climbing ones. Climbing stops at the first graph already carrying the
+     * climbing marks, since all graphs enclosing it carry them as well. The
+     * marks of a graph are set before those of its parent.
+     * 
+     * @param marks
+     *            the marks to set
+     */
+    private void modified(final int marks) {
+        final int climbing = marks & (SUBTREE_DIRTY | TOPOLOGY_DIRTY);
+
+        if ((dirty & marks) == marks) {
+            return;
+        }
+
+        DIRTY.getAndAccumulate(this, marks, (current, added) -> current | added);
+
+        for (Graph current = parent; current != null && (current.dirty & climbing) != climbing;
+            current = current.parent) {
+            DIRTY.getAndAccumulate(current, climbing, (value, added) -> value | added);
+        }
+    }
+
+    /**
+     * Attributes of a graph recording their modification with the graph.
+     * 
+     * @author Dirk Weigenand
+     */
+    private final class GraphAttributes extends Attributes {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        void changed() {
+            nodesModified();
+        }
+    }
+
     /**
      * Factory for Ids to use in {@link Graph}s when creating {@link Node}
      * objects and/or sub graphs.
+     * <p>
+     * Every thread takes blocks of consecutive ids from a shared counter and
+     * hands them out without further synchronization, so threads creating
+     * nodes concurrently do not contend for the counter. Ids are unique but
+     * not necessarily dense when several threads are involved; a single thread
+     * receives consecutive ids.
      * 
      * @author Dirk Weigenand
      * 
      */
     protected static final class IdFactory {
         /**
-         * counter for ids.
+         * number of ids taken from the shared counter at once.
          */
-        private long currentId;
+        private static final int BLOCK_SIZE = 256;
+
+        /**
+         * start of the next block of ids.
+         */
+        private final AtomicLong nextBlock = new AtomicLong();
+
+        /**
+         * the block of ids currently used by a thread.
+         */
+        private final ThreadLocal<IdBlock> blocks = ThreadLocal.withInitial(IdBlock::new);
 
         /**
          * Returns the current id and increments the internal id counter.
          * 
          * @return next id value.
          */
-        synchronized Id nextId() {
-            return new Id(currentId++);
+        Id nextId() {
+            final IdBlock block = blocks.get();
+
+            if (block.next == block.end) {
+                block.next = nextBlock.getAndAdd(BLOCK_SIZE);
+                block.end = block.next + BLOCK_SIZE;
+            }
+
+            return Id.valueOf(block.next++);
+        }
+
+        /**
+         * Make sure ids handed out from now on are not smaller than the given
+         * one. Drops the block of the calling thread.
+         * 
+         * @param id
+         *            the smallest id that may still be handed out.
+         */
+        void reserve(final long id) {
+            nextBlock.accumulateAndGet(id, Math::max);
+            blocks.remove();
         }
     }
+
+    /**
+     * A range of ids reserved for one thread.
+     * 
+     * @author Dirk Weigenand
+     */
+    private static final class IdBlock {
+        /**
+         * the next id to hand out.
+         */
+        private long next;
+
+        /**
+         * the end of this block (exclusive).
+         */
+        private long end;
+    }
 }
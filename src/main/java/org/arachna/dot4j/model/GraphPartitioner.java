@@ -0,0 +1,397 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Algorithm to split a graph into several independent graphs (shards) that
+ * can be laid out separately.
+ * <p>
+ * A graph can be split by its top level clusters, nodes outside of any
+ * cluster forming a shard of their own, or by its weakly connected
+ * components. Every shard contains its nodes in copies of their clusters,
+ * preserving the ids of nodes and clusters, the attributes of the top level
+ * graph and the ranks. When an edge connects nodes of different shards, each
+ * of both shards receives the edge and a dashed stub node representing the end
+ * point in the other shard. Attribute sets are shared between the graph and
+ * its shards, not copied.
+ *
+ * @author Dirk Weigenand
+ */
+public class GraphPartitioner {
+    /**
+     * the graph to partition.
+     */
+    private final Graph graph;
+
+    /**
+     * the graph and its clusters in depth first order.
+     */
+    private final List<Graph> graphs = new ArrayList<Graph>();
+
+    /**
+     * the nodes of the graph and its clusters in depth first order.
+     */
+    private final List<Node> nodes = new ArrayList<Node>();
+
+    /**
+     * positions of the nodes in {@link #nodes} indexed by node id.
+     */
+    private final LongPairIndex nodeIndex = new LongPairIndex();
+
+    /**
+     * the largest node id.
+     */
+    private long maxNodeId = -1;
+
+    /**
+     * the largest graph id.
+     */
+    private long maxGraphId = -1;
+
+    /**
+     * Create an instance of the algorithm using the given graph.
+     *
+     * @param graph
+     *            graph to partition.
+     */
+    public GraphPartitioner(final Graph graph) {
+        if (graph == null) {
+            throw new IllegalArgumentException("Graph must not be null!");
+        }
+
+        this.graph = graph;
+    }
+
+    /**
+     * Split the graph by its top level clusters. Nodes not contained in any
+     * cluster form the first shard.
+     *
+     * @return one shard per top level cluster, preceded by a shard for the
+     *         nodes outside of clusters when there are any.
+     */
+    public List<Graph> partitionByCluster() {
+        collect();
+
+        final Map<Graph, Integer> shardOfGraph = new IdentityHashMap<Graph, Integer>();
+        final int first = graph.getNodes().isEmpty() ? 0 : 1;
+        int shardCount = first;
+
+        shardOfGraph.put(graph, 0);
+
+        for (final Graph cluster : graph.getClusters()) {
+            shardOfGraph.put(cluster, shardCount++);
+        }
+
+        final int[] shards = new int[nodes.size()];
+
+        for (int i = 0; i < shards.length; i++) {
+            Graph current = nodes.get(i).getGraph();
+
+            while (!shardOfGraph.containsKey(current)) {
+                current = current.getParent();
+            }
+
+            shards[i] = shardOfGraph.get(current);
+        }
+
+        return build(shardCount, shards);
+    }
+
+    /**
+     * Split the graph into its weakly connected components.
+     *
+     * @return one shard per connected component, in the order of their first
+     *         nodes.
+     */
+    public List<Graph> partitionByComponent() {
+        collect();
+
+        final int[] roots = new int[nodes.size()];
+
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = i;
+        }
+
+        for (final Graph current : graphs) {
+            for (final Edge edge : current.getEdges()) {
+                final int start = indexOf(edge.getStartNode());
+                final int end = indexOf(edge.getEndNode());
+
+                if (start != LongPairIndex.ABSENT && end != LongPairIndex.ABSENT) {
+                    final int startRoot = find(roots, start);
+                    final int endRoot = find(roots, end);
+                    roots[Math.max(startRoot, endRoot)] = Math.min(startRoot, endRoot);
+                }
+            }
+        }
+
+        final int[] shards = new int[nodes.size()];
+        int shardCount = 0;
+
+        for (int i = 0; i < shards.length; i++) {
+            final int root = find(roots, i);
+            shards[i] = root == i ? shardCount++ : shards[root];
+        }
+
+        return build(shardCount, shards);
+    }
+
+    /**
+     * Collect the graphs and nodes in depth first order.
+     */
+    private void collect() {
+        if (!graphs.isEmpty()) {
+            return;
+        }
+
+        final Deque<Graph> pending = new ArrayDeque<Graph>();
+        pending.push(graph);
+
+        while (!pending.isEmpty()) {
+            final Graph current = pending.pop();
+            graphs.add(current);
+            maxGraphId = Math.max(maxGraphId, current.getId().getValue());
+
+            for (final Node node : current.getNodes()) {
+                final long id = node.getId().getValue();
+                nodeIndex.putIfAbsent(id, 0, nodes.size());
+                nodes.add(node);
+                maxNodeId = Math.max(maxNodeId, id);
+            }
+
+            final List<Graph> clusters = new ArrayList<Graph>(current.getClusters());
+
+            for (int i = clusters.size() - 1; i >= 0; i--) {
+                pending.push(clusters.get(i));
+            }
+        }
+    }
+
+    /**
+     * Return the position of the given node in {@link #nodes}.
+     *
+     * @param node
+     *            node to look up
+     * @return the position of the node or {@link LongPairIndex#ABSENT} if it
+     *         is not contained in the graph.
+     */
+    private int indexOf(final Node node) {
+        return nodeIndex.get(node.getId().getValue(), 0);
+    }
+
+    /**
+     * Find the representative of the component containing the given node,
+     * compressing the path to it.
+     *
+     * @param roots
+     *            representatives of components
+     * @param node
+     *            position of the node
+     * @return the position of the representative
+     */
+    private static int find(final int[] roots, final int node) {
+        int root = node;
+
+        while (roots[root] != root) {
+            root = roots[root];
+        }
+
+        for (int current = node; roots[current] != root;) {
+            final int next = roots[current];
+            roots[current] = root;
+            current = next;
+        }
+
+        return root;
+    }
+
+    /**
+     * Build the shards.
+     *
+     * @param shardCount
+     *            number of shards
+     * @param shardOfNode
+     *            shard of each node in {@link #nodes}
+     * @return the shards
+     */
+    private List<Graph> build(final int shardCount, final int[] shardOfNode) {
+        final List<Shard> shards = new ArrayList<Shard>(shardCount);
+
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new Shard());
+        }
+
+        final Node[] copies = new Node[nodes.size()];
+
+        for (int i = 0; i < copies.length; i++) {
+            final Node node = nodes.get(i);
+            copies[i] = shards.get(shardOfNode[i]).copyOf(node.getGraph()).newNode(node.getId());
+            share(node, copies[i]);
+        }
+
+        for (final Graph current : graphs) {
+            for (final Map.Entry<String, Collection<Node>> rank : current.getRankedNodes().entrySet()) {
+                for (final Node node : rank.getValue()) {
+                    final int index = indexOf(node);
+
+                    if (index != LongPairIndex.ABSENT) {
+                        shards.get(shardOfNode[index]).copyOf(current).rank(rank.getKey(), copies[index]);
+                    }
+                }
+            }
+
+            for (final Edge edge : current.getEdges()) {
+                final int start = indexOf(edge.getStartNode());
+                final int end = indexOf(edge.getEndNode());
+
+                if (start == LongPairIndex.ABSENT || end == LongPairIndex.ABSENT) {
+                    continue;
+                }
+
+                final Shard startShard = shards.get(shardOfNode[start]);
+
+                if (shardOfNode[start] == shardOfNode[end]) {
+                    share(edge, startShard.ownerOf(current).newEdge(copies[start], copies[end]));
+                }
+                else {
+                    final Shard endShard = shards.get(shardOfNode[end]);
+                    share(edge, startShard.root.newEdge(copies[start], startShard.stubOf(edge.getEndNode())));
+                    share(edge, endShard.root.newEdge(endShard.stubOf(edge.getStartNode()), copies[end]));
+                }
+            }
+        }
+
+        final List<Graph> result = new ArrayList<Graph>(shardCount);
+
+        for (final Shard shard : shards) {
+            shard.root.reserveIds(maxNodeId + 1, maxGraphId + 1);
+            result.add(shard.root);
+        }
+
+        return result;
+    }
+
+    /**
+     * Let the copy of a node share the attributes of the original.
+     *
+     * @param original
+     *            the original node
+     * @param copy
+     *            the copy of the node
+     */
+    private static void share(final Node original, final Node copy) {
+        if (original.hasAttributes()) {
+            copy.getAttributes().setAttributeSet(original.getAttributes().getAttributeSet());
+        }
+    }
+
+    /**
+     * Let the copy of an edge share the attributes of the original.
+     *
+     * @param original
+     *            the original edge
+     * @param copy
+     *            the copy of the edge
+     */
+    private static void share(final Edge original, final Edge copy) {
+        if (original.hasAttributes()) {
+            copy.getAttributes().setAttributeSet(original.getAttributes().getAttributeSet());
+        }
+    }
+
+    /**
+     * A shard under construction.
+     *
+     * @author Dirk Weigenand
+     */
+    private final class Shard {
+        /**
+         * the top level graph of the shard.
+         */
+        private final Graph root;
+
+        /**
+         * copies of the graph and its clusters in this shard.
+         */
+        private final Map<Graph, Graph> copies = new IdentityHashMap<Graph, Graph>();
+
+        /**
+         * stub nodes representing nodes of other shards.
+         */
+        private final Map<Node, Node> stubs = new IdentityHashMap<Node, Node>();
+
+        /**
+         * Create a shard with a copy of the top level graph.
+         */
+        Shard() {
+            root = new Graph(graph.getId());
+            root.getAttributes().setAttributeSet(graph.getAttributes().getAttributeSet());
+            root.getNodeAttributes().setAttributeSet(graph.getNodeAttributes().getAttributeSet());
+            root.getEdgeAttributes().setAttributeSet(graph.getEdgeAttributes().getAttributeSet());
+            copies.put(graph, root);
+        }
+
+        /**
+         * Return the copy of the given graph or cluster in this shard,
+         * creating it and its enclosing clusters when necessary.
+         *
+         * @param original
+         *            the graph or cluster to copy
+         * @return the copy in this shard
+         */
+        Graph copyOf(final Graph original) {
+            Graph copy = copies.get(original);
+
+            if (copy == null) {
+                copy = copyOf(original.getParent()).newGraph(original.getId());
+                copy.getAttributes().setAttributeSet(original.getAttributes().getAttributeSet());
+                copy.getNodeAttributes().setAttributeSet(original.getNodeAttributes().getAttributeSet());
+                copy.getEdgeAttributes().setAttributeSet(original.getEdgeAttributes().getAttributeSet());
+                copies.put(original, copy);
+            }
+
+            return copy;
+        }
+
+        /**
+         * Return the graph an edge of the given graph is added to: its copy if
+         * it contains nodes of this shard, the top level graph otherwise.
+         *
+         * @param original
+         *            the graph containing the edge
+         * @return the graph to add the copy of the edge to
+         */
+        Graph ownerOf(final Graph original) {
+            final Graph copy = copies.get(original);
+
+            return copy == null ? root : copy;
+        }
+
+        /**
+         * Return the stub representing the given node of another shard.
+         *
+         * @param node
+         *            node of another shard
+         * @return the stub node
+         */
+        Node stubOf(final Node node) {
+            return stubs.computeIfAbsent(node, original -> {
+                final Node stub = root.newNode(original.getId());
+                final AttributeSet attributes =
+                    original.hasAttributes() ? original.getAttributes().getAttributeSet() : AttributeSet.EMPTY;
+                stub.getAttributes().setAttributeSet(attributes.with("style", "dashed"));
+
+                return stub;
+            });
+        }
+    }
+}
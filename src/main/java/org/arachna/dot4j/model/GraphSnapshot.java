@@ -0,0 +1,769 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.arachna.dot4j.model.Attributes.Attribute;
+
+/**
+ * Compact binary snapshot of a {@link Graph} including its clusters, nodes,
+ * edges, ranks and attributes.
+ * <p>
+ * Strings are stored once in a string table, attribute sets once in an
+ * attribute set table, numbers as variable length integers. The ids of graphs
+ * and nodes are preserved. A snapshot consists of
+ * <ol>
+ * <li>a header (magic number and format version),</li>
+ * <li>the string table,</li>
+ * <li>the attribute set table,</li>
+ * <li>the graph tree with attributes and nodes of every graph in depth first
+ * order and</li>
+ * <li>the ranks and edges of every graph in the same order.</li>
+ * </ol>
+ * Snapshots are written through a {@link WritableByteChannel} and read from a
+ * {@link ByteBuffer}, files are read through a memory mapping.
+ *
+ * @author Dirk Weigenand
+ */
+public final class GraphSnapshot {
+    /**
+     * magic number identifying a snapshot ("DOT4").
+     */
+    private static final int MAGIC = 0x444f5434;
+
+    /**
+     * version of the snapshot format.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * size of the buffer used for writing snapshots.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Utility class.
+     */
+    private GraphSnapshot() {
+    }
+
+    /**
+     * Write a snapshot of the given graph into the given file, replacing its
+     * contents.
+     *
+     * @param graph
+     *            graph to write a snapshot of
+     * @param path
+     *            the file to write the snapshot into
+     * @throws IOException
+     *             when writing the file fails
+     */
+    public static void write(final Graph graph, final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(graph, channel);
+        }
+    }
+
+    /**
+     * Write a snapshot of the given graph into the given channel. The channel
+     * is not closed.
+     *
+     * @param graph
+     *            graph to write a snapshot of
+     * @param channel
+     *            the channel to write the snapshot into
+     * @throws IOException
+     *             when writing into the channel fails
+     */
+    public static void write(final Graph graph, final WritableByteChannel channel) throws IOException {
+        if (graph == null) {
+            throw new IllegalArgumentException("Graph must not be null!");
+        }
+
+        new Writer(channel).write(graph);
+    }
+
+    /**
+     * Read a graph from the snapshot in the given file. The file is mapped into
+     * memory.
+     *
+     * @param path
+     *            the file containing the snapshot
+     * @return the graph read from the snapshot
+     * @throws IOException
+     *             when reading the file fails or it does not contain a valid
+     *             snapshot
+     */
+    public static Graph read(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Read a graph from the snapshot in the given buffer, starting at its
+     * current position.
+     *
+     * @param buffer
+     *            buffer containing the snapshot
+     * @return the graph read from the snapshot
+     * @throws IOException
+     *             when the buffer does not contain a valid snapshot
+     */
+    public static Graph read(final ByteBuffer buffer) throws IOException {
+        try {
+            return new Reader(buffer).read();
+        }
+        catch (final BufferUnderflowException e) {
+            throw new IOException("Truncated graph snapshot!", e);
+        }
+    }
+
+    /**
+     * Writer for a snapshot.
+     *
+     * @author Dirk Weigenand
+     */
+    private static final class Writer {
+        /**
+         * channel to write the snapshot into.
+         */
+        private final WritableByteChannel channel;
+
+        /**
+         * buffer collecting the output.
+         */
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /**
+         * graphs in depth first order.
+         */
+        private final List<Graph> graphs = new ArrayList<>();
+
+        /**
+         * positions of the strings in the string table.
+         */
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        /**
+         * positions of the attribute sets in the attribute set table.
+         */
+        private final Map<AttributeSet, Integer> attributeSets = new IdentityHashMap<>();
+
+        /**
+         * Create a writer for the given channel.
+         *
+         * @param channel
+         *            channel to write the snapshot into.
+         */
+        Writer(final WritableByteChannel channel) {
+            this.channel = channel;
+            attributeSets.put(AttributeSet.EMPTY, 0);
+        }
+
+        /**
+         * Write a snapshot of the given graph.
+         *
+         * @param graph
+         *            graph to write a snapshot of
+         * @throws IOException
+         *             when writing into the channel fails
+         */
+        void write(final Graph graph) throws IOException {
+            collect(graph);
+
+            buffer.putInt(MAGIC);
+            putNumber(FORMAT_VERSION);
+            writeStrings();
+            writeAttributeSets();
+            writeGraph(graph);
+
+            for (final Graph current : graphs) {
+                writeRanks(current);
+                writeEdges(current);
+            }
+
+            flush();
+        }
+
+        /**
+         * Collect the graphs, strings and attribute sets of the given graph and
+         * its clusters.
+         *
+         * @param graph
+         *            graph to collect the contents of
+         */
+        private void collect(final Graph graph) {
+            graphs.add(graph);
+            collect(graph.getAttributes().getAttributeSet());
+            collect(graph.getNodeAttributes().getAttributeSet());
+            collect(graph.getEdgeAttributes().getAttributeSet());
+
+            for (final Node node : graph.getNodes()) {
+                collect(attributeSet(node));
+            }
+
+            for (final String rank : graph.getRankedNodes().keySet()) {
+                collect(rank);
+            }
+
+            for (final Edge edge : graph.getEdges()) {
+                collect(attributeSet(edge));
+            }
+
+            for (final Graph cluster : graph.getClusters()) {
+                collect(cluster);
+            }
+        }
+
+        /**
+         * Register the given attribute set and its strings.
+         *
+         * @param attributes
+         *            attribute set to register
+         */
+        private void collect(final AttributeSet attributes) {
+            if (!attributeSets.containsKey(attributes)) {
+                attributeSets.put(attributes, attributeSets.size());
+
+                for (final Attribute attribute : attributes.asList()) {
+                    collect(attribute.getName());
+                    collect(attribute.getValue());
+                }
+            }
+        }
+
+        /**
+         * Register the given string.
+         *
+         * @param string
+         *            string to register
+         */
+        private void collect(final String string) {
+            strings.putIfAbsent(string, strings.size());
+        }
+
+        /**
+         * Write the string table.
+         *
+         * @throws IOException
+         *             when writing into the channel fails
+         */
+        private void writeStrings() throws IOException {
+            final String[] table = new String[strings.size()];
+
+            for (final Map.Entry<String, Integer> entry : strings.entrySet()) {
+                table[entry.getValue()] = entry.getKey();
+            }
+
+            putNumber(table.length);
+
+            for (final String string : table) {
+                final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                putNumber(bytes.length);
+                put(bytes);
+            }
+        }
+
+        /**
+         * Write the attribute set table except for the empty set, which always
+         * has position 0.
+         *
+         * @throws IOException
+         *             when writing into the channel fails
+         */
+        private void writeAttributeSets() throws IOException {
+            final AttributeSet[] table = new AttributeSet[attributeSets.size()];
+
+            for (final Map.Entry<AttributeSet, Integer> entry : attributeSets.entrySet()) {
+                table[entry.getValue()] = entry.getKey();
+            }
+
+            putNumber(table.length - 1);
+
+            for (int i = 1; i < table.length; i++) {
+                putNumber(table[i].size());
+
+                for (final Attribute attribute : table[i].asList()) {
+                    putNumber(strings.get(attribute.getName()));
+                    putNumber(strings.get(attribute.getValue()));
+                }
+            }
+        }
+
+        /**
+         * Write the given graph, its nodes and its clusters.
+         *
+         * @param graph
+         *            graph to write
+         * @throws IOException
+         *             when writing into the channel fails
+         */
+        private void writeGraph(final Graph graph) throws IOException {
+            putNumber(graph.getId().getValue());
+            putNumber(attributeSets.get(graph.getAttributes().getAttributeSet()));
+            putNumber(attributeSets.get(graph.getNodeAttributes().getAttributeSet()));
+            putNumber(attributeSets.get(graph.getEdgeAttributes().getAttributeSet()));
+
+            final Collection<Node> nodes = graph.getNodes();
+            putNumber(nodes.size());
+
+            for (final Node node : nodes) {
+                putNumber(node.getId().getValue());
+                putNumber(attributeSets.get(attributeSet(node)));
+            }
+
+            final Collection<Graph> clusters = graph.getClusters();
+            putNumber(clusters.size());
+
+            for (final Graph cluster : clusters) {
+                writeGraph(cluster);
+            }
+        }
+
+        /**
+         * Write the ranks of the given graph.
+         *
+         * @param graph
+         *            graph to write the ranks of
+         * @throws IOException
+         *             when writing into the channel fails
+         */
+        private void writeRanks(final Graph graph) throws IOException {
+            final Map<String, Collection<Node>> ranks = graph.getRankedNodes();
+            putNumber(ranks.size());
+
+            for (final Map.Entry<String, Collection<Node>> rank : ranks.entrySet()) {
+                putNumber(strings.get(rank.getKey()));
+                putNumber(rank.getValue().size());
+
+                for (final Node node : rank.getValue()) {
+                    putNumber(node.getId().getValue());
+                }
+            }
+        }
+
+        /**
+         * Write the edges of the given graph.
+         *
+         * @param graph
+         *            graph to write the edges of
+         * @throws IOException
+         *             when writing into the channel fails
+         */
+        private void writeEdges(final Graph graph) throws IOException {
+            final Collection<Edge> edges = graph.getEdges();
+            putNumber(edges.size());
+
+            for (final Edge edge : edges) {
+                putNumber(edge.getStartNode().getId().getValue());
+                putNumber(edge.getEndNode().getId().getValue());
+                putNumber(attributeSets.get(attributeSet(edge)));
+            }
+        }
+
+        /**
+         * Write a non negative number as variable length integer using seven
+         * bits per byte.
+         *
+         * @param value
+         *            number to write
+         * @throws IOException
+         *             when writing into the channel fails
+         */
+        private void putNumber(final long value) throws IOException {
+            if (buffer.remaining() < 10) {
+                flush();
+            }
+
+            long rest = value;
+
+            while ((rest & ~0x7fL) != 0) {
+                buffer.put((byte)((rest & 0x7f) | 0x80));
+                rest >>>= 7;
+            }
+
+            buffer.put((byte)rest);
+        }
+
+        /**
+         * Write the given bytes.
+         *
+         * @param bytes
+         *            bytes to write
+         * @throws IOException
+         *             when writing into the channel fails
+         */
+        private void put(final byte[] bytes) throws IOException {
+            int offset = 0;
+
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+
+                final int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        /**
+         * Write the buffered output into the channel.
+         *
+         * @throws IOException
+         *             when writing into the channel fails
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            buffer.clear();
+        }
+
+        /**
+         * Return the attribute set of the given node.
+         *
+         * @param node
+         *            node to get the attribute set of
+         * @return the attribute set of the node
+         */
+        private static AttributeSet attributeSet(final Node node) {
+            return node.hasAttributes() ? node.getAttributes().getAttributeSet() : AttributeSet.EMPTY;
+        }
+
+        /**
+         * Return the attribute set of the given edge.
+         *
+         * @param edge
+         *            edge to get the attribute set of
+         * @return the attribute set of the edge
+         */
+        private static AttributeSet attributeSet(final Edge edge) {
+            return edge.hasAttributes() ? edge.getAttributes().getAttributeSet() : AttributeSet.EMPTY;
+        }
+    }
+
+    /**
+     * Reader for a snapshot.
+     *
+     * @author Dirk Weigenand
+     */
+    private static final class Reader {
+        /**
+         * buffer containing the snapshot.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * graphs in depth first order.
+         */
+        private final List<Graph> graphs = new ArrayList<>();
+
+        /**
+         * nodes in the order they were read.
+         */
+        private final List<Node> nodes = new ArrayList<>();
+
+        /**
+         * positions of the nodes in {@link #nodes} indexed by node id.
+         */
+        private final LongPairIndex nodeIndex = new LongPairIndex();
+
+        /**
+         * the string table.
+         */
+        private String[] strings;
+
+        /**
+         * the attribute set table.
+         */
+        private AttributeSet[] attributeSets;
+
+        /**
+         * the largest node id read so far.
+         */
+        private long maxNodeId = -1;
+
+        /**
+         * the largest graph id read so far.
+         */
+        private long maxGraphId = -1;
+
+        /**
+         * Create a reader for the given buffer.
+         *
+         * @param buffer
+         *            buffer containing the snapshot.
+         */
+        Reader(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Read the graph from the snapshot.
+         *
+         * @return the graph read from the snapshot.
+         * @throws IOException
+         *             when the buffer does not contain a valid snapshot
+         */
+        Graph read() throws IOException {
+            if (buffer.remaining() < Integer.BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a graph snapshot!");
+            }
+
+            final long version = getNumber();
+
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported graph snapshot version " + version + "!");
+            }
+
+            readStrings();
+            readAttributeSets();
+
+            final Graph graph = readGraph(null);
+
+            for (final Graph current : graphs) {
+                readRanks(current);
+                readEdges(current);
+            }
+
+            graph.reserveIds(maxNodeId + 1, maxGraphId + 1);
+
+            return graph;
+        }
+
+        /**
+         * Read the string table.
+         *
+         * @throws IOException
+         *             when the string table is corrupt
+         */
+        private void readStrings() throws IOException {
+            strings = new String[getCount()];
+            byte[] bytes = new byte[0];
+
+            for (int i = 0; i < strings.length; i++) {
+                final int length = getCount();
+
+                if (bytes.length < length) {
+                    bytes = new byte[Math.max(length, bytes.length << 1)];
+                }
+
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+        }
+
+        /**
+         * Read the attribute set table.
+         *
+         * @throws IOException
+         *             when the attribute set table is corrupt
+         */
+        private void readAttributeSets() throws IOException {
+            attributeSets = new AttributeSet[getCount() + 1];
+            attributeSets[0] = AttributeSet.EMPTY;
+
+            for (int i = 1; i < attributeSets.length; i++) {
+                AttributeSet attributes = AttributeSet.EMPTY;
+
+                for (int count = getCount(); count > 0; count--) {
+                    attributes = attributes.with(getString(), getString());
+                }
+
+                attributeSets[i] = attributes;
+            }
+        }
+
+        /**
+         * Read a graph, its nodes and its clusters.
+         *
+         * @param parent
+         *            parent of the graph to read, <code>null</code> for the
+         *            top level graph
+         * @return the graph read
+         * @throws IOException
+         *             when the graph is corrupt
+         */
+        private Graph readGraph(final Graph parent) throws IOException {
+            final long graphId = getNumber();
+            final Graph graph = parent == null ? new Graph(Id.valueOf(graphId)) : parent.newGraph(Id.valueOf(graphId));
+            maxGraphId = Math.max(maxGraphId, graphId);
+            graphs.add(graph);
+            graph.getAttributes().setAttributeSet(getAttributeSet());
+            graph.getNodeAttributes().setAttributeSet(getAttributeSet());
+            graph.getEdgeAttributes().setAttributeSet(getAttributeSet());
+
+            for (int count = getCount(); count > 0; count--) {
+                final long nodeId = getNumber();
+                final AttributeSet attributes = getAttributeSet();
+
+                if (nodeIndex.putIfAbsent(nodeId, 0, nodes.size()) != LongPairIndex.ABSENT) {
+                    throw new IOException("Duplicate node id " + nodeId + " in graph snapshot!");
+                }
+
+                final Node node = graph.newNode(Id.valueOf(nodeId));
+                maxNodeId = Math.max(maxNodeId, nodeId);
+                nodes.add(node);
+
+                if (attributes != AttributeSet.EMPTY) {
+                    node.getAttributes().setAttributeSet(attributes);
+                }
+            }
+
+            for (int count = getCount(); count > 0; count--) {
+                readGraph(graph);
+            }
+
+            return graph;
+        }
+
+        /**
+         * Read the ranks of the given graph.
+         *
+         * @param graph
+         *            graph to read the ranks of
+         * @throws IOException
+         *             when the ranks are corrupt
+         */
+        private void readRanks(final Graph graph) throws IOException {
+            for (int ranks = getCount(); ranks > 0; ranks--) {
+                final String rank = getString();
+
+                for (int count = getCount(); count > 0; count--) {
+                    graph.rank(rank, getNode());
+                }
+            }
+        }
+
+        /**
+         * Read the edges of the given graph.
+         *
+         * @param graph
+         *            graph to read the edges of
+         * @throws IOException
+         *             when the edges are corrupt
+         */
+        private void readEdges(final Graph graph) throws IOException {
+            for (int count = getCount(); count > 0; count--) {
+                final Edge edge = graph.newEdge(getNode(), getNode());
+                final AttributeSet attributes = getAttributeSet();
+
+                if (attributes != AttributeSet.EMPTY) {
+                    edge.getAttributes().setAttributeSet(attributes);
+                }
+            }
+        }
+
+        /**
+         * Read a node reference.
+         *
+         * @return the referenced node
+         * @throws IOException
+         *             when the node is unknown
+         */
+        private Node getNode() throws IOException {
+            final long nodeId = getNumber();
+            final int position = nodeIndex.get(nodeId, 0);
+
+            if (position == LongPairIndex.ABSENT) {
+                throw new IOException("Unknown node id " + nodeId + " in graph snapshot!");
+            }
+
+            return nodes.get(position);
+        }
+
+        /**
+         * Read a string reference.
+         *
+         * @return the referenced string
+         * @throws IOException
+         *             when the reference is invalid
+         */
+        private String getString() throws IOException {
+            final long position = getNumber();
+
+            if (position >= strings.length) {
+                throw new IOException("Invalid string reference " + position + " in graph snapshot!");
+            }
+
+            return strings[(int)position];
+        }
+
+        /**
+         * Read an attribute set reference.
+         *
+         * @return the referenced attribute set
+         * @throws IOException
+         *             when the reference is invalid
+         */
+        private AttributeSet getAttributeSet() throws IOException {
+            final long position = getNumber();
+
+            if (position >= attributeSets.length) {
+                throw new IOException("Invalid attribute set reference " + position + " in graph snapshot!");
+            }
+
+            return attributeSets[(int)position];
+        }
+
+        /**
+         * Read a count that has to fit into the remaining buffer.
+         *
+         * @return the count
+         * @throws IOException
+         *             when the count is invalid
+         */
+        private int getCount() throws IOException {
+            final long count = getNumber();
+
+            if (count > buffer.remaining()) {
+                throw new IOException("Invalid count " + count + " in graph snapshot!");
+            }
+
+            return (int)count;
+        }
+
+        /**
+         * Read a variable length integer.
+         *
+         * @return the number read
+         * @throws IOException
+         *             when the number is too long
+         */
+        private long getNumber() throws IOException {
+            long result = 0;
+
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                final byte current = buffer.get();
+                result |= (long)(current & 0x7f) << shift;
+
+                if (current >= 0) {
+                    return result;
+                }
+            }
+
+            throw new IOException("Malformed number in graph snapshot!");
+        }
+    }
+}
@@ -9,6 +9,22 @@ package org.arachna.dot4j.model;
  * @author Dirk Weigenand
  */
 public final class Id {
+    /**
+     * number of cached ids.
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    /**
+     * cached instances of small ids.
+     */
+    private static final Id[] CACHE = new Id[CACHE_SIZE];
+
+    static {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            CACHE[i] = new Id(i);
+        }
+    }
+
     /**
      * unique id.
      */
@@ -24,6 +40,31 @@ public final class Id {
         this.id = id;
     }
 
+    /**
+     * Return an Id object with the given id value. Small ids are shared
+     * instead of being created over and over again.
+     * 
+     * @param id
+     *            value of the id.
+     * @return an Id object with the given value.
+     */
+    static Id valueOf(final long id) {
+        if (id >= 0 && id < CACHE_SIZE) {
+            return CACHE[(int)id];
+        }
+
+        return new Id(id);
+    }
+
+    /**
+     * Return the numeric value of this id.
+     * 
+     * @return the value of this id.
+     */
+    public long getValue() {
+        return id;
+    }
+
     /**
      * {@inheritDoc}
      */
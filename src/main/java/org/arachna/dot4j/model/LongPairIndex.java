@@ -0,0 +1,219 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash index mapping pairs of <code>long</code> values to
+ * non negative <code>int</code> values.
+ * <p>
+ * Keys are stored in a flat <code>long</code> array, so neither lookups nor
+ * insertions box their arguments or allocate key objects. Indexes are used
+ * for nodes, edges and graphs keyed by their ids, e.g. by the
+ * {@link EdgeIndex} of a graph or to drop duplicate streamed edges.
+ *
+ * @author Dirk Weigenand
+ */
+public final class LongPairIndex {
+    /**
+     * marks an unused slot and is returned when a key is not present.
+     */
+    public static final int ABSENT = -1;
+
+    /**
+     * initial number of slots.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * the keys, two consecutive entries per slot.
+     */
+    private long[] keys;
+
+    /**
+     * the values, {@link #ABSENT} for unused slots.
+     */
+    private int[] values;
+
+    /**
+     * number of keys in this index.
+     */
+    private int size;
+
+    /**
+     * Create an empty index.
+     */
+    public LongPairIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Return the value registered for the given key.
+     *
+     * @param first  first part of the key
+     * @param second second part of the key
+     * @return the value registered for the key or {@link #ABSENT}.
+     */
+    public int get(final long first, final long second) {
+        return values[slot(first, second)];
+    }
+
+    /**
+     * Register the given value for the given key unless the key is already
+     * present.
+     *
+     * @param first  first part of the key
+     * @param second second part of the key
+     * @param value  non negative value to register
+     * @return the value already registered for the key or {@link #ABSENT} if
+     *         the given value was registered.
+     */
+    public int putIfAbsent(final long first, final long second, final int value) {
+        final int slot = slot(first, second);
+        final int current = values[slot];
+
+        if (current == ABSENT) {
+            keys[slot << 1] = first;
+            keys[(slot << 1) + 1] = second;
+            values[slot] = value;
+
+            if (++size > values.length >> 1) {
+                rehash(values.length << 1);
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * Register the given value for the given key, replacing a value already
+     * registered for it.
+     *
+     * @param first  first part of the key
+     * @param second second part of the key
+     * @param value  non negative value to register
+     */
+    public void put(final long first, final long second, final int value) {
+        final int slot = slot(first, second);
+
+        if (values[slot] == ABSENT) {
+            putIfAbsent(first, second, value);
+        }
+        else {
+            values[slot] = value;
+        }
+    }
+
+    /**
+     * Remove the given key.
+     * <p>
+     * Keys following the removed one in its probe sequence are shifted back,
+     * so lookups never need to skip deleted slots.
+     *
+     * @param first  first part of the key
+     * @param second second part of the key
+     * @return the value registered for the key or {@link #ABSENT} if it was
+     *         not present.
+     */
+    public int remove(final long first, final long second) {
+        final int mask = values.length - 1;
+        int slot = slot(first, second);
+        final int removed = values[slot];
+
+        if (removed == ABSENT) {
+            return ABSENT;
+        }
+
+        for (int next = (slot + 1) & mask; values[next] != ABSENT; next = (next + 1) & mask) {
+            final int home = hash(keys[next << 1], keys[(next << 1) + 1]) & mask;
+
+            // move the key back unless its home slot lies cyclically in (slot, next]
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot << 1] = keys[next << 1];
+                keys[(slot << 1) + 1] = keys[(next << 1) + 1];
+                values[slot] = values[next];
+                slot = next;
+            }
+        }
+
+        values[slot] = ABSENT;
+        size--;
+
+        return removed;
+    }
+
+    /**
+     * Return the number of keys in this index.
+     *
+     * @return the number of keys in this index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find the slot containing the given key or the free slot where it would
+     * be inserted.
+     *
+     * @param first  first part of the key
+     * @param second second part of the key
+     * @return the slot for the given key.
+     */
+    private int slot(final long first, final long second) {
+        final int mask = values.length - 1;
+        int slot = hash(first, second) & mask;
+
+        while (values[slot] != ABSENT && (keys[slot << 1] != first || keys[(slot << 1) + 1] != second)) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Allocate empty storage for the given number of slots.
+     *
+     * @param capacity number of slots, a power of two
+     */
+    private void allocate(final int capacity) {
+        keys = new long[capacity << 1];
+        values = new int[capacity];
+        Arrays.fill(values, ABSENT);
+    }
+
+    /**
+     * Move all keys into storage with the given number of slots.
+     *
+     * @param capacity new number of slots, a power of two
+     */
+    private void rehash(final int capacity) {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(capacity);
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != ABSENT) {
+                final int slot = slot(oldKeys[i << 1], oldKeys[(i << 1) + 1]);
+                keys[slot << 1] = oldKeys[i << 1];
+                keys[(slot << 1) + 1] = oldKeys[(i << 1) + 1];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Compute a well distributed hash code for the given key.
+     *
+     * @param first  first part of the key
+     * @param second second part of the key
+     * @return hash code of the key
+     */
+    private static int hash(final long first, final long second) {
+        long hash = first * 0x9E3779B97F4A7C15L + second;
+        hash = (hash ^ (hash >>> 32)) * 0xD6E8FEB86659FD93L;
+
+        return (int)(hash ^ (hash >>> 32));
+    }
+}
@@ -17,12 +17,12 @@ public final class Node {
     /**
      * the graph containing this node.
      */
-    private final Graph graph;
+    private volatile Graph graph;
 
     /**
-     * attributes of this node.
+     * attributes of this node, created when first requested.
      */
-    private final Attributes attributes = new Attributes();
+    private volatile Attributes attributes;
 
     /**
      * Create a new node with the containing graph and given id.
@@ -52,7 +52,41 @@ public final class Node {
      * @return the attributes of this node.
      */
     public Attributes getAttributes() {
-        return attributes;
+        Attributes result = attributes;
+
+        if (result == null) {
+            synchronized (this) {
+                result = attributes;
+
+                if (result == null) {
+                    result = new Attributes() {
+                        @Override
+                        void changed() {
+                            final Graph current = graph;
+
+                            if (current != null) {
+                                current.nodesModified();
+                            }
+                        }
+                    };
+                    attributes = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Query whether any attributes have been set on this node.
+     * 
+     * @return <code>true</code> when there are attributes set on this node,
+     *         <code>false</code> otherwise.
+     */
+    public boolean hasAttributes() {
+        final Attributes result = attributes;
+
+        return result != null && !result.isEmpty();
     }
 
     /**
@@ -64,6 +98,16 @@ public final class Node {
         return graph;
     }
 
+    /**
+     * Move this node into the given graph.
+     * 
+     * @param graph
+     *            the new containing graph.
+     */
+    void setGraph(final Graph graph) {
+        this.graph = graph;
+    }
+
     /**
      * {@inheritDoc}
      */
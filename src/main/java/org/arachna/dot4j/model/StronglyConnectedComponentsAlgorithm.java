@@ -0,0 +1,313 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.arachna.dot4j.model.Attributes.Attribute;
+
+/**
+ * Algorithm to find the strongly connected components of a graph and its
+ * clusters, i.e. the groups of nodes that can all reach each other, and to
+ * optionally collapse them.
+ * <p>
+ * Components are found with Tarjan's algorithm using an explicit stack, so the
+ * depth of the graph is not limited by the call stack. A component can be
+ * collapsed into a single summary node, replacing its nodes and rewiring their
+ * edges, or into a cluster of its own containing its nodes. Summary nodes and
+ * clusters are created in the innermost graph containing all nodes of the
+ * component.
+ *
+ * @author Dirk Weigenand
+ */
+public class StronglyConnectedComponentsAlgorithm {
+    /**
+     * separator of the labels of collapsed nodes in the label of a summary
+     * node.
+     */
+    private static final String LABEL_SEPARATOR = "\\n";
+
+    /**
+     * the graph whose strongly connected components should be found.
+     */
+    private final Graph graph;
+
+    /**
+     * Create an instance of the algorithm using the given graph.
+     *
+     * @param graph
+     *            graph to find strongly connected components in.
+     */
+    public StronglyConnectedComponentsAlgorithm(final Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Find the strongly connected components consisting of more than one
+     * node.
+     *
+     * @return the nodes of each strongly connected component with more than
+     *         one node.
+     */
+    public List<List<Node>> execute() {
+        final AdjacencyIndex adjacency = graph.getAdjacency();
+        final int nodeCount = adjacency.nodeCount();
+        final int[] offsets = adjacency.offsets();
+        final int[] targets = adjacency.targets();
+        final int[] index = new int[nodeCount];
+        final int[] low = new int[nodeCount];
+        final boolean[] onStack = new boolean[nodeCount];
+        final int[] stack = new int[nodeCount];
+        final int[] calls = new int[nodeCount];
+        final int[] next = new int[nodeCount];
+        final List<List<Node>> components = new ArrayList<List<Node>>();
+        int counter = 0;
+        int stackSize = 0;
+
+        Arrays.fill(index, -1);
+
+        for (int root = 0; root < nodeCount; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+
+            int depth = 0;
+            calls[depth++] = root;
+            index[root] = counter;
+            low[root] = counter++;
+            next[root] = offsets[root];
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth > 0) {
+                final int node = calls[depth - 1];
+
+                if (next[node] < offsets[node + 1]) {
+                    final int successor = targets[next[node]++];
+
+                    if (index[successor] < 0) {
+                        index[successor] = counter;
+                        low[successor] = counter++;
+                        next[successor] = offsets[successor];
+                        stack[stackSize++] = successor;
+                        onStack[successor] = true;
+                        calls[depth++] = successor;
+                    }
+                    else if (onStack[successor]) {
+                        low[node] = Math.min(low[node], index[successor]);
+                    }
+
+                    continue;
+                }
+
+                depth--;
+
+                if (depth > 0) {
+                    final int caller = calls[depth - 1];
+                    low[caller] = Math.min(low[caller], low[node]);
+                }
+
+                if (low[node] == index[node]) {
+                    final int start = stackSize;
+
+                    do {
+                        onStack[stack[--stackSize]] = false;
+                    }
+                    while (stack[stackSize] != node);
+
+                    if (start - stackSize > 1) {
+                        final List<Node> component = new ArrayList<Node>(start - stackSize);
+
+                        for (int i = stackSize; i < start; i++) {
+                            component.add(adjacency.node(stack[i]));
+                        }
+
+                        components.add(component);
+                    }
+                }
+            }
+        }
+
+        return components;
+    }
+
+    /**
+     * Collapse every strongly connected component with more than one node
+     * into a single summary node. The summary node is labeled with the labels
+     * (or names) of the collapsed nodes. Edges inside a component are removed,
+     * edges to or from a component are redirected to its summary node.
+     *
+     * @return the number of collapsed components.
+     */
+    public int collapseIntoNodes() {
+        final List<List<Node>> components = execute();
+        final Map<Node, Node> summaries = new IdentityHashMap<Node, Node>();
+
+        for (final List<Node> component : components) {
+            final Node summary = commonGraph(component).newNode();
+            final StringBuilder label = new StringBuilder();
+
+            for (final Node node : component) {
+                if (label.length() > 0) {
+                    label.append(LABEL_SEPARATOR);
+                }
+
+                final Attribute attribute = node.hasAttributes() ? node.getAttributes().getAttribute("label") : null;
+                label.append(attribute == null ? "node" + node.getId() : attribute.getValue());
+                summaries.put(node, summary);
+            }
+
+            summary.getAttributes().setAttribute("label", label.toString());
+        }
+
+        if (components.isEmpty()) {
+            return 0;
+        }
+
+        final Deque<Graph> pending = new ArrayDeque<Graph>();
+        pending.push(graph);
+
+        while (!pending.isEmpty()) {
+            final Graph current = pending.pop();
+            rewireEdges(current, summaries);
+
+            for (final Graph cluster : current.getClusters()) {
+                pending.push(cluster);
+            }
+        }
+
+        for (final Map.Entry<Graph, Set<Node>> entry : groupByGraph(summaries.keySet()).entrySet()) {
+            entry.getKey().removeNodes(entry.getValue());
+        }
+
+        return components.size();
+    }
+
+    /**
+     * Move the nodes of every strongly connected component with more than one
+     * node into a new cluster of their own.
+     *
+     * @return the number of components moved into clusters.
+     */
+    public int collapseIntoClusters() {
+        final List<List<Node>> components = execute();
+
+        for (final List<Node> component : components) {
+            final Graph cluster = commonGraph(component).newGraph();
+
+            for (final Map.Entry<Graph, Set<Node>> entry : groupByGraph(component).entrySet()) {
+                entry.getKey().removeNodes(entry.getValue());
+            }
+
+            for (final Node node : component) {
+                cluster.adoptNode(node);
+            }
+        }
+
+        return components.size();
+    }
+
+    /**
+     * Redirect the edges of the given graph to summary nodes.
+     *
+     * @param current
+     *            graph whose edges to redirect
+     * @param summaries
+     *            summary nodes of collapsed nodes
+     */
+    private void rewireEdges(final Graph current, final Map<Node, Node> summaries) {
+        for (final Edge edge : new ArrayList<Edge>(current.getEdges())) {
+            final Node start = summaries.getOrDefault(edge.getStartNode(), edge.getStartNode());
+            final Node end = summaries.getOrDefault(edge.getEndNode(), edge.getEndNode());
+
+            if (start == edge.getStartNode() && end == edge.getEndNode()) {
+                continue;
+            }
+
+            if (start == end) {
+                current.removeEdge(edge);
+            }
+            else {
+                current.reconnectEdge(edge, start, end);
+            }
+        }
+    }
+
+    /**
+     * Group the given nodes by the graph containing them.
+     *
+     * @param nodes
+     *            nodes to group
+     * @return the nodes grouped by the graph containing them
+     */
+    private static Map<Graph, Set<Node>> groupByGraph(final Iterable<Node> nodes) {
+        final Map<Graph, Set<Node>> groups = new IdentityHashMap<Graph, Set<Node>>();
+
+        for (final Node node : nodes) {
+            groups.computeIfAbsent(node.getGraph(), key -> Collections.newSetFromMap(new IdentityHashMap<>()))
+                .add(node);
+        }
+
+        return groups;
+    }
+
+    /**
+     * Find the innermost graph containing all of the given nodes.
+     *
+     * @param nodes
+     *            nodes to find the innermost common graph of
+     * @return the innermost graph containing all of the given nodes
+     */
+    private static Graph commonGraph(final List<Node> nodes) {
+        Graph common = nodes.get(0).getGraph();
+
+        for (final Node node : nodes) {
+            Graph current = node.getGraph();
+            int depth = depth(current);
+            int commonDepth = depth(common);
+
+            while (depth > commonDepth) {
+                current = current.getParent();
+                depth--;
+            }
+
+            while (commonDepth > depth) {
+                common = common.getParent();
+                commonDepth--;
+            }
+
+            while (current != common) {
+                current = current.getParent();
+                common = common.getParent();
+            }
+        }
+
+        return common;
+    }
+
+    /**
+     * Return the nesting depth of the given graph.
+     *
+     * @param current
+     *            graph to determine the depth of
+     * @return the number of enclosing graphs
+     */
+    private static int depth(final Graph current) {
+        int depth = 0;
+
+        for (Graph parent = current.getParent(); parent != null; parent = parent.getParent()) {
+            depth++;
+        }
+
+        return depth;
+    }
+}
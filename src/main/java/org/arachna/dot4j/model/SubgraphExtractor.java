@@ -0,0 +1,375 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Algorithm to extract a small part of a graph into a graph of its own, e.g.
+ * to render the neighbourhood of a few nodes of a huge graph.
+ * <p>
+ * The extracted graph contains copies of the selected nodes in copies of
+ * their clusters, preserving the ids of nodes and clusters, the attributes of
+ * the top level graph and the ranks, and the edges between selected nodes.
+ * Attribute sets are shared with the original graph, not copied. Neighbours
+ * and degrees are taken from the {@link AdjacencyIndex} of the graph, so
+ * apart from selecting the nodes only the selected nodes and their edges are
+ * visited. Clusters without selected nodes are not copied. Nodes and
+ * clusters created later in the extracted graph receive ids above those of the
+ * extracted ones.
+ *
+ * @author Dirk Weigenand
+ */
+public class SubgraphExtractor {
+    /**
+     * the graph to extract from.
+     */
+    private final Graph graph;
+
+    /**
+     * Create an instance of the algorithm using the given graph.
+     *
+     * @param graph
+     *            graph to extract from.
+     */
+    public SubgraphExtractor(final Graph graph) {
+        if (graph == null) {
+            throw new IllegalArgumentException("Graph must not be null!");
+        }
+
+        this.graph = graph;
+    }
+
+    /**
+     * Extract the given nodes and all nodes reachable from them by following
+     * at most the given number of edges in either direction.
+     *
+     * @param seeds
+     *            nodes to start from
+     * @param hops
+     *            the maximum number of edges between a seed and an extracted
+     *            node
+     * @return the extracted graph
+     */
+    public Graph neighbourhood(final Collection<Node> seeds, final int hops) {
+        if (seeds == null || hops < 0) {
+            throw new IllegalArgumentException("Seeds must not be null and hops must not be negative!");
+        }
+
+        final AdjacencyIndex adjacency = graph.getAdjacency();
+        final Selection selection = new Selection();
+
+        for (final Node seed : seeds) {
+            selection.add(seed);
+        }
+
+        int from = 0;
+
+        for (int hop = 0; hop < hops && from < selection.nodes.size(); hop++) {
+            final int to = selection.nodes.size();
+
+            for (int i = from; i < to; i++) {
+                final Node node = selection.nodes.get(i);
+
+                for (final Node successor : adjacency.getSuccessors(node)) {
+                    selection.add(successor);
+                }
+
+                for (final Node predecessor : adjacency.getPredecessors(node)) {
+                    selection.add(predecessor);
+                }
+            }
+
+            from = to;
+        }
+
+        return selection.extract(adjacency);
+    }
+
+    /**
+     * Extract the given number of nodes with the most edges. Of nodes with the
+     * same number of edges those found first in depth first order are
+     * preferred.
+     *
+     * @param count
+     *            number of nodes to extract
+     * @return the extracted graph
+     */
+    public Graph topByDegree(final int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative!");
+        }
+
+        final AdjacencyIndex adjacency = graph.getAdjacency();
+        final List<Node> nodes = collectNodes(current -> true);
+        final int[] degrees = new int[nodes.size()];
+
+        for (int i = 0; i < degrees.length; i++) {
+            degrees[i] = adjacency.getOutDegree(nodes.get(i)) + adjacency.getInDegree(nodes.get(i));
+        }
+
+        final Comparator<Integer> weakestFirst =
+            Comparator.<Integer> comparingInt(i -> degrees[i]).thenComparing(Comparator.reverseOrder());
+        final PriorityQueue<Integer> strongest = new PriorityQueue<Integer>(Math.max(1, count), weakestFirst);
+
+        for (int i = 0; i < degrees.length && count > 0; i++) {
+            if (strongest.size() < count) {
+                strongest.add(i);
+            }
+            else if (weakestFirst.compare(i, strongest.peek()) > 0) {
+                strongest.poll();
+                strongest.add(i);
+            }
+        }
+
+        final Selection selection = new Selection();
+
+        for (final int i : strongest) {
+            selection.add(nodes.get(i));
+        }
+
+        return selection.extract(adjacency);
+    }
+
+    /**
+     * Extract the nodes of all clusters accepted by the given predicate,
+     * including the nodes of their nested clusters. The top level graph is
+     * tested as well; accepting it extracts the whole graph.
+     *
+     * @param predicate
+     *            predicate selecting the graph or clusters
+     * @return the extracted graph
+     */
+    public Graph clusters(final Predicate<Graph> predicate) {
+        if (predicate == null) {
+            throw new IllegalArgumentException("Predicate must not be null!");
+        }
+
+        final Selection selection = new Selection();
+
+        for (final Node node : collectNodes(predicate)) {
+            selection.add(node);
+        }
+
+        return selection.extract(graph.getAdjacency());
+    }
+
+    /**
+     * Collect the nodes of the graph or clusters accepted by the given
+     * predicate and their nested clusters in depth first order.
+     *
+     * @param predicate
+     *            predicate selecting the graph or clusters
+     * @return the nodes of the accepted graph or clusters
+     */
+    private List<Node> collectNodes(final Predicate<Graph> predicate) {
+        final List<Node> nodes = new ArrayList<Node>();
+        final Deque<Graph> pending = new ArrayDeque<Graph>();
+        final Deque<Boolean> accepted = new ArrayDeque<Boolean>();
+        pending.push(graph);
+        accepted.push(Boolean.FALSE);
+
+        while (!pending.isEmpty()) {
+            final Graph current = pending.pop();
+            final boolean inAccepted = accepted.pop() || predicate.test(current);
+
+            if (inAccepted) {
+                nodes.addAll(current.getNodes());
+            }
+
+            final List<Graph> clusters = new ArrayList<Graph>(current.getClusters());
+
+            for (int i = clusters.size() - 1; i >= 0; i--) {
+                pending.push(clusters.get(i));
+                accepted.push(inAccepted);
+            }
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Nodes selected for extraction.
+     *
+     * @author Dirk Weigenand
+     */
+    private final class Selection {
+        /**
+         * positions of the selected nodes in {@link #nodes} indexed by node
+         * id.
+         */
+        private final LongPairIndex positions = new LongPairIndex();
+
+        /**
+         * the selected nodes in the order they were selected.
+         */
+        private final List<Node> nodes = new ArrayList<Node>();
+
+        /**
+         * the top level graph of the extracted graph.
+         */
+        private Graph root;
+
+        /**
+         * copies of the graph and its clusters in the extracted graph.
+         */
+        private final Map<Graph, Graph> copies = new IdentityHashMap<Graph, Graph>();
+
+        /**
+         * Select the given node.
+         *
+         * @param node
+         *            node to select
+         */
+        void add(final Node node) {
+            if (positions.putIfAbsent(node.getId().getValue(), 0, nodes.size()) == LongPairIndex.ABSENT) {
+                nodes.add(node);
+            }
+        }
+
+        /**
+         * Create the extracted graph from the selected nodes.
+         *
+         * @param adjacency
+         *            the edges of the graph
+         * @return the extracted graph
+         */
+        Graph extract(final AdjacencyIndex adjacency) {
+            root = new Graph(graph.getId());
+            share(graph, root);
+            copies.put(graph, root);
+
+            final List<Node> ordered = new ArrayList<Node>(nodes);
+            ordered.sort(Comparator.comparingLong(node -> node.getId().getValue()));
+
+            final Node[] nodeCopies = new Node[nodes.size()];
+            final Map<Graph, Boolean> rankedGraphs = new IdentityHashMap<Graph, Boolean>();
+            long maxNodeId = -1;
+
+            for (final Node node : ordered) {
+                final Node copy = copyOf(node.getGraph()).newNode(node.getId());
+
+                if (node.hasAttributes()) {
+                    copy.getAttributes().setAttributeSet(node.getAttributes().getAttributeSet());
+                }
+
+                nodeCopies[positionOf(node)] = copy;
+                rankedGraphs.put(node.getGraph(), Boolean.TRUE);
+                maxNodeId = Math.max(maxNodeId, node.getId().getValue());
+            }
+
+            for (final Graph original : rankedGraphs.keySet()) {
+                for (final Map.Entry<String, Collection<Node>> rank : original.getRankedNodes().entrySet()) {
+                    for (final Node node : rank.getValue()) {
+                        final int position = positionOf(node);
+
+                        if (position != LongPairIndex.ABSENT) {
+                            copies.get(original).rank(rank.getKey(), nodeCopies[position]);
+                        }
+                    }
+                }
+            }
+
+            for (final Node node : ordered) {
+                for (final Edge edge : adjacency.getOutgoingEdges(node)) {
+                    final int end = positionOf(edge.getEndNode());
+
+                    if (end != LongPairIndex.ABSENT) {
+                        final Edge copy =
+                            ownerOf(edge.getGraph()).newEdge(nodeCopies[positionOf(node)], nodeCopies[end]);
+
+                        if (edge.hasAttributes()) {
+                            copy.getAttributes().setAttributeSet(edge.getAttributes().getAttributeSet());
+                        }
+                    }
+                }
+            }
+
+            long maxGraphId = graph.getId().getValue();
+
+            for (final Graph copy : copies.values()) {
+                maxGraphId = Math.max(maxGraphId, copy.getId().getValue());
+            }
+
+            root.reserveIds(maxNodeId + 1, maxGraphId + 1);
+
+            return root;
+        }
+
+        /**
+         * Return the position of the given node among the selected nodes.
+         *
+         * @param node
+         *            node to look up
+         * @return the position of the node or {@link LongPairIndex#ABSENT} if
+         *         it has not been selected.
+         */
+        private int positionOf(final Node node) {
+            return positions.get(node.getId().getValue(), 0);
+        }
+
+        /**
+         * Return the copy of the given graph or cluster, creating it and its
+         * enclosing clusters when necessary.
+         *
+         * @param original
+         *            the graph or cluster to copy
+         * @return the copy in the extracted graph
+         */
+        private Graph copyOf(final Graph original) {
+            Graph copy = copies.get(original);
+
+            if (copy == null) {
+                copy = copyOf(original.getParent()).newGraph(original.getId());
+                share(original, copy);
+                copies.put(original, copy);
+            }
+
+            return copy;
+        }
+
+        /**
+         * Return the graph a copy of an edge of the given graph is added to:
+         * the copy of the innermost enclosing graph that has been copied.
+         *
+         * @param original
+         *            the graph containing the edge
+         * @return the graph to add the copy of the edge to
+         */
+        private Graph ownerOf(final Graph original) {
+            for (Graph current = original; current != null; current = current.getParent()) {
+                final Graph copy = copies.get(current);
+
+                if (copy != null) {
+                    return copy;
+                }
+            }
+
+            return root;
+        }
+
+        /**
+         * Let the copy of a graph share the attributes of the original.
+         *
+         * @param original
+         *            the original graph
+         * @param copy
+         *            the copy of the graph
+         */
+        private void share(final Graph original, final Graph copy) {
+            copy.getAttributes().setAttributeSet(original.getAttributes().getAttributeSet());
+            copy.getNodeAttributes().setAttributeSet(original.getNodeAttributes().getAttributeSet());
+            copy.getEdgeAttributes().setAttributeSet(original.getEdgeAttributes().getAttributeSet());
+        }
+    }
+}
@@ -0,0 +1,552 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Algorithm to remove redundant edges from a graph and its clusters. An edge
+ * from <code>u</code> to <code>v</code> is redundant when <code>v</code> can
+ * also be reached from <code>u</code> via another path. Removing all redundant
+ * edges yields the transitive reduction of the graph, which keeps the
+ * reachability between nodes.
+ * <p>
+ * The nodes reachable from every node are computed as bit sets, one bit per
+ * node, in order of increasing height (length of the longest path to a node
+ * without successors). Nodes of the same height do not depend on each other and
+ * can be processed in parallel. The bit set of a node is released as soon as
+ * the layers of all its predecessors have been processed, but may still need up
+ * to <code>n * n / 8</code> bytes for <code>n</code> nodes connected by edges,
+ * e.g. when most nodes share a predecessor in the topmost layer.
+ * <p>
+ * Graphs with more nodes than the bit set limit (see
+ * {@link #setBitSetLimit(int)}) are reduced by a depth first search from every
+ * node instead, which needs memory linear in the number of nodes per thread
+ * but takes time proportional to the number of nodes times the number of
+ * edges.
+ * <p>
+ * The transitive reduction of a graph containing cycles is not unique, so
+ * such graphs are left unchanged.
+ *
+ * @author Dirk Weigenand
+ */
+public class TransitiveReductionAlgorithm {
+    /**
+     * number of nodes processed by one task in parallel mode.
+     */
+    private static final int CHUNK_SIZE = 256;
+
+    /**
+     * default maximum number of nodes reduced using bit sets, at most 128 MiB
+     * of bit sets.
+     */
+    public static final int DEFAULT_BIT_SET_LIMIT = 1 << 15;
+
+    /**
+     * the graph whose redundant edges should be removed.
+     */
+    private final Graph graph;
+
+    /**
+     * whether nodes should be processed in parallel.
+     */
+    private boolean parallel;
+
+    /**
+     * maximum number of nodes reduced using bit sets.
+     */
+    private int bitSetLimit = DEFAULT_BIT_SET_LIMIT;
+
+    /**
+     * Create an instance of the algorithm using the given graph.
+     *
+     * @param graph
+     *            graph to remove redundant edges from.
+     */
+    public TransitiveReductionAlgorithm(final Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Enable or disable parallel processing of nodes.
+     * <p>
+     * In parallel mode nodes of the same height are processed on a
+     * {@link java.util.concurrent.ForkJoinPool}, either the pool the caller
+     * runs in or the common pool. The removed edges do not depend on the mode.
+     *
+     * @param parallel
+     *            <code>true</code> to process nodes in parallel,
+     *            <code>false</code> to process them sequentially (the
+     *            default).
+     */
+    public void setParallel(final boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Set the maximum number of nodes connected by edges reduced using bit
+     * sets of reachable nodes. Larger graphs are reduced by a depth first
+     * search from every node. The removed edges do not depend on the limit.
+     *
+     * @param bitSetLimit
+     *            maximum number of nodes to reduce using bit sets (defaults to
+     *            {@link #DEFAULT_BIT_SET_LIMIT}).
+     */
+    public void setBitSetLimit(final int bitSetLimit) {
+        if (bitSetLimit < 0) {
+            throw new IllegalArgumentException("The bit set limit must not be negative!");
+        }
+
+        this.bitSetLimit = bitSetLimit;
+    }
+
+    /**
+     * Execute the transitive reduction.
+     *
+     * @return the number of removed edges, <code>0</code> when the graph
+     *         contains a cycle.
+     */
+    public int execute() {
+        final AdjacencyIndex adjacency = graph.getAdjacency();
+        final int[] order = topologicalOrder(adjacency);
+
+        if (order == null) {
+            return 0;
+        }
+
+        final boolean[] redundant =
+            adjacency.nodeCount() > bitSetLimit ? searchRedundant(adjacency, order) : coverRedundant(adjacency, order);
+
+        int removed = 0;
+
+        for (int edge = 0; edge < redundant.length; edge++) {
+            if (redundant[edge]) {
+                final Edge candidate = adjacency.edges()[edge];
+
+                if (candidate.getGraph().removeEdge(candidate)) {
+                    removed++;
+                }
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Determine the redundant edges of the given index using bit sets of the
+     * nodes reachable from every node, processed in order of increasing height.
+     *
+     * @param adjacency
+     *            the edges to reduce
+     * @param order
+     *            the nodes in topological order
+     * @return the redundant edges indexed like the targets of the index.
+     */
+    private boolean[] coverRedundant(final AdjacencyIndex adjacency, final int[] order) {
+        final int nodeCount = adjacency.nodeCount();
+        final int[] offsets = adjacency.offsets();
+        final int[] targets = adjacency.targets();
+        final int words = (nodeCount + Long.SIZE - 1) / Long.SIZE;
+        final long[][] reachable = new long[nodeCount][];
+        final boolean[] redundant = new boolean[targets.length];
+        final int[] heights = heights(adjacency, order);
+        final int[][] layers = layers(heights);
+        final int[][] released = released(adjacency, heights, layers.length);
+
+        for (int height = 0; height < layers.length; height++) {
+            forEach(layers[height], node -> {
+                if (offsets[node] == offsets[node + 1]) {
+                    return;
+                }
+
+                final long[] covered = new long[words];
+
+                for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                    final long[] successor = reachable[targets[edge]];
+
+                    if (successor != null) {
+                        for (int word = 0; word < words; word++) {
+                            covered[word] |= successor[word];
+                        }
+                    }
+                }
+
+                for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                    final int target = targets[edge];
+                    redundant[edge] = (covered[target >>> 6] & 1L << target) != 0;
+                }
+
+                for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                    final int target = targets[edge];
+                    covered[target >>> 6] |= 1L << target;
+                }
+
+                reachable[node] = covered;
+            });
+
+            for (final int node : released[height]) {
+                reachable[node] = null;
+            }
+        }
+
+        return redundant;
+    }
+
+    /**
+     * Determine the redundant edges of the given index by a depth first search
+     * from the successors of the successors of every node. An edge is
+     * redundant when its target is reached by such a search.
+     *
+     * @param adjacency
+     *            the edges to reduce
+     * @param order
+     *            the nodes in topological order
+     * @return the redundant edges indexed like the targets of the index.
+     */
+    private boolean[] searchRedundant(final AdjacencyIndex adjacency, final int[] order) {
+        final int nodeCount = adjacency.nodeCount();
+        final int[] offsets = adjacency.offsets();
+        final int[] targets = adjacency.targets();
+        final boolean[] redundant = new boolean[targets.length];
+        final ThreadLocal<Search> searches = ThreadLocal.withInitial(() -> new Search(nodeCount));
+
+        forEach(order, node -> {
+            final Search search = searches.get();
+            search.reset();
+
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                final int successor = targets[edge];
+
+                for (int next = offsets[successor]; next < offsets[successor + 1]; next++) {
+                    search.visit(targets[next], offsets, targets);
+                }
+            }
+
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                redundant[edge] = search.visited(targets[edge]);
+            }
+        });
+
+        return redundant;
+    }
+
+    /**
+     * Apply the given action to all given nodes, in parallel if enabled.
+     *
+     * @param nodes
+     *            nodes to process
+     * @param action
+     *            action to apply to each node
+     */
+    private void forEach(final int[] nodes, final IntConsumer action) {
+        if (parallel && nodes.length > CHUNK_SIZE) {
+            new RangeTask(nodes, 0, nodes.length, action).invoke();
+        }
+        else {
+            for (final int node : nodes) {
+                action.accept(node);
+            }
+        }
+    }
+
+    /**
+     * Sort the nodes of the given index so that every node precedes its
+     * successors.
+     *
+     * @param adjacency
+     *            the edges to sort the nodes of
+     * @return the sorted nodes or <code>null</code> if there is a cycle.
+     */
+    private static int[] topologicalOrder(final AdjacencyIndex adjacency) {
+        final int nodeCount = adjacency.nodeCount();
+        final int[] offsets = adjacency.offsets();
+        final int[] targets = adjacency.targets();
+        final int[] incoming = new int[nodeCount];
+
+        for (final int target : targets) {
+            incoming[target]++;
+        }
+
+        final int[] order = new int[nodeCount];
+        int tail = 0;
+
+        for (int node = 0; node < nodeCount; node++) {
+            if (incoming[node] == 0) {
+                order[tail++] = node;
+            }
+        }
+
+        for (int head = 0; head < tail; head++) {
+            final int node = order[head];
+
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                if (--incoming[targets[edge]] == 0) {
+                    order[tail++] = targets[edge];
+                }
+            }
+        }
+
+        return tail == nodeCount ? order : null;
+    }
+
+    /**
+     * Compute the height of the nodes of the given index, i.e. the length of
+     * the longest path to a node without successors.
+     *
+     * @param adjacency
+     *            the edges to compute the heights of the nodes of
+     * @param order
+     *            the nodes in topological order
+     * @return the heights of the nodes
+     */
+    private static int[] heights(final AdjacencyIndex adjacency, final int[] order) {
+        final int[] offsets = adjacency.offsets();
+        final int[] targets = adjacency.targets();
+        final int[] heights = new int[adjacency.nodeCount()];
+
+        for (int i = order.length - 1; i >= 0; i--) {
+            final int node = order[i];
+
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                heights[node] = Math.max(heights[node], heights[targets[edge]] + 1);
+            }
+        }
+
+        return heights;
+    }
+
+    /**
+     * Group nodes by height.
+     *
+     * @param heights
+     *            the heights of the nodes
+     * @return the nodes grouped by increasing height
+     */
+    private static int[][] layers(final int[] heights) {
+        int maxHeight = 0;
+
+        for (final int height : heights) {
+            maxHeight = Math.max(maxHeight, height);
+        }
+
+        return group(heights, heights.length == 0 ? 0 : maxHeight + 1);
+    }
+
+    /**
+     * Group the nodes of the given index by the height after which their bit
+     * sets are no longer needed, i.e. the largest height of their
+     * predecessors.
+     *
+     * @param adjacency
+     *            the edges to group the nodes of
+     * @param heights
+     *            the heights of the nodes
+     * @param layerCount
+     *            the number of layers
+     * @return the nodes grouped by the height after which they are released
+     */
+    private static int[][] released(final AdjacencyIndex adjacency, final int[] heights, final int layerCount) {
+        final int[] offsets = adjacency.offsets();
+        final int[] targets = adjacency.targets();
+        final int[] lastUse = heights.clone();
+
+        for (int node = 0; node < heights.length; node++) {
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                lastUse[targets[edge]] = Math.max(lastUse[targets[edge]], heights[node]);
+            }
+        }
+
+        return group(lastUse, layerCount);
+    }
+
+    /**
+     * Group nodes by the given keys.
+     *
+     * @param keys
+     *            key of every node, less than the number of groups
+     * @param groupCount
+     *            the number of groups
+     * @return the nodes grouped by increasing key
+     */
+    private static int[][] group(final int[] keys, final int groupCount) {
+        final int[] sizes = new int[groupCount];
+
+        for (final int key : keys) {
+            sizes[key]++;
+        }
+
+        final int[][] groups = new int[groupCount][];
+
+        for (int key = 0; key < groupCount; key++) {
+            groups[key] = new int[sizes[key]];
+            sizes[key] = 0;
+        }
+
+        for (int node = 0; node < keys.length; node++) {
+            groups[keys[node]][sizes[keys[node]]++] = node;
+        }
+
+        return groups;
+    }
+
+    /**
+     * State of a depth first search reused for searches from different nodes
+     * by the same thread.
+     *
+     * @author Dirk Weigenand
+     */
+    private static final class Search {
+        /**
+         * the number of the search that last visited every node.
+         */
+        private final int[] visits;
+
+        /**
+         * nodes still to be visited.
+         */
+        private final int[] stack;
+
+        /**
+         * the number of the current search.
+         */
+        private int current;
+
+        /**
+         * Create the state of a search for the given number of nodes.
+         *
+         * @param nodeCount
+         *            the number of nodes
+         */
+        Search(final int nodeCount) {
+            visits = new int[nodeCount];
+            stack = new int[nodeCount];
+        }
+
+        /**
+         * Start a new search forgetting about the nodes visited so far.
+         */
+        void reset() {
+            if (++current == 0) {
+                Arrays.fill(visits, 0);
+                current = 1;
+            }
+        }
+
+        /**
+         * Visit the given node and all nodes reachable from it unless it has
+         * already been visited.
+         *
+         * @param start
+         *            the node to start from
+         * @param offsets
+         *            offsets of the edges of every node into the targets
+         * @param targets
+         *            targets of the edges
+         */
+        void visit(final int start, final int[] offsets, final int[] targets) {
+            if (visits[start] == current) {
+                return;
+            }
+
+            visits[start] = current;
+            int size = 0;
+            stack[size++] = start;
+
+            while (size > 0) {
+                final int node = stack[--size];
+
+                for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                    final int target = targets[edge];
+
+                    if (visits[target] != current) {
+                        visits[target] = current;
+                        stack[size++] = target;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Return whether the given node has been visited by the current
+         * search.
+         *
+         * @param node
+         *            the node to check
+         * @return <code>true</code> if the node has been visited,
+         *         <code>false</code> otherwise.
+         */
+        boolean visited(final int node) {
+            return visits[node] == current;
+        }
+    }
+
+    /**
+     * Task applying an action to a range of nodes, splitting large ranges.
+     *
+     * @author Dirk Weigenand
+     */
+    private static final class RangeTask extends RecursiveAction {
+        /**
+         * serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * the nodes to process.
+         */
+        private final int[] nodes;
+
+        /**
+         * start of the range (inclusive).
+         */
+        private final int from;
+
+        /**
+         * end of the range (exclusive).
+         */
+        private final int to;
+
+        /**
+         * the action to apply.
+         */
+        private final transient IntConsumer action;
+
+        /**
+         * Create a task applying the given action to a range of nodes.
+         *
+         * @param nodes
+         *            the nodes to process.
+         * @param from
+         *            start of the range (inclusive).
+         * @param to
+         *            end of the range (exclusive).
+         * @param action
+         *            the action to apply.
+         */
+        RangeTask(final int[] nodes, final int from, final int to, final IntConsumer action) {
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                for (int i = from; i < to; i++) {
+                    action.accept(nodes[i]);
+                }
+            }
+            else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(nodes, from, middle, action), new RangeTask(nodes, middle, to, action));
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ *
+ */
+package org.arachna.dot4j;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.arachna.dot4j.model.Graph;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * JUnit test case for {@link AbstractDotFileGenerator}.
+ *
+ * @author Dirk Weigenand
+ */
+public class AbstractDotFileGeneratorTest {
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.AbstractDotFileGenerator#setGenerationListener(GenerationListener)}.
+     *
+     * @throws IOException when writing fails
+     */
+    @Test
+    public final void testGenerationListenerReceivesAllPhases() throws IOException {
+        final InMemoryGenerationListener listener = new InMemoryGenerationListener();
+        final TestDotFileGenerator generator = new TestDotFileGenerator();
+        generator.setGenerationListener(listener);
+
+        final StringWriter writer = new StringWriter();
+        generator.generate(writer);
+
+        for (final GenerationPhase phase : GenerationPhase.values()) {
+            assertThat(phase.name(), listener.getDuration(phase), greaterThan(0L));
+        }
+
+        assertThat(listener.getStatistics().getNodes(), equalTo(2L));
+        assertThat(listener.getStatistics().getEdges(), equalTo(2L));
+        assertThat(listener.getStatistics().getCharacters(), equalTo((long)writer.toString().length()));
+        assertThat(writer.toString(), containsString("transformed"));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.AbstractDotFileGenerator#declareNode(String, NodeIdentifier, String)}.
+     *
+     * @throws IOException when writing fails
+     */
+    @Test
+    public final void testDeclaredNodesWithoutEdgesAreNotGenerated() throws IOException {
+        final InMemoryGenerationListener listener = new InMemoryGenerationListener();
+        final AbstractDotFileGenerator generator = new AbstractDotFileGenerator() {
+            @Override
+            protected void generateInternal() {
+                declareNode("top", () -> "used", "cluster");
+                declareNode(null, () -> "target", null);
+                declareNode(null, () -> "orphan", "orphans");
+                declareNode(null, () -> "pinned", null);
+                pinNode(() -> "pinned").getAttributes().setAttribute("label", "pinned");
+                addEdge(() -> "used", () -> "target");
+                addEdge(() -> "used", () -> "target");
+                assertThat(getNode("orphan") == null, equalTo(true));
+                assertThrows(IllegalArgumentException.class, () -> addEdge(() -> "used", () -> "unknown"));
+            }
+        };
+        generator.setGenerationListener(listener);
+
+        final StringWriter writer = new StringWriter();
+        generator.generate(writer);
+
+        assertThat(listener.getStatistics().getNodes(), equalTo(3L));
+        assertThat(listener.getStatistics().getEdges(), equalTo(1L));
+        assertThat(listener.getStatistics().getClusters(), equalTo(1L));
+        assertThat(writer.toString(), containsString("rank=same"));
+        assertThat(writer.toString(), containsString("pinned"));
+        assertThat(writer.toString(), not(containsString("orphans")));
+    }
+
+    /**
+     * Generator creating two connected nodes.
+     *
+     * @author Dirk Weigenand
+     */
+    private static final class TestDotFileGenerator extends AbstractDotFileGenerator {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void generateInternal() {
+            addEdge(addNode(null, () -> "first", null), addNode(null, () -> "second", "cluster"));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void transformGraph(final Graph graph) {
+            graph.getAttributes().setAttribute("label", "transformed");
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void streamEdges(final EdgeSink sink) throws IOException {
+            sink.addEdge(getNode("second"), getNode("first"));
+        }
+    }
+}
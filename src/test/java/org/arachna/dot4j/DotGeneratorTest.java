@@ -3,8 +3,11 @@
  */
 package org.arachna.dot4j;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 import org.arachna.dot4j.model.Attributes;
@@ -251,4 +254,303 @@ public class DotGeneratorTest {
 
         assertThat(" [ font=\"Helvetica\" label=\"label\"]", equalTo(result));
     }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.DotGenerator#emitAttributes(org.arachna.dot4j.model.Attributes)}
+     * .
+     */
+    @Test
+    public final void testEmitHtmlLikeAttribute() {
+        final Attributes attributes = new Attributes();
+        attributes.setAttribute(LABEL, "<<b>label</b>>");
+
+        final String result = this.generator.emitAttributes(attributes);
+
+        assertThat(" [ label=<<b>label</b>>]", equalTo(result));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.DotGenerator#generate(java.io.Writer)}.
+     *
+     * @throws IOException when writing fails
+     */
+    @Test
+    public final void testGenerateOutputLargerThanBuffer() throws IOException {
+        final StringBuilder expected = new StringBuilder("digraph {\n");
+
+        for (int i = 0; i < 2000; i++) {
+            graph.newNode();
+            expected.append("node").append(i).append(";\n");
+        }
+
+        expected.append("}\n");
+
+        final StringWriter result = new StringWriter();
+        this.generator.generate(result);
+
+        assertThat(expected.toString(), equalTo(result.toString()));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.DotGenerator#generate(java.io.OutputStream)}.
+     *
+     * @throws IOException when writing fails
+     */
+    @Test
+    public final void testGenerateIntoOutputStreamEncodesUtf8() throws IOException {
+        final StringBuilder label = new StringBuilder();
+
+        for (int i = 0; i < 1000; i++) {
+            label.append("\u00e4\ud83d\ude00");
+        }
+
+        for (int i = 0; i < 50; i++) {
+            graph.newNode().getAttributes().setAttribute(LABEL, label.toString());
+        }
+
+        graph.newNode().getAttributes().setAttribute(LABEL, label.append(label).append(label).toString());
+
+        final StringWriter expected = new StringWriter();
+        this.generator.generate(expected);
+
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        this.generator.generate(result);
+
+        assertThat(expected.toString(), equalTo(result.toString(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.DotGenerator#generate(java.io.OutputStream)}
+     * generating another graph on the same thread while the output of the
+     * first one is still pending.
+     *
+     * @throws IOException when writing fails
+     */
+    @Test
+    public final void testNestedGenerationIntoOutputStreamsDoesNotShareBuffers() throws IOException {
+        for (int i = 0; i < 5000; i++) {
+            graph.newNode().getAttributes().setAttribute(LABEL, "outer node " + i);
+        }
+
+        final Graph inner = new Graph();
+
+        for (int i = 0; i < 5000; i++) {
+            inner.newNode().getAttributes().setAttribute(LABEL, "inner node " + i);
+        }
+
+        final DotGenerator innerGenerator = new DotGenerator(inner);
+        final ByteArrayOutputStream innerResult = new ByteArrayOutputStream();
+        final ByteArrayOutputStream result = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(final byte[] bytes, final int offset, final int length) {
+                super.write(bytes, offset, length);
+
+                if (innerResult.size() == 0) {
+                    try {
+                        innerGenerator.generate(innerResult);
+                    }
+                    catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        };
+
+        this.generator.generate(result);
+
+        final StringWriter expected = new StringWriter();
+        this.generator.generate(expected);
+        final StringWriter innerExpected = new StringWriter();
+        innerGenerator.generate(innerExpected);
+
+        assertThat(result.toString(StandardCharsets.UTF_8), equalTo(expected.toString()));
+        assertThat(innerResult.toString(StandardCharsets.UTF_8), equalTo(innerExpected.toString()));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.DotGenerator#setParallel(boolean)}.
+     *
+     * @throws IOException when writing fails
+     */
+    @Test
+    public final void testParallelGenerationEqualsSequentialGeneration() throws IOException {
+        addClusters(graph, 4);
+
+        final StringWriter expected = new StringWriter();
+        this.generator.generate(expected);
+
+        this.generator.setParallel(true);
+        final StringWriter result = new StringWriter();
+        this.generator.generate(result);
+
+        assertThat(expected.toString(), equalTo(result.toString()));
+    }
+
+    /**
+     * Add nested clusters with a few connected nodes to the given graph.
+     *
+     * @param parent graph to add clusters to
+     * @param depth  depth of nesting
+     */
+    private void addClusters(final Graph parent, final int depth) {
+        for (int i = 0; i < 3; i++) {
+            final Graph cluster = parent.newGraph();
+            cluster.getAttributes().setAttribute(LABEL, "cluster" + depth + i);
+            final Node start = cluster.newNode();
+            final Node end = cluster.newNode();
+            end.getAttributes().setAttribute(LABEL, LABEL);
+            cluster.newEdge(start, end);
+
+            if (depth > 0) {
+                addClusters(cluster, depth - 1);
+            }
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.DotGenerator#generate(java.io.Writer)}.
+     *
+     * @throws IOException when writing fails
+     */
+    @Test
+    public final void testGenerateEmitsClustersBeforeEdgesAndClusterDefaults() throws IOException {
+        final Node start = graph.newNode();
+        final Graph cluster = graph.newGraph();
+        cluster.getNodeAttributes().setAttribute("shape", "box");
+        final Node end = cluster.newNode();
+        graph.newEdge(start, end);
+
+        final StringWriter result = new StringWriter();
+        this.generator.generate(result);
+
+        assertThat("digraph {\nnode0;\nsubgraph cluster1 {\nnode  [ shape=\"box\"];node1;\n}\nnode0 -> node1;\n}\n",
+            equalTo(result.toString()));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.DotGenerator#setIncremental(boolean)}.
+     *
+     * @throws IOException when writing fails
+     */
+    @Test
+    public final void testIncrementalGenerationEqualsFullGeneration() throws IOException {
+        addClusters(graph, 2);
+        this.generator.setIncremental(true);
+        this.generator.generate(new StringWriter());
+
+        final Graph cluster = graph.getClusters().iterator().next();
+        final Node node = cluster.newNode();
+        node.getAttributes().setAttribute(LABEL, "changed");
+        graph.newEdge(graph.newNode(), node);
+        graph.getClusters().iterator().next().getNodes().iterator().next().getAttributes().setAttribute(LABEL, "x");
+        cluster.newGraph().newNode();
+
+        final StringWriter result = new StringWriter();
+        this.generator.generate(result);
+
+        final StringWriter expected = new StringWriter();
+        new DotGenerator(graph).generate(expected);
+
+        assertThat(expected.toString(), equalTo(result.toString()));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.DotGenerator#stream(java.io.Writer)}.
+     *
+     * @throws IOException when writing fails
+     */
+    @Test
+    public final void testStreamedEdgesEqualGeneratedEdges() throws IOException {
+        addClusters(graph, 2);
+        final Node start = graph.newNode();
+        final Node end = graph.getClusters().iterator().next().newNode();
+        final Attributes attributes = new Attributes();
+        attributes.setAttribute(LABEL, "streamed");
+
+        final StringWriter result = new StringWriter();
+
+        try (EdgeSink sink = this.generator.stream(result)) {
+            sink.addEdge(start, end, attributes);
+            sink.addEdge(end, start);
+            assertThat(sink.getEdgeCount(), equalTo(2L));
+        }
+
+        graph.newEdge(start, end).getAttributes().setAttribute(LABEL, "streamed");
+        graph.newEdge(end, start);
+
+        final StringWriter expected = new StringWriter();
+        new DotGenerator(graph).generate(expected);
+
+        assertThat(result.toString(), equalTo(expected.toString()));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.DotGenerator#stream(java.io.Writer, boolean)}.
+     *
+     * @throws IOException when writing fails
+     */
+    @Test
+    public final void testStreamDropsDuplicateEdges() throws IOException {
+        final Node start = graph.newNode();
+        final Node end = graph.newNode();
+        graph.newEdge(start, end);
+
+        final StringWriter result = new StringWriter();
+
+        try (EdgeSink sink = this.generator.stream(result, true)) {
+            assertThat(sink.addEdge(start, end), equalTo(false));
+            assertThat(sink.addEdge(end, start), equalTo(true));
+            assertThat(sink.addEdge(end, start), equalTo(false));
+            assertThat(sink.getEdgeCount(), equalTo(1L));
+        }
+
+        assertThat(result.toString(), equalTo("digraph {\nnode0;\nnode1;\nnode0 -> node1;\nnode1 -> node0;\n}\n"));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.DotGenerator#setGenerationListener(GenerationListener)}.
+     *
+     * @throws IOException when writing fails
+     */
+    @Test
+    public final void testGenerationListenerReceivesStatistics() throws IOException {
+        final Graph cluster = graph.newGraph();
+        cluster.getAttributes().setAttribute(LABEL, "cluster");
+        final Node start = graph.newNode();
+        final Node end = cluster.newNode();
+        end.getAttributes().setAttribute(LABEL, "\u00e4");
+        graph.newEdge(start, end).getAttributes().setAttribute("color", "red");
+
+        final InMemoryGenerationListener listener = new InMemoryGenerationListener();
+        this.generator.setGenerationListener(listener);
+
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        this.generator.generate(result);
+
+        final GenerationStatistics statistics = listener.getStatistics();
+        assertThat(statistics.getClusters(), equalTo(1L));
+        assertThat(statistics.getNodes(), equalTo(2L));
+        assertThat(statistics.getEdges(), equalTo(1L));
+        assertThat(statistics.getAttributes(), equalTo(3L));
+        assertThat(statistics.getBytes(), equalTo((long)result.size()));
+        assertThat(statistics.getCharacters(), equalTo((long)result.toString(StandardCharsets.UTF_8).length()));
+
+        try (EdgeSink sink = this.generator.stream(new StringWriter())) {
+            sink.addEdge(end, start);
+        }
+
+        assertThat(listener.getGenerations(), equalTo(2L));
+        assertThat(listener.getStatistics().getEdges(), equalTo(2L));
+        assertThat(listener.getStatistics().getBytes(), equalTo(-1L));
+    }
 }
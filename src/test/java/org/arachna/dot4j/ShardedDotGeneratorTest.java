@@ -0,0 +1,85 @@
+/**
+ *
+ */
+package org.arachna.dot4j;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.arachna.dot4j.model.Graph;
+import org.arachna.dot4j.model.GraphPartitioner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * JUnit tests for {@link ShardedDotGenerator}.
+ *
+ * @author Dirk Weigenand
+ */
+public class ShardedDotGeneratorTest {
+    /**
+     * directory for generated files.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.ShardedDotGenerator#generate(Path, String)}.
+     *
+     * @throws IOException when writing fails
+     */
+    @Test
+    public final void testGenerateWritesEveryShard() throws IOException {
+        final Graph graph = new Graph();
+
+        for (int i = 0; i < 4; i++) {
+            final Graph cluster = graph.newGraph();
+            cluster.newEdge(cluster.newNode(), cluster.newNode());
+        }
+
+        final List<Graph> shards = new GraphPartitioner(graph).partitionByCluster();
+        final List<Path> paths = new ShardedDotGenerator(shards).generate(directory, "shard");
+
+        assertThat(paths, hasSize(4));
+
+        for (int i = 0; i < paths.size(); i++) {
+            final StringWriter expected = new StringWriter();
+            new DotGenerator(shards.get(i)).generate(expected);
+
+            assertThat(paths.get(i).getFileName().toString(), equalTo("shard" + i + ".dot"));
+            assertThat(new String(Files.readAllBytes(paths.get(i)), StandardCharsets.UTF_8),
+                equalTo(expected.toString()));
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.ShardedDotGenerator#generate(Path, String)}
+     * with a shard that cannot be written.
+     *
+     * @throws IOException when creating the blocking directory fails
+     */
+    @Test
+    public final void testGenerateReportsFailedShard() throws IOException {
+        final Graph graph = new Graph();
+
+        for (int i = 0; i < 8; i++) {
+            graph.newGraph().newNode();
+        }
+
+        final List<Graph> shards = new GraphPartitioner(graph).partitionByCluster();
+        Files.createDirectory(directory.resolve("shard3.dot"));
+
+        assertThrows(IOException.class, () -> new ShardedDotGenerator(shards).generate(directory, "shard"));
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ *
+ */
+package org.arachna.dot4j.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.arachna.dot4j.AbstractDotFileGenerator;
+import org.arachna.dot4j.NodeIdentifier;
+import org.arachna.dot4j.model.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of building and generating a graph through
+ * {@link AbstractDotFileGenerator}, i.e. registering named nodes with
+ * <code>addNode</code>, connecting them with <code>addEdge</code> and writing
+ * the graph into a writer discarding its input.
+ *
+ * @author Dirk Weigenand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AbstractDotFileGeneratorBenchmark {
+    /**
+     * number of clusters the nodes are distributed over.
+     */
+    private static final int CLUSTERS = 64;
+
+    /**
+     * number of nodes per rank.
+     */
+    private static final int RANK_SIZE = 8;
+
+    /**
+     * number of registered nodes.
+     */
+    @Param({"1000", "100000"})
+    private int size;
+
+    /**
+     * whether nodes are registered from several threads.
+     */
+    @Param({"false", "true"})
+    private boolean parallel;
+
+    /**
+     * identifiers of the nodes.
+     */
+    private NodeIdentifier[] identifiers;
+
+    /**
+     * names of the clusters of the nodes.
+     */
+    private String[] clusterNames;
+
+    /**
+     * ranks of the nodes.
+     */
+    private String[] ranks;
+
+    /**
+     * Create the names of nodes, clusters and ranks.
+     */
+    @Setup
+    public void setUp() {
+        identifiers = new NodeIdentifier[size];
+        clusterNames = new String[size];
+        ranks = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            final String nodeName = "node" + i;
+            identifiers[i] = () -> nodeName;
+            clusterNames[i] = "cluster" + i % CLUSTERS;
+            ranks[i] = "rank" + i / (CLUSTERS * RANK_SIZE);
+        }
+    }
+
+    /**
+     * Register the nodes twice, connect every node with its successor and
+     * generate the graph.
+     *
+     * @throws IOException when writing fails
+     */
+    @Benchmark
+    public void generate() throws IOException {
+        new SyntheticDotFileGenerator().generate(Writer.nullWriter());
+    }
+
+    /**
+     * Generator registering the synthetic nodes.
+     *
+     * @author Dirk Weigenand
+     */
+    private final class SyntheticDotFileGenerator extends AbstractDotFileGenerator {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void generateInternal() {
+            final IntStream indexes = IntStream.range(0, size);
+
+            (parallel ? indexes.parallel() : indexes).forEach(i -> {
+                final Node node = addNode(ranks[i], identifiers[i], clusterNames[i]);
+                final int next = (i + 1) % size;
+                addEdge(node, addNode(ranks[next], identifiers[next], clusterNames[next]));
+            });
+        }
+    }
+}
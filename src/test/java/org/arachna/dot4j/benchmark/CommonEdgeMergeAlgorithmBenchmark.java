@@ -0,0 +1,87 @@
+/**
+ *
+ */
+package org.arachna.dot4j.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.arachna.dot4j.model.CommonEdgeMergeAlgorithm;
+import org.arachna.dot4j.model.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link CommonEdgeMergeAlgorithm#execute()}. The algorithm
+ * modifies the graph, so a fresh graph is created before every invocation;
+ * the graphs are large enough for the setup not to distort the measurement.
+ *
+ * @author Dirk Weigenand
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommonEdgeMergeAlgorithmBenchmark {
+    /**
+     * shape of the merged graph.
+     */
+    @Param({"WIDE", "DEEP", "DENSE", "RANK_HEAVY"})
+    private GraphShape shape;
+
+    /**
+     * number of nodes of the merged graph.
+     */
+    @Param({"10000", "100000"})
+    private int size;
+
+    /**
+     * the graph to merge edges of.
+     */
+    private Graph graph;
+
+    /**
+     * Create the graph to merge edges of.
+     */
+    @Setup(Level.Invocation)
+    public void setUp() {
+        graph = shape.create(size);
+    }
+
+    /**
+     * Merge the edges sequentially.
+     *
+     * @return the merged graph.
+     */
+    @Benchmark
+    public Graph execute() {
+        new CommonEdgeMergeAlgorithm(graph).execute();
+
+        return graph;
+    }
+
+    /**
+     * Merge the edges grouping them in parallel.
+     *
+     * @return the merged graph.
+     */
+    @Benchmark
+    public Graph executeParallel() {
+        final CommonEdgeMergeAlgorithm algorithm = new CommonEdgeMergeAlgorithm(graph);
+        algorithm.setParallel(true);
+        algorithm.execute();
+
+        return graph;
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ *
+ */
+package org.arachna.dot4j.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.arachna.dot4j.DotGenerator;
+import org.arachna.dot4j.model.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link DotGenerator#generate(Writer)} writing synthetic graphs
+ * into a writer discarding its input, so only rendering is measured. Run with
+ * <code>-prof gc</code> to report allocation rates, see <code>pom.xml</code>.
+ *
+ * @author Dirk Weigenand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DotGeneratorBenchmark {
+    /**
+     * shape of the generated graph.
+     */
+    @Param({"WIDE", "DEEP", "DENSE", "RANK_HEAVY"})
+    private GraphShape shape;
+
+    /**
+     * number of nodes of the generated graph.
+     */
+    @Param({"1000", "100000"})
+    private int size;
+
+    /**
+     * the graph to generate.
+     */
+    private Graph graph;
+
+    /**
+     * Create the graph to generate.
+     */
+    @Setup
+    public void setUp() {
+        graph = shape.create(size);
+    }
+
+    /**
+     * Generate the graph sequentially.
+     *
+     * @throws IOException when writing fails
+     */
+    @Benchmark
+    public void generate() throws IOException {
+        new DotGenerator(graph).generate(Writer.nullWriter());
+    }
+
+    /**
+     * Generate the graph rendering clusters in parallel.
+     *
+     * @throws IOException when writing fails
+     */
+    @Benchmark
+    public void generateParallel() throws IOException {
+        final DotGenerator generator = new DotGenerator(graph);
+        generator.setParallel(true);
+        generator.generate(Writer.nullWriter());
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ *
+ */
+package org.arachna.dot4j.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.arachna.dot4j.DotGenerator;
+import org.arachna.dot4j.model.DotParser;
+import org.arachna.dot4j.model.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link DotParser#parse()} reading the generated
+ * <code>.dot</code> representation of synthetic graphs from memory.
+ *
+ * @author Dirk Weigenand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DotParserBenchmark {
+    /**
+     * shape of the parsed graph.
+     */
+    @Param({"WIDE", "DEEP", "DENSE", "RANK_HEAVY"})
+    private GraphShape shape;
+
+    /**
+     * number of nodes of the parsed graph.
+     */
+    @Param({"1000", "100000"})
+    private int size;
+
+    /**
+     * the <code>.dot</code> representation to parse.
+     */
+    private String dot;
+
+    /**
+     * Generate the <code>.dot</code> representation to parse.
+     *
+     * @throws IOException when generating fails
+     */
+    @Setup
+    public void setUp() throws IOException {
+        final StringWriter writer = new StringWriter();
+        new DotGenerator(shape.create(size)).generate(writer);
+        dot = writer.toString();
+    }
+
+    /**
+     * Parse the <code>.dot</code> representation.
+     *
+     * @return the parsed graph.
+     * @throws IOException when parsing fails
+     */
+    @Benchmark
+    public Graph parse() throws IOException {
+        return new DotParser(new StringReader(dot)).parse();
+    }
+}
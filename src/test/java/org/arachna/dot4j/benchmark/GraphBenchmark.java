@@ -0,0 +1,102 @@
+/**
+ *
+ */
+package org.arachna.dot4j.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.arachna.dot4j.model.Edge;
+import org.arachna.dot4j.model.Graph;
+import org.arachna.dot4j.model.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of building the graph model: creating whole synthetic graphs and
+ * creating or looking up edges with {@link Graph#newEdge(Node, Node)}.
+ *
+ * @author Dirk Weigenand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBenchmark {
+    /**
+     * shape of the created graph.
+     */
+    @Param({"WIDE", "DEEP", "DENSE", "RANK_HEAVY"})
+    private GraphShape shape;
+
+    /**
+     * number of nodes of the created graph.
+     */
+    @Param({"1000", "100000"})
+    private int size;
+
+    /**
+     * a graph whose edges are looked up again.
+     */
+    private Graph graph;
+
+    /**
+     * start nodes of the edges of the top level graph.
+     */
+    private Node[] startNodes;
+
+    /**
+     * end nodes of the edges of the top level graph.
+     */
+    private Node[] endNodes;
+
+    /**
+     * Create the graph whose edges are looked up again.
+     */
+    @Setup
+    public void setUp() {
+        graph = shape.create(size);
+        startNodes = new Node[graph.getEdges().size()];
+        endNodes = new Node[startNodes.length];
+        int i = 0;
+
+        for (final Edge edge : graph.getEdges()) {
+            startNodes[i] = edge.getStartNode();
+            endNodes[i++] = edge.getEndNode();
+        }
+    }
+
+    /**
+     * Create a graph of the configured shape.
+     *
+     * @return the created graph.
+     */
+    @Benchmark
+    public Graph create() {
+        return shape.create(size);
+    }
+
+    /**
+     * Add the edges of the top level graph again, measuring the lookup of
+     * existing edges.
+     *
+     * @param blackhole sink for the found edges.
+     */
+    @Benchmark
+    public void newExistingEdge(final Blackhole blackhole) {
+        for (int i = 0; i < startNodes.length; i++) {
+            blackhole.consume(graph.newEdge(startNodes[i], endNodes[i]));
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ *
+ */
+package org.arachna.dot4j.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.arachna.dot4j.model.Graph;
+import org.arachna.dot4j.model.Node;
+
+/**
+ * Shapes of the synthetic graphs used by the benchmarks. Every shape creates
+ * a graph with the requested number of nodes; edges and clusters depend on the
+ * shape. Random edges are drawn from a fixed seed, so every run creates the
+ * same graph.
+ *
+ * @author Dirk Weigenand
+ */
+public enum GraphShape {
+    /**
+     * all nodes in the top level graph, each connected to its successor and
+     * a random node.
+     */
+    WIDE {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        void populate(final Graph graph, final int size, final Random random) {
+            final List<Node> nodes = newNodes(graph, size);
+
+            for (int i = 0; i < size; i++) {
+                graph.newEdge(nodes.get(i), nodes.get((i + 1) % size));
+                graph.newEdge(nodes.get(i), nodes.get(random.nextInt(size)));
+            }
+        }
+    },
+
+    /**
+     * chains of {@value #DEPTH} nested clusters with {@value #CLUSTER_SIZE}
+     * nodes each. Every node is connected to its successor and to one of
+     * {@value #HUBS} hub nodes in the top level graph, the edges belonging to
+     * the cluster of their start node.
+     */
+    DEEP {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        void populate(final Graph graph, final int size, final Random random) {
+            final List<Node> hubs = newNodes(graph, Math.min(HUBS, size));
+            Graph cluster = graph;
+            Node previous = null;
+
+            for (int i = hubs.size(); i < size; i++) {
+                if ((i - hubs.size()) % CLUSTER_SIZE == 0) {
+                    cluster = depth(cluster) < DEPTH ? cluster.newGraph() : graph.newGraph();
+                }
+
+                final Node node = cluster.newNode();
+
+                if (previous != null) {
+                    cluster.newEdge(previous, node);
+                }
+
+                cluster.newEdge(node, hubs.get(random.nextInt(hubs.size())));
+                previous = node;
+            }
+        }
+    },
+
+    /**
+     * all nodes in the top level graph, each connected to {@value #DEGREE}
+     * random nodes.
+     */
+    DENSE {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        void populate(final Graph graph, final int size, final Random random) {
+            final List<Node> nodes = newNodes(graph, size);
+
+            for (final Node node : nodes) {
+                for (int i = 0; i < DEGREE; i++) {
+                    graph.newEdge(node, nodes.get(random.nextInt(size)));
+                }
+            }
+        }
+    },
+
+    /**
+     * nodes spread over the top level graph and {@value #CLUSTERS} clusters,
+     * every {@value #CLUSTER_SIZE} consecutive nodes of a graph sharing a rank.
+     * Every node is connected to its successor and a random node.
+     */
+    RANK_HEAVY {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        void populate(final Graph graph, final int size, final Random random) {
+            final Graph[] graphs = new Graph[CLUSTERS + 1];
+            graphs[0] = graph;
+
+            for (int i = 1; i < graphs.length; i++) {
+                graphs[i] = graph.newGraph();
+            }
+
+            final List<Node> nodes = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                final Graph owner = graphs[i % graphs.length];
+                final Node node = owner.newNode();
+                owner.rank("rank" + i / (graphs.length * CLUSTER_SIZE), node);
+                nodes.add(node);
+            }
+
+            for (int i = 0; i < size; i++) {
+                graph.newEdge(nodes.get(i), nodes.get((i + 1) % size));
+                graph.newEdge(nodes.get(i), nodes.get(random.nextInt(size)));
+            }
+        }
+    };
+
+    /**
+     * nesting depth of the clusters of {@link #DEEP} graphs.
+     */
+    static final int DEPTH = 32;
+
+    /**
+     * number of nodes per cluster or rank.
+     */
+    static final int CLUSTER_SIZE = 8;
+
+    /**
+     * number of hub nodes of {@link #DEEP} graphs.
+     */
+    static final int HUBS = 16;
+
+    /**
+     * number of outgoing edges per node of {@link #DENSE} graphs.
+     */
+    static final int DEGREE = 16;
+
+    /**
+     * number of clusters of {@link #RANK_HEAVY} graphs.
+     */
+    static final int CLUSTERS = 4;
+
+    /**
+     * seed of the random edges.
+     */
+    private static final long SEED = 4711L;
+
+    /**
+     * Create a graph of this shape.
+     *
+     * @param size number of nodes of the graph.
+     * @return the created graph.
+     */
+    public Graph create(final int size) {
+        final Graph graph = new Graph();
+        graph.getAttributes().setAttribute("rankdir", "LR");
+        graph.getNodeAttributes().setAttribute("shape", "record");
+        populate(graph, size, new Random(SEED));
+
+        return graph;
+    }
+
+    /**
+     * Add nodes and edges of this shape to the given graph.
+     *
+     * @param graph  graph to populate.
+     * @param size   number of nodes to create.
+     * @param random source of random edges.
+     */
+    abstract void populate(Graph graph, int size, Random random);
+
+    /**
+     * Create the given number of nodes in the given graph.
+     *
+     * @param graph graph to create the nodes in.
+     * @param size  number of nodes to create.
+     * @return the created nodes.
+     */
+    private static List<Node> newNodes(final Graph graph, final int size) {
+        final List<Node> nodes = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            final Node node = graph.newNode();
+            node.getAttributes().setAttribute("label", "node " + i);
+            nodes.add(node);
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Return the nesting depth of the given cluster.
+     *
+     * @param cluster cluster to determine the depth of.
+     * @return the number of enclosing graphs.
+     */
+    private static int depth(final Graph cluster) {
+        int depth = 0;
+
+        for (Graph parent = cluster.getParent(); parent != null; parent = parent.getParent()) {
+            depth++;
+        }
+
+        return depth;
+    }
+}
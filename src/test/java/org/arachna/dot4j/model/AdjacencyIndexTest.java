@@ -0,0 +1,79 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * JUnit test case for {@link AdjacencyIndex}.
+ *
+ * @author Dirk Weigenand
+ */
+public class AdjacencyIndexTest {
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.AdjacencyIndex#getSuccessors(Node)}.
+     */
+    @Test
+    public final void testNeighboursAndDegreesAcrossClusters() {
+        final Graph graph = new Graph();
+        final Graph cluster = graph.newGraph();
+        final Node first = graph.newNode();
+        final Node second = cluster.newNode();
+        final Node third = cluster.newNode();
+        final Node isolated = graph.newNode();
+        final Edge firstToSecond = graph.newEdge(first, second);
+        final Edge firstToThird = graph.newEdge(first, third);
+        final Edge secondToThird = cluster.newEdge(second, third);
+
+        final AdjacencyIndex adjacency = graph.getAdjacency();
+
+        assertThat(adjacency.getOutDegree(first), equalTo(2));
+        assertThat(adjacency.getInDegree(third), equalTo(2));
+        assertThat(adjacency.getInDegree(first), equalTo(0));
+        assertThat(adjacency.getOutDegree(isolated), equalTo(0));
+        assertThat(adjacency.getSuccessors(first), equalTo(Arrays.asList(second, third)));
+        assertThat(adjacency.getPredecessors(third), equalTo(Arrays.asList(first, second)));
+        assertThat(adjacency.getOutgoingEdges(first), equalTo(Arrays.asList(firstToSecond, firstToThird)));
+        assertThat(adjacency.getIncomingEdges(third), equalTo(Arrays.asList(firstToThird, secondToThird)));
+        assertThat(adjacency.getSuccessors(isolated), equalTo(Collections.emptyList()));
+        assertThat(cluster.getAdjacency().getPredecessors(second), equalTo(Collections.emptyList()));
+    }
+
+    /**
+     * Test method for {@link org.arachna.dot4j.model.Graph#getAdjacency()}.
+     */
+    @Test
+    public final void testIndexIsRebuiltOnlyWhenTopologyChanges() {
+        final Graph graph = new Graph();
+        final Graph cluster = graph.newGraph();
+        final Node first = graph.newNode();
+        final Node second = cluster.newNode();
+        final Edge edge = cluster.newEdge(first, second);
+
+        final AdjacencyIndex adjacency = graph.getAdjacency();
+        edge.getAttributes().setAttribute("color", "red");
+        graph.newNode();
+
+        assertThat(graph.getAdjacency(), sameInstance(adjacency));
+
+        edge.setEndNode(first);
+
+        assertThat(graph.getAdjacency(), not(sameInstance(adjacency)));
+        assertThat(graph.getAdjacency().getInDegree(second), equalTo(0));
+        assertThat(graph.getAdjacency().getSuccessors(first), equalTo(Arrays.asList(first)));
+
+        cluster.removeEdge(edge);
+
+        assertThat(graph.getAdjacency().getOutDegree(first), equalTo(0));
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.arachna.dot4j.model.Attributes.Attribute;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * JUnit test case for {@link Attributes}.
+ *
+ * @author Dirk Weigenand
+ */
+public class AttributesTest {
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.Attributes#setAttribute(String, String)}.
+     */
+    @Test
+    public final void testSetAttributeReplacesValue() {
+        final Attributes attributes = new Attributes();
+        attributes.setAttribute("label", "first");
+        attributes.setAttribute("label", "second");
+
+        assertThat(attributes.size(), equalTo(1));
+        assertThat(attributes.getAttribute("label").getValue(), equalTo("second"));
+        assertThat(attributes.getAttribute("shape"), nullValue());
+    }
+
+    /**
+     * Test method for {@link org.arachna.dot4j.model.Attributes#iterator()}.
+     */
+    @Test
+    public final void testIteratorReturnsAttributesSortedByName() {
+        final Attributes attributes = new Attributes();
+        attributes.setAttribute("shape", "record");
+        attributes.setAttribute("fontsize", "12");
+        attributes.setAttribute("label", "label");
+
+        assertThat(names(attributes), contains("fontsize", "label", "shape"));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.Attributes#setAttributes(Attributes)}.
+     */
+    @Test
+    public final void testSharedAttributesAreCopiedOnWrite() {
+        final Attributes style = new Attributes();
+        style.setAttribute("shape", "record");
+
+        final Attributes attributes = new Attributes();
+        attributes.setAttributes(style);
+        attributes.setAttribute("label", "label");
+
+        assertThat(names(style), contains("shape"));
+        assertThat(names(attributes), contains("label", "shape"));
+    }
+
+    /**
+     * Test method for {@link org.arachna.dot4j.model.AttributeSet#toString()}.
+     */
+    @Test
+    public final void testAttributeSetToStringListsNamesAndValues() {
+        final Attributes attributes = new Attributes();
+        attributes.setAttribute("shape", "record");
+        attributes.setAttribute("color", "red");
+
+        assertThat(attributes.getAttributeSet().toString(), equalTo("{color=red, shape=record}"));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.Attributes#setAttribute(String, String)}
+     * interning only attribute sets reached repeatedly.
+     */
+    @Test
+    public final void testRepeatedlySetAttributesShareTheirAttributeSet() {
+        final Attributes first = new Attributes();
+        first.setAttribute("fontname", "Courier");
+        first.setAttribute("label", "first");
+
+        final Attributes second = new Attributes();
+        second.setAttribute("fontname", "Courier");
+        second.setAttribute("label", "second");
+
+        final Attributes third = new Attributes();
+        third.setAttribute("fontname", "Courier");
+
+        assertThat(second.getAttributeSet(), not(sameInstance(first.getAttributeSet())));
+        assertThat(third.getAttributeSet(), sameInstance(second.getAttributeSet().without("label")));
+    }
+
+    /**
+     * Collect the names of the given attributes.
+     *
+     * @param attributes attributes to collect the names of
+     * @return attribute names in iteration order
+     */
+    private List<String> names(final Attributes attributes) {
+        final List<String> names = new ArrayList<>();
+
+        for (final Attribute attribute : attributes) {
+            names.add(attribute.getName());
+        }
+
+        return names;
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * JUnit test case for {@link CommonAttributeHoistingAlgorithm}.
+ *
+ * @author Dirk Weigenand
+ */
+public class CommonAttributeHoistingAlgorithmTest {
+    /**
+     * algorithm instance under test.
+     */
+    private CommonAttributeHoistingAlgorithm algorithm;
+
+    /**
+     * graph instance to use throughout testing.
+     */
+    private Graph graph;
+
+    @BeforeEach
+    public void setUp() {
+        this.graph = new Graph();
+        this.algorithm = new CommonAttributeHoistingAlgorithm(graph);
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.CommonAttributeHoistingAlgorithm#execute()}.
+     */
+    @Test
+    public final void testExecuteHoistsAttributesSharedByAllNodes() {
+        final Node first = newNode(graph, "record", "first");
+        final Node second = newNode(graph.newGraph(), "record", "second");
+        graph.newEdge(first, second);
+
+        algorithm.execute();
+
+        assertThat(value(graph.getNodeAttributes(), "shape"), equalTo("record"));
+        assertThat(first.getAttributes().getAttribute("shape"), nullValue());
+        assertThat(second.getAttributes().getAttribute("shape"), nullValue());
+        assertThat(value(second.getAttributes(), "label"), equalTo("second"));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.CommonAttributeHoistingAlgorithm#execute()}.
+     */
+    @Test
+    public final void testExecuteHoistsAttributesIntoClusters() {
+        final Graph cluster = graph.newGraph();
+        final Node first = newNode(cluster, "box", "first");
+        final Node second = newNode(cluster, "box", "second");
+        newNode(graph, "record", "third");
+        graph.newEdge(first, second);
+
+        algorithm.execute();
+
+        assertThat(value(cluster.getNodeAttributes(), "shape"), equalTo("box"));
+        assertThat(first.getAttributes().getAttribute("shape"), nullValue());
+        assertThat(graph.getNodeAttributes().getAttribute("shape"), nullValue());
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.CommonAttributeHoistingAlgorithm#execute()}.
+     */
+    @Test
+    public final void testExecuteKeepsAttributesOfClustersReferencedFromOtherClusters() {
+        final Graph cluster = graph.newGraph();
+        final Graph other = graph.newGraph();
+        final Node first = newNode(cluster, "box", "first");
+        newNode(cluster, "box", "second");
+        final Node third = newNode(other, "record", "third");
+        other.newEdge(third, first);
+
+        algorithm.execute();
+
+        assertThat(cluster.getNodeAttributes().getAttribute("shape"), nullValue());
+        assertThat(value(first.getAttributes(), "shape"), equalTo("box"));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.CommonAttributeHoistingAlgorithm#execute()}.
+     */
+    @Test
+    public final void testExecuteKeepsAttributesOverriddenByNestedDefaults() {
+        final Graph cluster = graph.newGraph();
+        cluster.getNodeAttributes().setAttribute("shape", "box");
+        final Node first = newNode(graph, "record", "first");
+        final Node second = newNode(cluster, "record", "second");
+
+        algorithm.execute();
+
+        assertThat(graph.getNodeAttributes().getAttribute("shape"), nullValue());
+        assertThat(value(first.getAttributes(), "shape"), equalTo("record"));
+        assertThat(value(second.getAttributes(), "shape"), equalTo("record"));
+    }
+
+    /**
+     * Create a node with the given shape and label.
+     *
+     * @param parent graph to create the node in
+     * @param shape  shape of the node
+     * @param label  label of the node
+     * @return the new node
+     */
+    private Node newNode(final Graph parent, final String shape, final String label) {
+        final Node node = parent.newNode();
+        node.getAttributes().setAttribute("shape", shape);
+        node.getAttributes().setAttribute("label", label);
+
+        return node;
+    }
+
+    /**
+     * Return the value of the given attribute.
+     *
+     * @param attributes attributes to look the value up in
+     * @param name       name of the attribute
+     * @return the value of the attribute
+     */
+    private String value(final Attributes attributes, final String name) {
+        return attributes.getAttribute(name).getValue();
+    }
+}
@@ -3,10 +3,17 @@
  */
 package org.arachna.dot4j.model;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
 import static org.hamcrest.collection.IsEmptyCollection.empty;
@@ -83,4 +90,126 @@ public class CommonEdgeMergeAlgorithmTest {
         assertThat(graph.getEdges(), hasItem(edge1));
         assertThat(graph.getEdges(), hasSize(3));
     }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.CommonEdgeMergeAlgorithm#execute()}.
+     */
+    @Test
+    public final void testExecuteMergesEdgesFromDifferentClustersIntoInvisibleCluster() {
+        final Graph first = graph.newGraph();
+        final Graph second = graph.newGraph();
+        final Graph third = graph.newGraph();
+        final Node target = third.newNode();
+        final Edge edge0 = graph.newEdge(first.newNode(), target);
+        final Edge edge1 = graph.newEdge(first.newNode(), target);
+        final Edge edge2 = graph.newEdge(second.newNode(), target);
+
+        algorithm.execute();
+
+        final Node intermediate = edge0.getEndNode();
+        assertThat(edge1.getEndNode(), sameInstance(intermediate));
+        assertThat(intermediate.getGraph(), sameInstance(first));
+        assertThat(graph.getClusters(), hasSize(4));
+
+        final Node merged = edge2.getEndNode();
+        assertThat(merged.getGraph().getEdges(), hasSize(1));
+        assertThat(merged.getGraph().getEdges().iterator().next().getEndNode(), sameInstance(target));
+        assertThat(graph.getEdges().stream().filter(edge -> edge.getStartNode() == intermediate)
+            .allMatch(edge -> edge.getEndNode() == merged), equalTo(true));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.CommonEdgeMergeAlgorithm#setParallel(boolean)}.
+     */
+    @Test
+    public final void testParallelExecutionEqualsSequentialExecution() {
+        final Graph sequential = newLargeGraph();
+        new CommonEdgeMergeAlgorithm(sequential).execute();
+
+        final Graph parallel = newLargeGraph();
+        final CommonEdgeMergeAlgorithm parallelAlgorithm = new CommonEdgeMergeAlgorithm(parallel);
+        parallelAlgorithm.setParallel(true);
+        parallelAlgorithm.execute();
+
+        assertThat(describe(parallel, new StringBuilder()).toString(),
+            equalTo(describe(sequential, new StringBuilder()).toString()));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.CommonEdgeMergeAlgorithm#collectEdgesToSameNode(Graph)}
+     * and
+     * {@link org.arachna.dot4j.model.CommonEdgeMergeAlgorithm#mergeEdgesWithSameTargetAndSameOriginatingGraph(java.util.Map)}.
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public final void testCollectAndMergeEdgesWithSameTargetAndSameOriginatingGraph() {
+        final Graph cluster = graph.newGraph();
+        final Node target = graph.newGraph().newNode();
+        final Edge edge0 = graph.newEdge(cluster.newNode(), target);
+        final Edge edge1 = graph.newEdge(cluster.newNode(), target);
+
+        final Map<Graph, Map<Node, Collection<Edge>>> collected = algorithm.collectEdgesToSameNode(graph);
+        assertThat(collected.get(cluster).get(target), hasSize(2));
+
+        final Map<Node, Collection<Edge>> merged = algorithm.mergeEdgesWithSameTargetAndSameOriginatingGraph(collected);
+        assertThat(merged.get(target), hasSize(1));
+        assertThat(edge1.getEndNode(), sameInstance(edge0.getEndNode()));
+        assertThat(merged.get(target).iterator().next().getStartNode(), sameInstance(edge0.getEndNode()));
+    }
+
+    /**
+     * Create a graph with enough edges between clusters to be grouped in
+     * several chunks.
+     *
+     * @return a graph with many edges between clusters
+     */
+    private Graph newLargeGraph() {
+        final Graph root = new Graph();
+        final List<Node> nodes = new ArrayList<Node>();
+
+        for (int i = 0; i < 50; i++) {
+            final Graph cluster = root.newGraph();
+
+            for (int j = 0; j < 40; j++) {
+                nodes.add(cluster.newNode());
+            }
+        }
+
+        for (int i = 0; i < 40000; i++) {
+            root.newEdge(nodes.get(i * 31 % nodes.size()), nodes.get(i * 17 % 97));
+        }
+
+        return root;
+    }
+
+    /**
+     * Describe the structure of the given graph and its clusters.
+     *
+     * @param current
+     *            graph to describe
+     * @param description
+     *            builder to append the description to
+     * @return the given builder
+     */
+    private StringBuilder describe(final Graph current, final StringBuilder description) {
+        description.append(current.getId()).append('{');
+
+        for (final Node node : current.getNodes()) {
+            description.append(node.getId()).append(';');
+        }
+
+        for (final Edge edge : current.getEdges()) {
+            description.append(edge.getStartNode().getId()).append("->").append(edge.getEndNode().getId())
+                .append(';');
+        }
+
+        for (final Graph cluster : current.getClusters()) {
+            describe(cluster, description);
+        }
+
+        return description.append('}');
+    }
 }
@@ -0,0 +1,230 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.arachna.dot4j.DotGenerator;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * JUnit test case for {@link DotParser}.
+ *
+ * @author Dirk Weigenand
+ */
+public class DotParserTest {
+    /**
+     * Test method for {@link org.arachna.dot4j.model.DotParser#parse()}.
+     *
+     * @throws IOException
+     *             when generating or parsing fails
+     */
+    @Test
+    public final void testParseGeneratedGraphEqualsOriginal() throws IOException {
+        final Graph graph = new Graph();
+        graph.getAttributes().setAttribute("rankdir", "LR");
+        graph.getNodeAttributes().setAttribute("shape", "record");
+        graph.getEdgeAttributes().setAttribute("color", "blue");
+
+        final Graph cluster = graph.newGraph();
+        cluster.getAttributes().setAttribute("label", "cluster");
+        cluster.getNodeAttributes().setAttribute("fontsize", "10");
+
+        final Node first = graph.newNode();
+        first.getAttributes().setAttribute("label", "<<b>first</b>>");
+
+        final Node second = cluster.newNode();
+        second.getAttributes().setAttribute("label", "second");
+
+        final Node third = cluster.newNode();
+        cluster.rank("same", second);
+        cluster.rank("same", third);
+
+        graph.newEdge(first, second).getAttributes().setAttribute("style", "dashed");
+        cluster.newEdge(second, third);
+        cluster.newEdge(third, first);
+
+        final String expected = generate(graph);
+
+        assertThat(generate(parse(expected)), equalTo(expected));
+    }
+
+    /**
+     * Test method for {@link org.arachna.dot4j.model.DotParser#parse()}.
+     *
+     * @throws IOException
+     *             when parsing fails
+     */
+    @Test
+    public final void testParseForeignGraph() throws IOException {
+        final Graph graph = parse("/* generated elsewhere */\n" + "strict digraph G {\n"
+            + "  node [shape=box];\n" + "  a -> b -> \"c d\" [color=red, label=\"multi\" + \"part\"];\n"
+            + "  subgraph cluster_x { label=\"X\"; b; }\n" + "  { rank=same; a; e [label=\"E\"] }\n"
+            + "  // trailing comment\n" + "}\n");
+
+        final List<Node> nodes = new ArrayList<>(graph.getNodes());
+        assertThat(nodes, hasSize(3));
+        assertThat(label(nodes.get(0)), equalTo("a"));
+        assertThat(label(nodes.get(1)), equalTo("c d"));
+        assertThat(label(nodes.get(2)), equalTo("E"));
+        assertThat(graph.getNodeAttributes().getAttribute("shape").getValue(), equalTo("box"));
+
+        final Collection<Edge> edges = graph.getEdges();
+        assertThat(edges, hasSize(2));
+
+        for (final Edge edge : edges) {
+            assertThat(edge.getAttributes().getAttribute("label").getValue(), equalTo("multipart"));
+        }
+
+        final Graph cluster = graph.getClusters().iterator().next();
+        assertThat(cluster.getAttributes().getAttribute("label").getValue(), equalTo("X"));
+        assertThat(cluster.getNodes(), hasSize(1));
+        assertThat(label(cluster.getNodes().iterator().next()), equalTo("b"));
+        assertThat(graph.getRankedNodes().values().iterator().next(), hasSize(2));
+    }
+
+    /**
+     * Test method for {@link org.arachna.dot4j.model.DotParser#parse()} with
+     * nodes declared in clusters after edges referring to them, the order
+     * written by earlier versions of {@link DotGenerator}.
+     *
+     * @throws IOException
+     *             when parsing fails
+     */
+    @Test
+    public final void testParseMovesNodesIntoInnermostClusterDeclaringThem() throws IOException {
+        final Graph graph = parse("digraph {\n" + "node0;\n" + "node0 -> node1;\n" + "node1 -> node2;\n"
+            + "node2 -> node3;\n" + "subgraph cluster1 {\n" + "node1 [ label=\"one\"];\n" + "node1 -> node2;\n"
+            + "subgraph cluster2 {\n" + "\n{\nrank=same;\nnode2;\nnode3;\n\n}\n" + "}\n" + "}\n" + "}\n");
+
+        assertThat(ids(graph.getNodes()), equalTo(List.of(0L)));
+        assertThat(graph.getEdges(), hasSize(3));
+
+        final Graph cluster1 = graph.getClusters().iterator().next();
+        assertThat(cluster1.getId().getValue(), equalTo(1L));
+        assertThat(ids(cluster1.getNodes()), equalTo(List.of(1L)));
+        assertThat(label(cluster1.getNodes().iterator().next()), equalTo("one"));
+        assertThat(cluster1.getEdges(), hasSize(1));
+
+        final Graph cluster2 = cluster1.getClusters().iterator().next();
+        assertThat(ids(cluster2.getNodes()), equalTo(List.of(2L, 3L)));
+        assertThat(ids(cluster2.getRankedNodes().values().iterator().next()), equalTo(List.of(2L, 3L)));
+
+        final Graph moved = parse("digraph { a -> b; subgraph cluster1 { b; } }");
+        assertThat(moved.getNodes(), hasSize(1));
+        assertThat(label(moved.getClusters().iterator().next().getNodes().iterator().next()), equalTo("b"));
+    }
+
+    /**
+     * Test method for {@link org.arachna.dot4j.model.DotParser#parse()}.
+     *
+     * @throws IOException
+     *             when parsing fails
+     */
+    @Test
+    public final void testParseQuotedAndUnquotedNodeNamesResolveToSameNode() throws IOException {
+        final Graph graph = parse("digraph { \"node5\" -> node6; node5 -> \"node6\"; \"node5\" [label=\"five\"]; }");
+
+        assertThat(ids(graph.getNodes()), equalTo(List.of(5L, 6L)));
+        assertThat(graph.getEdges(), hasSize(1));
+        assertThat(label(graph.getNodes().iterator().next()), equalTo("five"));
+    }
+
+    /**
+     * Test method for {@link org.arachna.dot4j.model.DotParser#parse()}.
+     *
+     * @throws IOException
+     *             when generating or parsing fails
+     */
+    @Test
+    public final void testParseKeepsEscapedQuotes() throws IOException {
+        final Graph graph = parse("digraph { a [label=\"say \\\"hi\\\"\"]; }");
+        final String generated = generate(graph);
+
+        assertThat(label(graph.getNodes().iterator().next()), equalTo("say \\\"hi\\\""));
+        assertThat(generated, containsString("label=\"say \\\"hi\\\"\""));
+        assertThat(generate(parse(generated)), equalTo(generated));
+    }
+
+    /**
+     * Test method for {@link org.arachna.dot4j.model.DotParser#parse()}.
+     */
+    @Test
+    public final void testParseInvalidGraphReportsLine() {
+        final IOException exception =
+            assertThrows(IOException.class, () -> parse("digraph {\n  node1 -> ;\n}\n"));
+
+        assertThat(exception.getMessage(), containsString("line 2"));
+        assertThrows(IOException.class, () -> parse("graph { a -- b }"));
+        assertThrows(IOException.class, () -> parse("digraph { a -> b "));
+    }
+
+    /**
+     * Parse the given <code>.dot</code> representation.
+     *
+     * @param dot
+     *            <code>.dot</code> representation of a graph
+     * @return the parsed graph
+     * @throws IOException
+     *             when parsing fails
+     */
+    private Graph parse(final String dot) throws IOException {
+        return new DotParser(new StringReader(dot)).parse();
+    }
+
+    /**
+     * Generate the given graph.
+     *
+     * @param graph
+     *            graph to generate
+     * @return the generated <code>.dot</code> file
+     * @throws IOException
+     *             when generating fails
+     */
+    private String generate(final Graph graph) throws IOException {
+        final StringWriter writer = new StringWriter();
+        new DotGenerator(graph).generate(writer);
+
+        return writer.toString();
+    }
+
+    /**
+     * Return the ids of the given nodes.
+     *
+     * @param nodes
+     *            nodes to get the ids of
+     * @return the ids of the nodes in iteration order
+     */
+    private List<Long> ids(final Collection<Node> nodes) {
+        final List<Long> ids = new ArrayList<>();
+
+        for (final Node node : nodes) {
+            ids.add(node.getId().getValue());
+        }
+
+        return ids;
+    }
+
+    /**
+     * Return the label of the given node.
+     *
+     * @param node
+     *            node to get the label of
+     * @return the label of the node
+     */
+    private String label(final Node node) {
+        return node.getAttributes().getAttribute("label").getValue();
+    }
+}
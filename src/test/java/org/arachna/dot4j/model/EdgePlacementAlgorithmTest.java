@@ -0,0 +1,69 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * JUnit test case for {@link EdgePlacementAlgorithm}.
+ *
+ * @author Dirk Weigenand
+ */
+public class EdgePlacementAlgorithmTest {
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.EdgePlacementAlgorithm#execute()}.
+     */
+    @Test
+    public final void testEdgesAreMovedIntoCommonCluster() {
+        final Graph graph = new Graph();
+        final Graph outer = graph.newGraph();
+        final Graph left = outer.newGraph();
+        final Graph right = outer.newGraph();
+        final Node top = graph.newNode();
+        final Node first = left.newNode();
+        final Node second = left.newNode();
+        final Node third = right.newNode();
+
+        final Edge inLeft = graph.newEdge(first, second);
+        final Edge inOuter = graph.newEdge(first, third);
+        final Edge inGraph = left.newEdge(top, first);
+
+        assertThat(new EdgePlacementAlgorithm(graph).execute(), equalTo(3));
+
+        assertThat(left.getEdges(), contains(inLeft));
+        assertThat(outer.getEdges(), contains(inOuter));
+        assertThat(graph.getEdges(), contains(inGraph));
+        assertThat(right.getEdges(), empty());
+        assertThat(inLeft.getGraph(), sameInstance(left));
+        assertThat(left.newEdge(first, second), sameInstance(inLeft));
+        assertThat(new EdgePlacementAlgorithm(graph).execute(), equalTo(0));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.EdgePlacementAlgorithm#execute()}.
+     */
+    @Test
+    public final void testMovedEdgeIsMergedIntoExistingEdge() {
+        final Graph graph = new Graph();
+        final Graph cluster = graph.newGraph();
+        final Node first = cluster.newNode();
+        final Node second = cluster.newNode();
+        final Edge existing = cluster.newEdge(first, second);
+        graph.newEdge(first, second).getAttributes().setAttribute("color", "red");
+
+        new EdgePlacementAlgorithm(graph).execute();
+
+        assertThat(graph.getEdges(), empty());
+        assertThat(cluster.getEdges(), contains(existing));
+        assertThat(existing.getAttributes().getAttribute("color").getValue(), equalTo("red"));
+    }
+}
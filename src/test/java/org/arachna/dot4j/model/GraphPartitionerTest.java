@@ -0,0 +1,117 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * JUnit test case for {@link GraphPartitioner}.
+ *
+ * @author Dirk Weigenand
+ */
+public class GraphPartitionerTest {
+    /**
+     * graph instance to use throughout testing.
+     */
+    private Graph graph;
+
+    /**
+     * node in the first cluster.
+     */
+    private Node first;
+
+    /**
+     * node in the second cluster.
+     */
+    private Node second;
+
+    @BeforeEach
+    public void setUp() {
+        graph = new Graph();
+        graph.getNodeAttributes().setAttribute("shape", "record");
+
+        final Graph left = graph.newGraph();
+        final Graph right = graph.newGraph();
+        first = left.newNode();
+        first.getAttributes().setAttribute("label", "first");
+        second = right.newNode();
+        left.newEdge(first, left.newNode());
+        graph.newEdge(first, second).getAttributes().setAttribute("color", "red");
+        right.newNode();
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.GraphPartitioner#partitionByCluster()}.
+     */
+    @Test
+    public final void testPartitionByClusterCreatesStubsForCrossingEdges() {
+        final List<Graph> shards = new GraphPartitioner(graph).partitionByCluster();
+
+        assertThat(shards, hasSize(2));
+
+        final Graph left = shards.get(0);
+        assertThat(left.getClusters(), hasSize(1));
+        assertThat(left.getNodes(), hasSize(1));
+
+        final Node stub = left.getNodes().iterator().next();
+        assertThat(stub.getId(), equalTo(second.getId()));
+        assertThat(stub.getAttributes().getAttribute("style").getValue(), equalTo("dashed"));
+        assertThat(left.getEdges(), hasSize(1));
+        assertThat(left.getEdges().iterator().next().getAttributes().getAttributeSet(),
+            sameInstance(graph.getEdges().iterator().next().getAttributes().getAttributeSet()));
+        assertThat(left.getNodeAttributes().getAttributeSet(), sameInstance(graph.getNodeAttributes().getAttributeSet()));
+
+        final Graph leftCluster = left.getClusters().iterator().next();
+        assertThat(leftCluster.getNodes(), hasSize(2));
+        assertThat(leftCluster.getEdges(), hasSize(1));
+        assertThat(leftCluster.getNodes().iterator().next().getAttributes().getAttribute("label").getValue(),
+            equalTo("first"));
+
+        final Graph right = shards.get(1);
+        assertThat(right.getNodes().iterator().next().getId(), equalTo(first.getId()));
+        assertThat(right.getClusters().iterator().next().getNodes(), hasSize(2));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.GraphPartitioner#partitionByComponent()}.
+     */
+    @Test
+    public final void testPartitionByComponent() {
+        final List<Graph> shards = new GraphPartitioner(graph).partitionByComponent();
+
+        assertThat(shards, hasSize(2));
+        assertThat(nodeCount(shards.get(0)), equalTo(3));
+        assertThat(nodeCount(shards.get(1)), equalTo(1));
+        assertThat(shards.get(0).getEdges(), hasSize(1));
+        assertThat(shards.get(1).getEdges(), hasSize(0));
+    }
+
+    /**
+     * Count the nodes of the given graph and its clusters.
+     *
+     * @param current
+     *            graph to count the nodes of
+     * @return the number of nodes
+     */
+    private int nodeCount(final Graph current) {
+        int count = current.getNodes().size();
+
+        for (final Graph cluster : new ArrayList<Graph>(current.getClusters())) {
+            count += nodeCount(cluster);
+        }
+
+        return count;
+    }
+}
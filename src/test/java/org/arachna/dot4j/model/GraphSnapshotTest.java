@@ -0,0 +1,124 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import org.arachna.dot4j.DotGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * JUnit test case for {@link GraphSnapshot}.
+ *
+ * @author Dirk Weigenand
+ */
+public class GraphSnapshotTest {
+    /**
+     * directory for snapshot files.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * graph instance to use throughout testing.
+     */
+    private Graph graph;
+
+    @BeforeEach
+    public void setUp() {
+        graph = new Graph();
+        graph.getAttributes().setAttribute("rankdir", "LR");
+        graph.getNodeAttributes().setAttribute("shape", "record");
+
+        final Graph cluster = graph.newGraph();
+        cluster.getAttributes().setAttribute("label", "cluster äöü");
+        cluster.getEdgeAttributes().setAttribute("color", "red");
+
+        final Node first = graph.newNode();
+        first.getAttributes().setAttribute("label", "<<b>first</b>>");
+
+        final Node second = cluster.newNode();
+        second.getAttributes().setAttribute("label", "second");
+
+        final Node third = cluster.newNode();
+        third.getAttributes().setAttribute("label", "second");
+        cluster.rank("same", second);
+        cluster.rank("same", third);
+
+        graph.newEdge(first, second).getAttributes().setAttribute("style", "dashed");
+        cluster.newEdge(second, third);
+        cluster.newEdge(third, first);
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.GraphSnapshot#write(Graph, Path)} and
+     * {@link org.arachna.dot4j.model.GraphSnapshot#read(Path)}.
+     *
+     * @throws IOException
+     *             when writing or reading the snapshot fails
+     */
+    @Test
+    public final void testReadSnapshotFromFileEqualsWrittenGraph() throws IOException {
+        final Path path = directory.resolve("graph.snapshot");
+        GraphSnapshot.write(graph, path);
+
+        assertThat(generate(GraphSnapshot.read(path)), equalTo(generate(graph)));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.GraphSnapshot#read(Path)}.
+     *
+     * @throws IOException
+     *             when writing or reading the snapshot fails
+     */
+    @Test
+    public final void testReadGraphCreatesNewIds() throws IOException {
+        final Path path = directory.resolve("graph.snapshot");
+        GraphSnapshot.write(graph, path);
+
+        final Graph copy = GraphSnapshot.read(path);
+
+        assertThat(copy.newNode().getId().getValue(), greaterThan(2L));
+        assertThat(copy.newGraph().getId().getValue(), greaterThan(1L));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.GraphSnapshot#read(ByteBuffer)}.
+     */
+    @Test
+    public final void testReadInvalidSnapshotThrowsIOException() {
+        assertThrows(IOException.class, () -> GraphSnapshot.read(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5})));
+        assertThrows(IOException.class,
+            () -> GraphSnapshot.read(ByteBuffer.wrap(new byte[] {0x44, 0x4f, 0x54, 0x34, 1, 3})));
+    }
+
+    /**
+     * Generate the given graph.
+     *
+     * @param graph
+     *            graph to generate
+     * @return the generated <code>.dot</code> file
+     * @throws IOException
+     *             when generating fails
+     */
+    private String generate(final Graph graph) throws IOException {
+        final StringWriter writer = new StringWriter();
+        new DotGenerator(graph).generate(writer);
+
+        return writer.toString();
+    }
+}
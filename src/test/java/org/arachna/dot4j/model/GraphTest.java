@@ -0,0 +1,290 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * JUnit test case for {@link Graph}.
+ *
+ * @author Dirk Weigenand
+ */
+public class GraphTest {
+    /**
+     * number of threads building the graph concurrently.
+     */
+    private static final int THREADS = 4;
+
+    /**
+     * number of nodes created by each thread.
+     */
+    private static final int NODES = 2000;
+
+    /**
+     * Test method for {@link org.arachna.dot4j.model.Graph#newNode()} and
+     * {@link org.arachna.dot4j.model.Graph#newEdge(Node, Node)}.
+     *
+     * @throws Exception
+     *             when building the graph fails
+     */
+    @Test
+    public final void testConcurrentGraphBuilding() throws Exception {
+        final Graph graph = new Graph();
+        final Graph cluster = graph.newGraph();
+        final Node hub = graph.newNode();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < NODES; j++) {
+                        final Node node = cluster.newNode();
+                        node.getAttributes().setAttribute("label", "node");
+                        cluster.rank("same", node);
+                        graph.newEdge(node, hub);
+                        graph.newEdge(hub, node);
+                    }
+                }));
+            }
+
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        final Set<Id> ids = new HashSet<>();
+
+        for (final Node node : cluster.getNodes()) {
+            ids.add(node.getId());
+        }
+
+        assertThat(ids.size(), equalTo(THREADS * NODES));
+        assertThat(cluster.getRankedNodes().get("same").size(), equalTo(THREADS * NODES));
+        assertThat(graph.getEdges().size(), equalTo(2 * THREADS * NODES));
+    }
+
+    /**
+     * Test method for {@link org.arachna.dot4j.model.Graph#newNode()}.
+     */
+    @Test
+    public final void testNodesCreatedByOneThreadHaveConsecutiveIds() {
+        final Graph graph = new Graph();
+        final Graph cluster = graph.newGraph();
+
+        for (int i = 0; i < NODES; i++) {
+            final Node node = (i % 2 == 0 ? graph : cluster).newNode();
+
+            assertThat(node.getId().getValue(), equalTo((long)i));
+        }
+
+        assertThat(cluster.newGraph().getId().getValue(), equalTo(2L));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.Graph#reconnectEdge(Edge, Node, Node)}.
+     */
+    @Test
+    public final void testReconnectedEdgesAreFoundByNewEdge() {
+        final Graph graph = new Graph();
+        final Node first = graph.newNode();
+        final Node second = graph.newNode();
+        final Node third = graph.newNode();
+        final Edge edge = graph.newEdge(first, second);
+
+        edge.setEndNode(third);
+
+        assertThat(graph.newEdge(first, third), sameInstance(edge));
+        assertThat(graph.getEdges().size(), equalTo(1));
+
+        final Edge other = graph.newEdge(first, second);
+        assertThat(other == edge, equalTo(false));
+        assertThat(graph.getEdges().size(), equalTo(2));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.Graph#reconnectEdge(Edge, Node, Node)}.
+     */
+    @Test
+    public final void testReconnectingOntoExistingEdgeMergesEdges() {
+        final Graph graph = new Graph();
+        final Node first = graph.newNode();
+        final Node second = graph.newNode();
+        final Node third = graph.newNode();
+        final Edge existing = graph.newEdge(first, third);
+        final Edge edge = graph.newEdge(second, third);
+        edge.getAttributes().setAttribute("color", "red");
+
+        assertThat(graph.reconnectEdge(edge, first, third), sameInstance(existing));
+        assertThat(graph.getEdges().size(), equalTo(1));
+        assertThat(existing.getAttributes().getAttribute("color").getValue(), equalTo("red"));
+        assertThat(graph.removeEdge(edge), equalTo(false));
+    }
+
+    /**
+     * Test method for {@link org.arachna.dot4j.model.Node#toString()} and
+     * {@link org.arachna.dot4j.model.Edge#toString()}.
+     */
+    @Test
+    public final void testToStringDoesNotAllocateAttributes() {
+        final Graph graph = new Graph();
+        final Node first = graph.newNode();
+        final Node second = graph.newNode();
+        final Edge edge = graph.newEdge(first, second);
+
+        assertThat(first.toString(), equalTo("Node [id=" + first.getId() + ", attributes=null]"));
+        assertThat(edge.toString().startsWith("Edge [attributes=null, "), equalTo(true));
+    }
+
+    /**
+     * Test method for {@link org.arachna.dot4j.model.Edge#setEndNode(Node)}
+     * while iterating over {@link org.arachna.dot4j.model.Graph#getEdges()}.
+     */
+    @Test
+    public final void testReconnectingWhileIteratingVisitsEveryEdgeOnce() {
+        final Graph graph = new Graph();
+        final Node start = graph.newNode();
+        final Node hub = graph.newNode();
+        final Set<Edge> created = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (int i = 0; i < 100; i++) {
+            created.add(graph.newEdge(start, graph.newNode()));
+        }
+
+        final Set<Edge> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        int count = 0;
+
+        for (final Edge edge : graph.getEdges()) {
+            visited.add(edge);
+            count++;
+            edge.setEndNode(hub);
+        }
+
+        assertThat(count, equalTo(100));
+        assertThat(visited, equalTo(created));
+        assertThat(graph.getEdges().size(), equalTo(1));
+
+        final Edge survivor = graph.getEdges().iterator().next();
+        int detached = 0;
+
+        for (final Edge edge : created) {
+            if (edge != survivor) {
+                assertThat(edge.getGraph(), nullValue());
+                edge.setEndNode(start);
+                assertThat(edge.getEndNode(), sameInstance(start));
+                detached++;
+            }
+        }
+
+        assertThat(detached, equalTo(99));
+        assertThat(survivor.getEndNode(), sameInstance(hub));
+        assertThat(graph.getEdges().size(), equalTo(1));
+    }
+
+    /**
+     * Test method for {@link org.arachna.dot4j.model.Graph#getEdges()}.
+     */
+    @Test
+    public final void testAddingEdgesAfterRemovalsWhileIteratingFailsFast() {
+        final Graph graph = new Graph();
+        final Node start = graph.newNode();
+        final List<Edge> edges = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            edges.add(graph.newEdge(start, graph.newNode()));
+        }
+
+        final Iterator<Edge> iterator = graph.getEdges().iterator();
+        iterator.next();
+
+        for (int i = 0; i < 4; i++) {
+            graph.removeEdge(edges.get(i));
+        }
+
+        assertThat(edges.get(0).getGraph(), nullValue());
+        graph.newEdge(start, graph.newNode());
+
+        assertThrows(ConcurrentModificationException.class, iterator::hasNext);
+        assertThat(graph.getEdges().size(), equalTo(5));
+    }
+
+    /**
+     * Test method for {@link org.arachna.dot4j.model.Edge#getAttributes()} of
+     * edges detached from their graph.
+     */
+    @Test
+    public final void testChangingAttributesOfDetachedEdges() {
+        final Graph graph = new Graph();
+        final Node first = graph.newNode();
+        final Node second = graph.newNode();
+        final Node third = graph.newNode();
+        final Edge removed = graph.newEdge(first, second);
+        graph.removeEdge(removed);
+
+        final Edge existing = graph.newEdge(first, third);
+        final Edge merged = graph.newEdge(second, third);
+        merged.setStartNode(first);
+
+        final long version = graph.getVersion();
+        removed.getAttributes().setAttribute("color", "red");
+        merged.getAttributes().setAttribute("color", "blue");
+
+        assertThat(removed.getAttributes().getAttribute("color").getValue(), equalTo("red"));
+        assertThat(merged.getGraph(), nullValue());
+        assertThat(existing.hasAttributes(), equalTo(false));
+        assertThat(graph.getVersion(), equalTo(version));
+    }
+
+    /**
+     * Test method for {@link org.arachna.dot4j.model.Graph#getVersion()} of
+     * graphs containing modified clusters.
+     */
+    @Test
+    public final void testModifyingNestedClusterChangesVersions() {
+        final Graph graph = new Graph();
+        final Graph cluster = graph.newGraph();
+        final Graph nested = cluster.newGraph();
+        final long version = graph.getVersion();
+        final long clusterVersion = cluster.getVersion();
+        final long topologyVersion = graph.getTopologyVersion();
+
+        assertThat(graph.getVersion(), equalTo(version));
+
+        final Node first = nested.newNode();
+        nested.newNode().getAttributes().setAttribute("color", "red");
+
+        assertThat(graph.getVersion(), not(equalTo(version)));
+        assertThat(cluster.getVersion(), not(equalTo(clusterVersion)));
+        assertThat(graph.getTopologyVersion(), equalTo(topologyVersion));
+
+        nested.newEdge(first, first);
+
+        assertThat(graph.getTopologyVersion(), not(equalTo(topologyVersion)));
+    }
+}
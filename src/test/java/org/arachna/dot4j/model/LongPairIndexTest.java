@@ -0,0 +1,88 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * JUnit test case for {@link LongPairIndex}.
+ *
+ * @author Dirk Weigenand
+ */
+public class LongPairIndexTest {
+    /**
+     * index under test.
+     */
+    private LongPairIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        this.index = new LongPairIndex();
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.LongPairIndex#get(long, long)}.
+     */
+    @Test
+    public final void testGetFromEmptyIndex() {
+        assertThat(index.get(0, 0), equalTo(LongPairIndex.ABSENT));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.LongPairIndex#putIfAbsent(long, long, int)}.
+     */
+    @Test
+    public final void testPutIfAbsentKeepsExistingValue() {
+        assertThat(index.putIfAbsent(1, 2, 0), equalTo(LongPairIndex.ABSENT));
+        assertThat(index.putIfAbsent(1, 2, 1), equalTo(0));
+        assertThat(index.get(1, 2), equalTo(0));
+        assertThat(index.get(2, 1), equalTo(LongPairIndex.ABSENT));
+        assertThat(index.size(), equalTo(1));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.LongPairIndex#putIfAbsent(long, long, int)}.
+     */
+    @Test
+    public final void testPutIfAbsentGrowsIndex() {
+        for (int i = 0; i < 10000; i++) {
+            index.putIfAbsent(i / 100, i % 100, i);
+        }
+
+        assertThat(index.size(), equalTo(10000));
+
+        for (int i = 0; i < 10000; i++) {
+            assertThat(index.get(i / 100, i % 100), equalTo(i));
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.LongPairIndex#remove(long, long)}.
+     */
+    @Test
+    public final void testRemoveKeepsOtherKeysReachable() {
+        for (int i = 0; i < 10000; i++) {
+            index.putIfAbsent(i / 100, i % 100, i);
+        }
+
+        for (int i = 0; i < 10000; i += 2) {
+            assertThat(index.remove(i / 100, i % 100), equalTo(i));
+        }
+
+        assertThat(index.size(), equalTo(5000));
+        assertThat(index.remove(0, 0), equalTo(LongPairIndex.ABSENT));
+
+        for (int i = 0; i < 10000; i++) {
+            assertThat(index.get(i / 100, i % 100), equalTo(i % 2 == 0 ? LongPairIndex.ABSENT : i));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * JUnit test case for {@link StronglyConnectedComponentsAlgorithm}.
+ *
+ * @author Dirk Weigenand
+ */
+public class StronglyConnectedComponentsAlgorithmTest {
+    /**
+     * graph instance to use throughout testing.
+     */
+    private Graph graph;
+
+    /**
+     * node outside of the cycle.
+     */
+    private Node source;
+
+    /**
+     * first node of the cycle.
+     */
+    private Node first;
+
+    /**
+     * second node of the cycle.
+     */
+    private Node second;
+
+    /**
+     * third node of the cycle.
+     */
+    private Node third;
+
+    @BeforeEach
+    public void setUp() {
+        graph = new Graph();
+        final Graph cluster = graph.newGraph();
+        source = graph.newNode();
+        first = graph.newNode();
+        first.getAttributes().setAttribute("label", "first");
+        second = cluster.newNode();
+        third = cluster.newNode();
+        graph.newEdge(source, first);
+        graph.newEdge(first, second);
+        cluster.newEdge(second, third);
+        graph.newEdge(third, first);
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.StronglyConnectedComponentsAlgorithm#execute()}.
+     */
+    @Test
+    public final void testExecuteFindsCycle() {
+        final List<List<Node>> components = new StronglyConnectedComponentsAlgorithm(graph).execute();
+
+        assertThat(components, hasSize(1));
+        assertThat(components.get(0), containsInAnyOrder(first, second, third));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.StronglyConnectedComponentsAlgorithm#execute()}.
+     */
+    @Test
+    public final void testExecuteHandlesLongPaths() {
+        final Graph chain = new Graph();
+        final Node start = chain.newNode();
+        Node previous = start;
+
+        for (int i = 0; i < 200000; i++) {
+            final Node node = chain.newNode();
+            chain.newEdge(previous, node);
+            previous = node;
+        }
+
+        chain.newEdge(previous, start);
+
+        final List<List<Node>> components = new StronglyConnectedComponentsAlgorithm(chain).execute();
+
+        assertThat(components, hasSize(1));
+        assertThat(components.get(0), hasSize(200001));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.StronglyConnectedComponentsAlgorithm#collapseIntoNodes()}.
+     */
+    @Test
+    public final void testCollapseIntoNodes() {
+        assertThat(new StronglyConnectedComponentsAlgorithm(graph).collapseIntoNodes(), equalTo(1));
+
+        assertThat(graph.getNodes(), hasSize(2));
+        assertThat(graph.getClusters().iterator().next().getNodes(), hasSize(0));
+        assertThat(graph.getClusters().iterator().next().getEdges(), hasSize(0));
+        assertThat(graph.getEdges(), hasSize(1));
+
+        final Edge edge = graph.getEdges().iterator().next();
+        assertThat(edge.getStartNode(), sameInstance(source));
+        assertThat(edge.getEndNode().getAttributes().getAttribute("label").getValue(),
+            equalTo("first\\nnode" + second.getId() + "\\nnode" + third.getId()));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.StronglyConnectedComponentsAlgorithm#collapseIntoClusters()}.
+     */
+    @Test
+    public final void testCollapseIntoClusters() {
+        assertThat(new StronglyConnectedComponentsAlgorithm(graph).collapseIntoClusters(), equalTo(1));
+
+        assertThat(graph.getNodes(), hasSize(1));
+        assertThat(graph.getClusters(), hasSize(2));
+
+        final Graph component = graph.getClusters().stream().skip(1).findFirst().get();
+        assertThat(component.getNodes(), containsInAnyOrder(first, second, third));
+        assertThat(second.getGraph(), sameInstance(component));
+    }
+}
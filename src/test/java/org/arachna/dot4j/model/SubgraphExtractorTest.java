@@ -0,0 +1,135 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * JUnit test case for {@link SubgraphExtractor}.
+ *
+ * @author Dirk Weigenand
+ */
+public class SubgraphExtractorTest {
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.SubgraphExtractor#neighbourhood(java.util.Collection, int)}.
+     */
+    @Test
+    public final void testNeighbourhoodFollowsEdgesInBothDirections() {
+        final Graph graph = new Graph();
+        final Graph cluster = graph.newGraph();
+        final Graph unaffected = graph.newGraph();
+        final List<Node> chain = new ArrayList<>();
+
+        for (int i = 0; i < 6; i++) {
+            chain.add((i % 2 == 0 ? graph : cluster).newNode());
+        }
+
+        unaffected.newNode();
+
+        for (int i = 1; i < chain.size(); i++) {
+            graph.newEdge(chain.get(i - 1), chain.get(i)).getAttributes().setAttribute("label", "e" + i);
+        }
+
+        cluster.rank("same", chain.get(1));
+        cluster.rank("same", chain.get(3));
+
+        final Graph extracted = new SubgraphExtractor(graph).neighbourhood(Collections.singleton(chain.get(2)), 1);
+
+        assertThat(ids(extracted.getNodes()), contains(2L));
+        assertThat(extracted.getClusters(), hasSize(1));
+
+        final Graph extractedCluster = extracted.getClusters().iterator().next();
+        assertThat(extractedCluster.getId(), equalTo(cluster.getId()));
+        assertThat(ids(extractedCluster.getNodes()), contains(1L, 3L));
+        assertThat(extractedCluster.getRankedNodes().get("same"), hasSize(2));
+        assertThat(extracted.getEdges(), hasSize(2));
+
+        final Edge edge = extracted.getEdges().iterator().next();
+        assertThat(edge.getAttributes().getAttributeSet(),
+            sameInstance(graph.newEdge(chain.get(1), chain.get(2)).getAttributes().getAttributeSet()));
+        assertThat(extracted.newNode().getId().getValue(), equalTo(4L));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.SubgraphExtractor#topByDegree(int)}.
+     */
+    @Test
+    public final void testTopByDegreeKeepsNodesWithMostEdges() {
+        final Graph graph = new Graph();
+        final Node hub = graph.newNode();
+        final Node second = graph.newNode();
+        final Node leaf = graph.newNode();
+        final Node other = graph.newNode();
+        graph.newEdge(hub, second);
+        graph.newEdge(hub, leaf);
+        graph.newEdge(second, hub);
+        graph.newEdge(other, second);
+
+        final Graph extracted = new SubgraphExtractor(graph).topByDegree(2);
+
+        assertThat(ids(extracted.getNodes()), contains(hub.getId().getValue(), second.getId().getValue()));
+        assertThat(extracted.getEdges(), hasSize(2));
+        assertThat(new SubgraphExtractor(graph).topByDegree(0).getNodes(), empty());
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.SubgraphExtractor#clusters(java.util.function.Predicate)}.
+     */
+    @Test
+    public final void testClustersExtractsNestedClusters() {
+        final Graph graph = new Graph();
+        final Graph selected = graph.newGraph();
+        selected.getAttributes().setAttribute("label", "selected");
+        final Graph nested = selected.newGraph();
+        final Graph other = graph.newGraph();
+        final Node first = selected.newNode();
+        final Node second = nested.newNode();
+        final Node third = other.newNode();
+        graph.newEdge(first, second);
+        graph.newEdge(second, third);
+
+        final Graph extracted = new SubgraphExtractor(graph).clusters(
+            cluster -> cluster.getAttributes().getAttribute("label") != null);
+
+        assertThat(extracted.getNodes(), empty());
+        assertThat(extracted.getClusters(), hasSize(1));
+
+        final Graph extractedCluster = extracted.getClusters().iterator().next();
+        assertThat(ids(extractedCluster.getNodes()), contains(first.getId().getValue()));
+        assertThat(ids(extractedCluster.getClusters().iterator().next().getNodes()),
+            contains(second.getId().getValue()));
+        assertThat(extracted.getEdges(), hasSize(1));
+    }
+
+    /**
+     * Return the ids of the given nodes.
+     *
+     * @param nodes
+     *            nodes to get the ids of
+     * @return the ids of the given nodes
+     */
+    private List<Long> ids(final Iterable<Node> nodes) {
+        final List<Long> ids = new ArrayList<>();
+
+        for (final Node node : nodes) {
+            ids.add(node.getId().getValue());
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ *
+ */
+package org.arachna.dot4j.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * JUnit test case for {@link TransitiveReductionAlgorithm}.
+ *
+ * @author Dirk Weigenand
+ */
+public class TransitiveReductionAlgorithmTest {
+    /**
+     * graph instance to use throughout testing.
+     */
+    private Graph graph;
+
+    @BeforeEach
+    public void setUp() {
+        this.graph = new Graph();
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.TransitiveReductionAlgorithm#execute()}.
+     */
+    @Test
+    public final void testExecuteRemovesRedundantEdges() {
+        final Graph cluster = graph.newGraph();
+        final Node first = graph.newNode();
+        final Node second = cluster.newNode();
+        final Node third = cluster.newNode();
+        graph.newEdge(first, second);
+        cluster.newEdge(second, third);
+        final Edge redundant = graph.newEdge(first, third);
+
+        assertThat(new TransitiveReductionAlgorithm(graph).execute(), equalTo(1));
+        assertThat(graph.getEdges(), hasSize(1));
+        assertThat(graph.getEdges(), not(hasItem(redundant)));
+        assertThat(cluster.getEdges(), hasSize(1));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.TransitiveReductionAlgorithm#execute()}.
+     */
+    @Test
+    public final void testExecuteLeavesCyclicGraphUnchanged() {
+        final Node first = graph.newNode();
+        final Node second = graph.newNode();
+        final Node third = graph.newNode();
+        graph.newEdge(first, second);
+        graph.newEdge(second, third);
+        graph.newEdge(third, first);
+        graph.newEdge(first, third);
+
+        assertThat(new TransitiveReductionAlgorithm(graph).execute(), equalTo(0));
+        assertThat(graph.getEdges(), hasSize(4));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.TransitiveReductionAlgorithm#setParallel(boolean)}.
+     */
+    @Test
+    public final void testParallelExecutionEqualsSequentialExecution() {
+        final Graph sequential = newLayeredGraph();
+        final int expected = new TransitiveReductionAlgorithm(sequential).execute();
+
+        final Graph parallel = newLayeredGraph();
+        final TransitiveReductionAlgorithm algorithm = new TransitiveReductionAlgorithm(parallel);
+        algorithm.setParallel(true);
+
+        assertThat(algorithm.execute(), equalTo(expected));
+        assertThat(describe(parallel), equalTo(describe(sequential)));
+        assertThat(expected, equalTo(1000));
+        assertThat(sequential.getEdges(), hasSize(3000));
+    }
+
+    /**
+     * Test method for
+     * {@link org.arachna.dot4j.model.TransitiveReductionAlgorithm#setBitSetLimit(int)}.
+     */
+    @Test
+    public final void testSearchingExecutionEqualsBitSetExecution() {
+        final Graph bitSets = newLayeredGraph();
+        final int expected = new TransitiveReductionAlgorithm(bitSets).execute();
+
+        final Graph searched = newLayeredGraph();
+        final TransitiveReductionAlgorithm algorithm = new TransitiveReductionAlgorithm(searched);
+        algorithm.setBitSetLimit(100);
+        algorithm.setParallel(true);
+
+        assertThat(algorithm.execute(), equalTo(expected));
+        assertThat(describe(searched), equalTo(describe(bitSets)));
+    }
+
+    /**
+     * Create a graph of 3000 nodes in three layers of 1000 nodes, where every
+     * node is connected to its counterpart in the next layer and every node of
+     * the first layer also to the next node of the last layer.
+     *
+     * @return the layered graph
+     */
+    private Graph newLayeredGraph() {
+        final Graph result = new Graph();
+        final List<Node> nodes = new ArrayList<Node>();
+
+        for (int i = 0; i < 3000; i++) {
+            nodes.add(result.newNode());
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            result.newEdge(nodes.get(i), nodes.get(1000 + i));
+            result.newEdge(nodes.get(1000 + i), nodes.get(2000 + i));
+            result.newEdge(nodes.get(i), nodes.get(2000 + i));
+            result.newEdge(nodes.get(i), nodes.get(2000 + (i + 1) % 1000));
+        }
+
+        return result;
+    }
+
+    /**
+     * Describe the edges of the given graph.
+     *
+     * @param current
+     *            graph to describe
+     * @return the start and end node ids of all edges
+     */
+    private String describe(final Graph current) {
+        final StringBuilder description = new StringBuilder();
+
+        for (final Edge edge : current.getEdges()) {
+            description.append(edge.getStartNode().getId()).append("->").append(edge.getEndNode().getId())
+                .append(';');
+        }
+
+        return description.toString();
+    }
+}